@@ -1,46 +1,143 @@
 package client;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import config.config;
+import logging.Logger;
 import model.Track;
+import protocol.BinaryCodec;
+import protocol.Compression;
+import protocol.Frames;
+import protocol.Handshake;
+import protocol.Response;
+import protocol.WireProtocol;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.OutputStream;
 import java.net.Socket;
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Inflater;
 
 /**
  * Handles socket connection to the server
  * Demonstrates Client Socket programming
+ *
+ * Every request carries a client-assigned requestId, so many requests can be in flight
+ * on one socket and the server may answer them in any order. Servers from before pipelining
+ * answer strictly in order and without a requestId; such a response goes to the oldest request.
+ * A blocking call gives up after {@code -Dclient.responseTimeoutMs} (default 30000).
+ *
+ * A connection created for {@link WireProtocol#BINARY} asks for it with a HELLO right after
+ * connecting and falls back to JSON lines if the server does not agree. It may also ask for
+ * {@link Compression#DEFLATE}, which pays off for remote clients on slow links: the server
+ * compresses larger responses and this side inflates them with one Inflater per connection.
  */
 public class ServerConnection {
+    private static final Logger LOG = Logger.getLogger(ServerConnection.class);
+    private static final long RESPONSE_TIMEOUT_MS = Long.getLong("client.responseTimeoutMs", 30_000);
+
     private Socket socket;
-    private PrintWriter out;
-    private BufferedReader in;
+    private OutputStream out;
+    private InputStream in;
     private final Gson gson;
+    private final WireProtocol wanted;
+    private final Compression wantedCompression;
+    private volatile WireProtocol protocol = WireProtocol.JSON;
+    private volatile Compression compression = Compression.NONE;
+    private final AtomicLong nextRequestId = new AtomicLong(1);
+    // Ordered by requestId, so the oldest request comes first
+    private final NavigableMap<Long, CompletableFuture<List<Track>>> pending = new ConcurrentSkipListMap<>();
+    private volatile boolean readerStopped;
 
     public ServerConnection() {
+        this(WireProtocol.JSON);
+    }
+
+    public ServerConnection(WireProtocol wanted) {
+        this(wanted, Compression.NONE);
+    }
+
+    public ServerConnection(WireProtocol wanted, Compression wantedCompression) {
         this.gson = new Gson();
+        this.wanted = wanted;
+        this.wantedCompression = wantedCompression;
     }
 
     /**
      * Connect to the server
      */
     public void connect() throws IOException {
-        socket = new Socket(config.SERVER_HOST, config.SERVER_PORT);
-        out = new PrintWriter(socket.getOutputStream(), true);
-        in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-        System.out.println("Connected to server");
+        connect(config.SERVER_HOST, config.SERVER_PORT);
+    }
+
+    /**
+     * Connect to a server at the given address
+     */
+    public void connect(String host, int port) throws IOException {
+        socket = new Socket(host, port);
+        out = new BufferedOutputStream(socket.getOutputStream());
+        in = new BufferedInputStream(socket.getInputStream());
+        protocol = WireProtocol.JSON;
+        compression = Compression.NONE;
+        if (wanted != WireProtocol.JSON) {
+            // Nothing else is sent until the server answers, so its reply is the next line
+            writeLine(Handshake.request(wanted, wantedCompression));
+            String reply = Frames.readLine(in);
+            protocol = Handshake.accepted(reply);
+            if (protocol == WireProtocol.BINARY) {
+                compression = Handshake.acceptedCompression(reply);
+            }
+        }
+        readerStopped = false;
+
+        Thread reader = new Thread(this::readResponses, "server-connection-reader");
+        reader.setDaemon(true);
+        reader.start();
+        LOG.info("Connected to server {} ({})", host + ":" + port,
+                compression == Compression.NONE ? protocol.getWireName() : protocol.getWireName() + "+" + compression.getWireName());
+    }
+
+    /**
+     * The protocol agreed with the server, JSON until connected
+     */
+    public WireProtocol getProtocol() {
+        return protocol;
+    }
+
+    /**
+     * The compression agreed with the server, NONE until connected
+     */
+    public Compression getCompression() {
+        return compression;
     }
 
     /**
      * Search for tracks on the server
      */
     public List<Track> searchTracks(String query) throws IOException {
+        return await(searchTracksAsync(query));
+    }
+
+    /**
+     * Search for tracks without blocking; the future completes when the server answers
+     */
+    public CompletableFuture<List<Track>> searchTracksAsync(String query) {
         JsonObject request = new JsonObject();
         request.addProperty("action", "SEARCH");
         request.addProperty("query", query);
@@ -53,6 +150,13 @@ public class ServerConnection {
      * Get recommendations from the server
      */
     public List<Track> getRecommendations(String trackId) throws IOException {
+        return await(getRecommendationsAsync(trackId));
+    }
+
+    /**
+     * Get recommendations without blocking; the future completes when the server answers
+     */
+    public CompletableFuture<List<Track>> getRecommendationsAsync(String trackId) {
         JsonObject request = new JsonObject();
         request.addProperty("action", "RECOMMEND");
         request.addProperty("trackId", trackId);
@@ -61,24 +165,210 @@ public class ServerConnection {
         return sendRequest(request);
     }
 
-    private List<Track> sendRequest(JsonObject request) throws IOException {
-        // Send request
-        out.println(gson.toJson(request));
-
-        // Receive response
-        String responseLine = in.readLine();
-        JsonObject response = gson.fromJson(responseLine, JsonObject.class);
-
-        if (response.get("status").getAsString().equals("success")) {
-            System.out.println("Client sending: " + gson.toJson(request));
-            // Parse tracks from response
-            Track[] tracksArray = gson.fromJson(
-                    response.get("data"), Track[].class);
-            return List.of(tracksArray);
-        } else {
-            System.out.println("Client sending: " + gson.toJson(request));
-            String errorMsg = response.get("message").getAsString();
-            throw new IOException("Server error: " + errorMsg);
+    /**
+     * Get recommendations for a track from a previous search. Its artist IDs travel with the
+     * request, so the server can skip looking the track up again.
+     */
+    public List<Track> getRecommendations(Track seedTrack) throws IOException {
+        return await(getRecommendationsAsync(seedTrack));
+    }
+
+    public CompletableFuture<List<Track>> getRecommendationsAsync(Track seedTrack) {
+        JsonObject request = new JsonObject();
+        request.addProperty("action", "RECOMMEND");
+        request.addProperty("trackId", seedTrack.getId());
+        request.add("artistIds", gson.toJsonTree(seedTrack.getArtistIds()));
+        if (seedTrack.getAlbumId() != null) {
+            request.addProperty("albumId", seedTrack.getAlbumId());
+        }
+        request.addProperty("count", 10);
+
+        return sendRequest(request);
+    }
+
+    /**
+     * Recommendations for a whole set of seed tracks (e.g. a playlist) in one round trip.
+     * The server merges the seeds' artists, so the result is one ranked list rather than one per seed.
+     */
+    public List<Track> getBatchRecommendations(List<Track> seedTracks, int count) throws IOException {
+        return await(getBatchRecommendationsAsync(seedTracks, count));
+    }
+
+    public CompletableFuture<List<Track>> getBatchRecommendationsAsync(List<Track> seedTracks, int count) {
+        JsonArray seeds = new JsonArray(seedTracks.size());
+        for (Track seedTrack : seedTracks) {
+            JsonObject seed = new JsonObject();
+            seed.addProperty("trackId", seedTrack.getId());
+            seed.add("artistIds", gson.toJsonTree(seedTrack.getArtistIds()));
+            seeds.add(seed);
+        }
+
+        JsonObject request = new JsonObject();
+        request.addProperty("action", "BATCH_RECOMMEND");
+        request.add("seeds", seeds);
+        request.addProperty("count", count);
+
+        return sendRequest(request);
+    }
+
+    private CompletableFuture<List<Track>> sendRequest(JsonObject request) {
+        long requestId = nextRequestId.getAndIncrement();
+        request.addProperty("requestId", requestId);
+
+        CompletableFuture<List<Track>> future = new CompletableFuture<>();
+        if (!isConnected() || readerStopped) {
+            future.completeExceptionally(new IOException("Not connected to server"));
+            return future;
+        }
+        // Register before writing so a fast response always finds its future
+        pending.put(requestId, future);
+        if (readerStopped && pending.remove(requestId) != null) {
+            future.completeExceptionally(new IOException("Not connected to server"));
+            return future;
+        }
+
+        try {
+            if (protocol == WireProtocol.BINARY) {
+                LOG.debug("Client sending binary: {}", request);
+                byte[] payload = BinaryCodec.encodeRequest(request);
+                synchronized (out) {
+                    Frames.write(out, payload, compression);
+                    out.flush();
+                }
+            } else {
+                String line = gson.toJson(request);
+                LOG.debug("Client sending: {}", line);
+                writeLine(line);
+            }
+        } catch (IOException e) {
+            pending.remove(requestId);
+            future.completeExceptionally(new IOException("Failed to send request to server", e));
+        }
+        return future;
+    }
+
+    private void writeLine(String line) throws IOException {
+        byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+        synchronized (out) {
+            out.write(bytes);
+            out.flush();
+        }
+    }
+
+    /**
+     * Reader thread: routes each response to the future with the same requestId
+     */
+    private void readResponses() {
+        try {
+            if (protocol == WireProtocol.BINARY) {
+                readFrames();
+            } else {
+                readLines();
+            }
+            failPending(new IOException("Server closed the connection"));
+        } catch (Exception e) {
+            failPending(new IOException("Connection lost: " + e.getMessage(), e));
+        }
+    }
+
+    private void readLines() throws IOException {
+        // The handshake, if any, is over: from here on the stream is plain JSON lines
+        BufferedReader lines = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String responseLine;
+        while ((responseLine = lines.readLine()) != null) {
+            JsonObject response = gson.fromJson(responseLine, JsonObject.class);
+            if (response == null) {
+                continue;
+            }
+
+            CompletableFuture<List<Track>> future = response.has("requestId")
+                    ? pending.remove(response.get("requestId").getAsLong())
+                    : oldestPending();
+            if (future == null) {
+                continue;
+            }
+
+            if (response.get("status").getAsString().equals("success")) {
+                // Parse tracks from response
+                Track[] tracksArray = gson.fromJson(
+                        response.get("data"), Track[].class);
+                future.complete(List.of(tracksArray));
+            } else {
+                String errorMsg = response.get("message").getAsString();
+                future.completeExceptionally(new IOException("Server error: " + errorMsg));
+            }
+        }
+    }
+
+    private void readFrames() throws IOException {
+        Inflater inflater = Frames.newInflater(compression);
+        try {
+            readFrames(inflater);
+        } finally {
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+    }
+
+    private void readFrames(Inflater inflater) throws IOException {
+        byte[] payload;
+        while ((payload = Frames.read(in, inflater)) != null) {
+            Response response = BinaryCodec.decodeResponse(payload);
+            JsonElement requestId = response.getRequestId();
+            CompletableFuture<List<Track>> future = requestId != null
+                    ? pending.remove(requestId.getAsLong())
+                    : oldestPending();
+            if (future == null) {
+                continue;
+            }
+
+            if (response.isSuccess()) {
+                future.complete(response.getTracks() != null ? response.getTracks() : List.of());
+            } else {
+                future.completeExceptionally(new IOException("Server error: " + response.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * The request a response without requestId answers: servers that omit it answer in order
+     */
+    private CompletableFuture<List<Track>> oldestPending() {
+        Map.Entry<Long, CompletableFuture<List<Track>>> oldest = pending.pollFirstEntry();
+        if (oldest == null) {
+            LOG.warn("Ignoring response without requestId: no request is waiting");
+            return null;
+        }
+        return oldest.getValue();
+    }
+
+    private void failPending(IOException cause) {
+        readerStopped = true;
+        for (Long requestId : pending.keySet()) {
+            CompletableFuture<List<Track>> future = pending.remove(requestId);
+            if (future != null) {
+                future.completeExceptionally(cause);
+            }
+        }
+    }
+
+    private static List<Track> await(CompletableFuture<List<Track>> future) throws IOException {
+        try {
+            return future.get(RESPONSE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Still pending: a late answer completes nothing, and in-order servers stay matched up
+            IOException timeout = new IOException("No response from server within " + RESPONSE_TIMEOUT_MS + " ms");
+            future.completeExceptionally(timeout);
+            throw timeout;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for server", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
         }
     }
 
@@ -87,16 +377,17 @@ public class ServerConnection {
      */
     public void disconnect() {
         try {
+            // Close the socket first: it unblocks the reader thread, which holds the reader's lock
+            if (socket != null) socket.close();
             if (in != null) in.close();
             if (out != null) out.close();
-            if (socket != null) socket.close();
-            System.out.println("Disconnected from server");
+            LOG.info("Disconnected from server");
         } catch (IOException e) {
-            e.printStackTrace();
+            LOG.warn("Failed to close server connection", e);
         }
     }
 
     public boolean isConnected() {
         return socket != null && socket.isConnected() && !socket.isClosed();
     }
-}
\ No newline at end of file
+}
@@ -1,10 +1,13 @@
 package controller;
 
 import client.ServerConnection;
+import model.AsyncAPIClient;
 import model.RecommendationEngine;
 import model.FeatureBasedStrategy;
 import model.Track;
 import model.APIClient;
+import protocol.Compression;
+import protocol.WireProtocol;
 import view.MainFrame;
 
 import javax.swing.*;
@@ -17,10 +20,14 @@ public class MainController {
     private final ServerConnection serverConnection;
     private final RecommendationEngine recommendationEngine;
     private final APIClient apiClient;
+    private final FeatureBasedStrategy recommendations;
 
     public MainController(MainFrame view) {
         this.view = view;
-        this.serverConnection = new ServerConnection();
+        // Remote clients on slow links can opt in with -Dclient.protocol=binary -Dclient.compression=deflate
+        this.serverConnection = new ServerConnection(
+                WireProtocol.fromWireName(System.getProperty("client.protocol", "json")),
+                Compression.fromWireName(System.getProperty("client.compression", "none")));
         this.apiClient = new APIClient();
 
         try {
@@ -32,6 +39,8 @@ public class MainController {
 
         // Use APIService
         this.recommendationEngine = new RecommendationEngine(new FeatureBasedStrategy(apiClient));
+        // Recommendations run on non-blocking calls and fall back to the blocking client
+        this.recommendations = new FeatureBasedStrategy(apiClient, new AsyncAPIClient(apiClient));
 
         initializeServerConnection();
         initializeListeners();
@@ -89,28 +98,16 @@ public class MainController {
 
         view.updateStatus("Getting feature-based recommendations for: " + selectedTrack.getName());
 
-        SwingWorker<List<Track>, Void> worker = new SwingWorker<>() {
-            @Override
-            protected List<Track> doInBackground() throws Exception {
-                // ✅ Use the FeatureBasedStrategy directly (uses APIService)
-                FeatureBasedStrategy strategy = new FeatureBasedStrategy(apiClient);
-                List<Track> userTracks = List.of(selectedTrack);
-                return strategy.recommend(userTracks, 10);
-            }
-
-            @Override
-            protected void done() {
-                try {
-                    List<Track> recommendations = get();
-                    view.displayRecommendations(recommendations);
-                    view.updateStatus("Generated " + recommendations.size() + " recommendations");
-                } catch (Exception e) {
-                    view.showError("Failed to get recommendations: " + e.getMessage());
-                    view.updateStatus("Recommendation failed");
-                }
-            }
-        };
-        worker.execute();
+        recommendations.recommendAsync(List.of(selectedTrack), 10).whenComplete((results, error) ->
+                SwingUtilities.invokeLater(() -> {
+                    if (error != null) {
+                        view.showError("Failed to get recommendations: " + error.getMessage());
+                        view.updateStatus("Recommendation failed");
+                        return;
+                    }
+                    view.displayRecommendations(results);
+                    view.updateStatus("Generated " + results.size() + " recommendations");
+                }));
     }
 
 }
@@ -0,0 +1,89 @@
+package logging;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded ring buffer between logging threads and the console.
+ * Callers only ever offer: if the buffer is full the event is dropped and counted, so a
+ * slow console can never stall a request thread. One daemon thread drains the buffer in
+ * batches, writing INFO/DEBUG to stdout and WARN/ERROR to stderr.
+ */
+final class AsyncAppender {
+    static final AsyncAppender INSTANCE = new AsyncAppender(Integer.getInteger("log.bufferSize", 8192));
+
+    private static final int BATCH_SIZE = 256;
+
+    private final ArrayBlockingQueue<LogEvent> buffer;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+
+    private AsyncAppender(int capacity) {
+        this.buffer = new ArrayBlockingQueue<>(capacity);
+        Thread writer = new Thread(this::drainLoop, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        // Whatever is still buffered at exit is written before the JVM goes
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(1_000), "log-flush"));
+    }
+
+    void append(LogEvent event) {
+        if (buffer.offer(event)) {
+            enqueued.incrementAndGet();
+        } else {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Wait until every event enqueued before this call has been written, or the timeout passes
+     */
+    void flush(long timeoutMillis) {
+        long target = enqueued.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (written.get() < target && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+            Thread.yield();
+        }
+    }
+
+    private void drainLoop() {
+        List<LogEvent> batch = new ArrayList<>(BATCH_SIZE);
+        long reportedDrops = 0;
+        while (true) {
+            try {
+                batch.add(buffer.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            buffer.drainTo(batch, BATCH_SIZE - 1);
+
+            // Resolved per batch so System.setOut/setErr redirects are honoured
+            PrintStream out = System.out;
+            PrintStream err = System.err;
+            for (LogEvent event : batch) {
+                String line;
+                try {
+                    line = event.render();
+                } catch (RuntimeException e) {
+                    line = event.format + " (failed to format: " + e + ")";
+                }
+                (event.level.compareTo(Level.WARN) >= 0 ? err : out).println(line);
+            }
+            long drops = dropped.get();
+            if (drops != reportedDrops) {
+                err.println("logging: dropped " + (drops - reportedDrops) + " events, log buffer was full");
+                reportedDrops = drops;
+            }
+            out.flush();
+            err.flush();
+            written.addAndGet(batch.size());
+            batch.clear();
+        }
+    }
+}
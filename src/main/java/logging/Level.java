@@ -0,0 +1,8 @@
+package logging;
+
+/**
+ * Log levels, least to most severe. OFF disables logging entirely.
+ */
+public enum Level {
+    DEBUG, INFO, WARN, ERROR, OFF
+}
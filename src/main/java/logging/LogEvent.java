@@ -0,0 +1,63 @@
+package logging;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * One captured log statement; formatted into a line only on the writer thread.
+ */
+final class LogEvent {
+    private static final DateTimeFormatter TIMESTAMP =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    final long timestamp;
+    final Level level;
+    final String thread;
+    final String logger;
+    final String format;
+    final Object arg1;
+    final Object arg2;
+    final int argCount;
+
+    LogEvent(long timestamp, Level level, String thread, String logger,
+             String format, Object arg1, Object arg2, int argCount) {
+        this.timestamp = timestamp;
+        this.level = level;
+        this.thread = thread;
+        this.logger = logger;
+        this.format = format;
+        this.arg1 = arg1;
+        this.arg2 = arg2;
+        this.argCount = argCount;
+    }
+
+    String render() {
+        StringBuilder line = new StringBuilder(96 + format.length());
+        line.append(TIMESTAMP.format(Instant.ofEpochMilli(timestamp)))
+                .append(' ').append(String.format("%-5s", level))
+                .append(" [").append(thread).append("] ")
+                .append(logger).append(" - ");
+
+        Object[] args = argCount == 0 ? new Object[0]
+                : argCount == 1 ? new Object[] {arg1} : new Object[] {arg1, arg2};
+        int used = 0;
+        int from = 0;
+        int at;
+        while (used < args.length && (at = format.indexOf("{}", from)) >= 0) {
+            line.append(format, from, at).append(args[used++]);
+            from = at + 2;
+        }
+        line.append(format, from, format.length());
+
+        // A trailing Throwable without a placeholder is printed with its stack trace
+        if (used < args.length && args[args.length - 1] instanceof Throwable) {
+            StringWriter trace = new StringWriter();
+            ((Throwable) args[args.length - 1]).printStackTrace(new PrintWriter(trace));
+            line.append(System.lineSeparator()).append(trace.toString().stripTrailing());
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,121 @@
+package logging;
+
+/**
+ * Level-gated logging facade for the request path.
+ *
+ * A disabled statement is one volatile read and a compare: no string is built and,
+ * because the methods take a fixed number of arguments, no varargs array is allocated.
+ * Enabled statements only capture the format, arguments, time and thread name and hand
+ * them to the {@link AsyncAppender}; formatting and console I/O happen on its writer thread.
+ *
+ * Messages use {@code {}} placeholders. A Throwable passed as the last argument, without a
+ * placeholder of its own, is printed with its stack trace. Arguments are turned into strings
+ * on the writer thread, so pass immutable values (strings, numbers) rather than objects that
+ * are still being changed.
+ *
+ * The level comes from {@code -Dlog.level} (default INFO) and can be changed at runtime.
+ */
+public final class Logger {
+    private static volatile Level level = parseLevel(System.getProperty("log.level"));
+
+    private final String name;
+
+    private Logger(String name) {
+        this.name = name;
+    }
+
+    public static Logger getLogger(Class<?> type) {
+        return new Logger(type.getSimpleName());
+    }
+
+    public static Level getLevel() {
+        return level;
+    }
+
+    public static void setLevel(Level newLevel) {
+        level = newLevel;
+    }
+
+    /**
+     * Wait (up to a second) until everything logged so far has been written
+     */
+    public static void flush() {
+        AsyncAppender.INSTANCE.flush(1_000);
+    }
+
+    public boolean isEnabled(Level candidate) {
+        return candidate != Level.OFF && candidate.compareTo(level) >= 0;
+    }
+
+    public boolean isDebugEnabled() {
+        return isEnabled(Level.DEBUG);
+    }
+
+    public void debug(String message) {
+        log(Level.DEBUG, message, null, null, 0);
+    }
+
+    public void debug(String format, Object arg) {
+        log(Level.DEBUG, format, arg, null, 1);
+    }
+
+    public void debug(String format, Object arg1, Object arg2) {
+        log(Level.DEBUG, format, arg1, arg2, 2);
+    }
+
+    public void info(String message) {
+        log(Level.INFO, message, null, null, 0);
+    }
+
+    public void info(String format, Object arg) {
+        log(Level.INFO, format, arg, null, 1);
+    }
+
+    public void info(String format, Object arg1, Object arg2) {
+        log(Level.INFO, format, arg1, arg2, 2);
+    }
+
+    public void warn(String message) {
+        log(Level.WARN, message, null, null, 0);
+    }
+
+    public void warn(String format, Object arg) {
+        log(Level.WARN, format, arg, null, 1);
+    }
+
+    public void warn(String format, Object arg1, Object arg2) {
+        log(Level.WARN, format, arg1, arg2, 2);
+    }
+
+    public void error(String message) {
+        log(Level.ERROR, message, null, null, 0);
+    }
+
+    public void error(String format, Object arg) {
+        log(Level.ERROR, format, arg, null, 1);
+    }
+
+    public void error(String format, Object arg1, Object arg2) {
+        log(Level.ERROR, format, arg1, arg2, 2);
+    }
+
+    private void log(Level eventLevel, String format, Object arg1, Object arg2, int argCount) {
+        if (!isEnabled(eventLevel)) {
+            return;
+        }
+        AsyncAppender.INSTANCE.append(new LogEvent(System.currentTimeMillis(), eventLevel,
+                Thread.currentThread().getName(), name, format, arg1, arg2, argCount));
+    }
+
+    private static Level parseLevel(String value) {
+        if (value == null || value.isBlank()) {
+            return Level.INFO;
+        }
+        try {
+            return Level.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown log.level '" + value + "', using INFO");
+            return Level.INFO;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package metrics;
+
+import com.google.gson.JsonObject;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Named timers for the server: one per client action ({@code action.SEARCH}, ...)
+ * and one per upstream Spotify call ({@code upstream.searchTracks}, ...).
+ * Recording is lock-free, so it is cheap enough for every request.
+ */
+public class MetricsRegistry {
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+    private final long startedAt = System.currentTimeMillis();
+
+    public Timer timer(String name) {
+        Timer timer = timers.get(name);
+        return timer != null ? timer : timers.computeIfAbsent(name, Timer::new);
+    }
+
+    /**
+     * All timers, sorted by name
+     */
+    public Map<String, Timer> getTimers() {
+        return new TreeMap<>(timers);
+    }
+
+    public long getUptimeMillis() {
+        return System.currentTimeMillis() - startedAt;
+    }
+
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("uptimeMs", getUptimeMillis());
+        JsonObject timersJson = new JsonObject();
+        for (Map.Entry<String, Timer> entry : getTimers().entrySet()) {
+            timersJson.add(entry.getKey(), entry.getValue().toJson());
+        }
+        json.add("timers", timersJson);
+        return json;
+    }
+
+    /**
+     * Multi-line, human readable snapshot: one timer per line
+     */
+    public String dump() {
+        StringBuilder out = new StringBuilder(String.format("Metrics after %ds:", getUptimeMillis() / 1000));
+        for (Timer timer : getTimers().values()) {
+            out.append(System.lineSeparator()).append("  ").append(timer);
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,67 @@
+package metrics;
+
+import com.google.gson.JsonObject;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency histogram plus an error count for one kind of operation,
+ * e.g. a client action or one upstream Spotify endpoint.
+ */
+public class Timer {
+    private final String name;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLong errors = new AtomicLong();
+
+    Timer(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Record an operation that started at startNanos (from System.nanoTime) and has just finished
+     */
+    public void record(long startNanos, boolean failed) {
+        latency.recordSince(startNanos);
+        if (failed) {
+            errors.incrementAndGet();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return latency.getCount();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("count", getCount());
+        json.addProperty("errors", getErrors());
+        json.addProperty("meanMs", round(latency.getMeanNanos()));
+        json.addProperty("p50Ms", round(latency.getValueAtPercentile(50)));
+        json.addProperty("p90Ms", round(latency.getValueAtPercentile(90)));
+        json.addProperty("p99Ms", round(latency.getValueAtPercentile(99)));
+        json.addProperty("p999Ms", round(latency.getValueAtPercentile(99.9)));
+        json.addProperty("maxMs", round(latency.getMaxNanos()));
+        return json;
+    }
+
+    private static double round(double nanos) {
+        return Math.round(nanos / 1_000.0) / 1_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s errors=%d %s", name, getErrors(), latency.summary());
+    }
+}
@@ -1,61 +1,175 @@
 package model;
 
-import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import logging.Logger;
 import config.config;
-import model.Track;
-import model.Artist;
-import model.AudioFeatures;
+import metrics.MetricsRegistry;
+import metrics.Timer;
 
 import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.config.RequestConfig;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpStatus;
 import org.apache.hc.core5.http.ParseException;
 import org.apache.hc.core5.http.io.entity.EntityUtils;
 import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * REST API Client for Spotify Web API
  * Demonstrates REST API calls and JSON parsing
  */
 public class APIClient {
-    private String accessToken;
+    private static final Logger LOG = Logger.getLogger(APIClient.class);
+
+    // Time-to-live per endpoint: catalogue data changes slowly, search rankings change faster
+    static final long SEARCH_TTL_MS = TimeUnit.MINUTES.toMillis(5);
+    static final long ARTIST_SEARCH_TTL_MS = TimeUnit.MINUTES.toMillis(30);
+    static final long TOP_TRACKS_TTL_MS = TimeUnit.HOURS.toMillis(6);
+    static final long TRACK_TTL_MS = TimeUnit.HOURS.toMillis(12);
+    static final long ARTIST_ID_TTL_MS = TimeUnit.HOURS.toMillis(24);
+    private static final long AUDIO_FEATURES_TTL_MS = TimeUnit.HOURS.toMillis(24);
+    // How long past its TTL an entry may still be served while Spotify is unavailable
+    private static final long MAX_STALE_MS = TimeUnit.MINUTES.toMillis(Long.getLong("cache.maxStaleMinutes", 24 * 60));
+    // Spotify's limit for GET /audio-features?ids=
+    private static final int AUDIO_FEATURES_BATCH_SIZE = 100;
+    private static final int DEFAULT_CACHE_SIZE = 10_000;
+    // Tries per upstream call when Spotify answers 429 or a 502/503/504
+    private static final int MAX_ATTEMPTS = 3;
+    // Cache key prefixes; search and top-tracks queries are the ones worth prefetching, see prefetch()
+    static final String SEARCH_KEY_PREFIX = "search:track:";
+    static final String TOP_TRACKS_KEY_PREFIX = "top-tracks:";
+    static final String ARTIST_SEARCH_KEY_PREFIX = "search:artist:";
+    static final String TRACK_KEY_PREFIX = "track:";
+    // Window over which query popularity is counted
+    private static final int HOT_QUERY_HOURS = Integer.getInteger("hotQueries.hours", 24);
+    // Indexing costs an audio-features call per upstream result, for NearestNeighbourStrategy only;
+    // off unless -DtrackIndex.enabled=true
+    private static final boolean TRACK_INDEX_ENABLED = Boolean.getBoolean("trackIndex.enabled");
+    // Upstream results waiting to be indexed; beyond that they are dropped (they come round again)
+    private static final int INDEX_QUEUE_SIZE = 64;
+    // How long to stop indexing after the audio-features endpoint failed
+    private static final long INDEX_BACKOFF_MS = TimeUnit.MINUTES.toMillis(5);
+
+    private final String tokenUrl;
+    private final String apiBaseUrl;
+    // Bearer token for Spotify calls, renewed in the background before it expires
+    private final AccessTokenManager accessToken = new AccessTokenManager(this::requestToken);
     private final CloseableHttpClient httpClient;
+    private final InstrumentedConnectionManager connectionManager;
+    private final ResponseCache<String, Object> cache;
+    private final SingleFlight<String, Object> singleFlight = new SingleFlight<>();
+    private final ArtistIdIndex artistIndex = new ArtistIdIndex();
+    private final SpotifyJsonParser parser = new SpotifyJsonParser(artistIndex);
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final TrackVectorIndex trackIndex = new TrackVectorIndex();
+    private final ExecutorService indexer = newIndexer();
+    private volatile long indexingPausedUntil;
+    private volatile TrackCatalogue catalogue;
+    private final HotQueries hotQueries = new HotQueries(HOT_QUERY_HOURS);
+    private final UpstreamScheduler scheduler = UpstreamScheduler.fromSystemProperties();
+    // One per upstream endpoint, keyed by its timer name
+    private final ConcurrentMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
 
     public APIClient() {
-        this.httpClient = HttpClients.createDefault();
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    public APIClient(int cacheSize) {
+        this(HttpClientSettings.fromSystemProperties(), cacheSize);
+    }
+
+    public APIClient(HttpClientSettings settings, int cacheSize) {
+        this(settings, cacheSize, config.TOKEN_URL, config.API_BASE_URL);
+    }
+
+    APIClient(HttpClientSettings settings, int cacheSize, String tokenUrl, String apiBaseUrl) {
+        this.tokenUrl = tokenUrl;
+        this.apiBaseUrl = apiBaseUrl;
+        this.connectionManager = new InstrumentedConnectionManager(settings);
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(settings.getConnectionRequestTimeoutMs()))
+                        .setResponseTimeout(Timeout.ofMilliseconds(settings.getResponseTimeoutMs()))
+                        .setConnectionKeepAlive(TimeValue.ofMilliseconds(settings.getKeepAliveMs()))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(settings.getIdleEvictionMs()))
+                .build();
+        this.cache = new ResponseCache<>(cacheSize, MAX_STALE_MS);
     }
 
     /**
-     * Authenticate with Spotify API using Client Credentials Flow
-     * Demonstrates REST POST request
+     * Authenticate with Spotify API using Client Credentials Flow, then keep the token renewed
+     * before it expires. Calls made without authenticating first fetch a token on demand.
      */
     public void authenticate() throws IOException, ParseException {
+        accessToken.refresh();
+        // Never log the token itself
+        LOG.info("Successfully authenticated with Spotify API");
+    }
+
+    /**
+     * Request a new token
+     * Demonstrates REST POST request
+     */
+    private AccessTokenManager.Grant requestToken() throws IOException {
         String auth = config.CLIENT_ID + ":" + config.CLIENT_SECRET;
         String encodedAuth = Base64.getEncoder().encodeToString(auth.getBytes());
 
-        HttpPost httpPost = new HttpPost(config.TOKEN_URL);
+        HttpPost httpPost = new HttpPost(tokenUrl);
         httpPost.setHeader("Authorization", "Basic " + encodedAuth);
         httpPost.setHeader("Content-Type", "application/x-www-form-urlencoded");
         httpPost.setEntity(new StringEntity("grant_type=client_credentials"));
 
+        Timer timer = metrics.timer("upstream.authenticate");
+        long started = System.nanoTime();
+        boolean failed = true;
         try (CloseableHttpResponse response = httpClient.execute(httpPost)) {
             String jsonResponse = EntityUtils.toString(response.getEntity());
+            if (response.getCode() != HttpStatus.SC_OK) {
+                throw new IOException("Spotify token request returned HTTP " + response.getCode());
+            }
             JsonObject jsonObject = JsonParser.parseString(jsonResponse).getAsJsonObject();
-            this.accessToken = jsonObject.get("access_token").getAsString();
-            System.out.println("Successfully authenticated with Spotify API");
-            System.out.println("Access Token: " + accessToken);
-
+            long expiresIn = jsonObject.has("expires_in") ? jsonObject.get("expires_in").getAsLong() : 0;
+            AccessTokenManager.Grant grant = new AccessTokenManager.Grant(
+                    jsonObject.get("access_token").getAsString(), TimeUnit.SECONDS.toMillis(expiresIn));
+            failed = false;
+            return grant;
+        } catch (ParseException | RuntimeException e) {
+            throw new IOException("Unreadable Spotify token response: " + e.getMessage(), e);
+        } finally {
+            timer.record(started, failed);
         }
     }
 
@@ -64,189 +178,595 @@ public class APIClient {
      * Demonstrates REST GET request and JSON parsing
      */
     public List<Track> searchTracks(String query, int limit) throws IOException, ParseException {
+        String key = SEARCH_KEY_PREFIX + query + ":" + limit;
+        hotQueries.record(key);
+        return cached(key, SEARCH_TTL_MS, () -> fetchTracks(query, limit));
+    }
+
+    private List<Track> fetchTracks(String query, int limit) throws IOException, ParseException {
         String encodedQuery = URLEncoder.encode(query, StandardCharsets.UTF_8);
         String url = String.format("%s/search?q=%s&type=track&limit=%d",
-                config.API_BASE_URL, encodedQuery, limit);
+                apiBaseUrl, encodedQuery, limit);
 
-        HttpGet httpGet = new HttpGet(url);
-        httpGet.setHeader("Authorization", "Bearer " + accessToken);
+        List<Track> tracks = executeGet("upstream.searchTracks", url, parser::parseTrackSearch);
+        writeThrough(catalogue -> catalogue.putTracks(tracks));
+        return indexInBackground(tracks);
+    }
 
-        try (CloseableHttpResponse response = httpClient.execute(httpGet)) {
-            String jsonResponse = EntityUtils.toString(response.getEntity());
-            return parseTracksFromJson(jsonResponse);
+    /**
+     * Gets top tracks of artist based on seed tracks
+     */
+    public List<Track> getTopTracksForArtist(String artistId, String market) throws IOException {
+        try {
+            String key = TOP_TRACKS_KEY_PREFIX + artistId + ":" + market;
+            hotQueries.record(key);
+            return cached(key, TOP_TRACKS_TTL_MS, () -> fetchTopTracks(artistId, market));
+        } catch (ParseException e) {
+            throw new RuntimeException(e);
         }
     }
 
+    private List<Track> fetchTopTracks(String artistId, String market) throws IOException, ParseException {
+        TrackCatalogue stored = catalogue;
+        List<Track> tracks = stored == null ? null : stored.topTracks(artistId, market, TOP_TRACKS_TTL_MS);
+        if (tracks != null) {
+            // Refills the track index after a restart
+            return indexInBackground(tracks);
+        }
+
+        String url = String.format("%s/artists/%s/top-tracks?market=%s", apiBaseUrl, artistId, market);
+        List<Track> fetched = executeGet("upstream.getTopTracksForArtist", url, parser::parseTopTracks);
+        writeThrough(catalogue -> catalogue.putTopTracks(artistId, market, fetched));
+        return indexInBackground(fetched);
+    }
+
+    public List<Artist> searchArtistByName(String query) throws IOException {
+        try {
+            return cached(ARTIST_SEARCH_KEY_PREFIX + query, ARTIST_SEARCH_TTL_MS,
+                    () -> fetchArtists(query));
+        } catch (ParseException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private List<Artist> fetchArtists(String query) throws IOException, ParseException {
+        String encodedQuery = URLEncoder.encode(query, StandardCharsets.UTF_8);
+        String url = String.format("%s/search?q=%s&type=artist&limit=3", apiBaseUrl, encodedQuery);
+
+        List<Artist> artists = executeGet("upstream.searchArtistByName", url, parser::parseArtistSearch);
+        writeThrough(catalogue -> catalogue.putArtists(artists));
+        return artists;
+    }
+
     /**
-     * Parse Track objects from JSON response
-     * Demonstrates JSON parsing and object creation
+     * Resolve an artist name to a Spotify artist ID.
+     * Uses IDs already seen in track payloads and only falls back to an artist search when the name is new.
+     * Returns null if Spotify does not know the artist.
      */
-    private List<Track> parseTracksFromJson(String jsonResponse) {
-        List<Track> tracks = new ArrayList<>();
-        JsonObject root = JsonParser.parseString(jsonResponse).getAsJsonObject();
-        JsonArray items = root.getAsJsonObject("tracks").getAsJsonArray("items");
+    public String resolveArtistId(String artistName) throws IOException {
+        String artistId = artistIndex.lookup(artistName);
+        if (artistId != null) {
+            return artistId;
+        }
+        TrackCatalogue stored = catalogue;
+        artistId = stored == null ? null : stored.artistIdByName(artistName, ARTIST_ID_TTL_MS);
+        if (artistId != null) {
+            artistIndex.record(artistName, artistId);
+            return artistId;
+        }
 
-        for (int i = 0; i < items.size(); i++) {
-            JsonObject item = items.get(i).getAsJsonObject();
+        List<Artist> artistMatches = searchArtistByName(artistName);
+        if (artistMatches.isEmpty()) {
+            return null;
+        }
+        artistId = artistMatches.get(0).getId();
+        artistIndex.record(artistName, artistId);
+        return artistId;
+    }
 
-            // Extract track information
-            String id = item.get("id").getAsString();
-            String name = item.get("name").getAsString();
+    /**
+     * Get detailed information about a track by its Spotify ID.
+     */
+    public Track getTrackById(String trackId) throws IOException, ParseException {
+        return cached(TRACK_KEY_PREFIX + trackId, TRACK_TTL_MS, () -> fetchTrack(trackId));
+    }
 
-            // Extract artists
-            List<String> artists = new ArrayList<>();
-            JsonArray artistsArray = item.getAsJsonArray("artists");
-            for (int j = 0; j < artistsArray.size(); j++) {
-                artists.add(artistsArray.get(j).getAsJsonObject().get("name").getAsString());
-            }
+    private Track fetchTrack(String trackId) throws IOException, ParseException {
+        TrackCatalogue stored = catalogue;
+        Track track = stored == null ? null : stored.track(trackId, TRACK_TTL_MS);
+        if (track != null) {
+            return track;
+        }
 
-            // Extract album name
-            String albumName = item.getAsJsonObject("album").get("name").getAsString();
+        String url = String.format("%s/tracks/%s", apiBaseUrl, trackId);
+        Track fetched;
+        try {
+            fetched = executeGet("upstream.getTrackById", url, parser::parseTrack);
+        } catch (StatusException e) {
+            if (e.isBadRequest()) {
+                // Malformed or unknown ID: there is no such track
+                return null;
+            }
+            throw e;
+        }
+        writeThrough(catalogue -> catalogue.putTracks(List.of(fetched)));
+        return fetched;
+    }
 
-            // Create Track object
-            Track track = new Track(id, name, artists, albumName);
-            track.setDurationMs(item.get("duration_ms").getAsInt());
-            track.setPopularity(item.get("popularity").getAsInt());
+    /**
+     * Audio features for many tracks, keyed by track ID.
+     * Each track is cached on its own; the misses are fetched with as few upstream calls as
+     * possible, up to 100 IDs each. Tracks Spotify has no analysis for are missing from the map.
+     */
+    public Map<String, AudioFeatures> getAudioFeatures(Collection<String> trackIds) throws IOException {
+        Map<String, AudioFeatures> features = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        for (String trackId : new LinkedHashSet<>(trackIds)) {
+            if (trackId == null) {
+                continue;
+            }
+            Object hit = cache.get("audio-features:" + trackId);
+            if (hit instanceof AudioFeatures) {
+                features.put(trackId, (AudioFeatures) hit);
+            } else {
+                misses.add(trackId);
+            }
+        }
 
-            if (!item.get("preview_url").isJsonNull()) {
-                track.setPreviewUrl(item.get("preview_url").getAsString());
+        for (int from = 0; from < misses.size(); from += AUDIO_FEATURES_BATCH_SIZE) {
+            List<String> batch = misses.subList(from, Math.min(from + AUDIO_FEATURES_BATCH_SIZE, misses.size()));
+            for (AudioFeatures fetched : fetchAudioFeatures(batch)) {
+                cache.put("audio-features:" + fetched.getTrackId(), fetched, AUDIO_FEATURES_TTL_MS);
+                features.put(fetched.getTrackId(), fetched);
             }
+        }
+        return features;
+    }
 
-            tracks.add(track);
+    /**
+     * Add tracks that are not in the track index yet, with their audio features (one batched,
+     * cached lookup). Tracks Spotify has no features for stay out.
+     */
+    public void indexTracks(Collection<Track> tracks) throws IOException {
+        List<Track> missing = new ArrayList<>();
+        List<String> missingIds = new ArrayList<>();
+        for (Track track : tracks) {
+            if (track.getId() != null && !trackIndex.contains(track.getId())) {
+                missing.add(track);
+                missingIds.add(track.getId());
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
         }
 
-        return tracks;
+        Map<String, AudioFeatures> features = getAudioFeatures(missingIds);
+        for (Track track : missing) {
+            trackIndex.add(track, features.get(track.getId()));
+        }
     }
 
     /**
-     * Gets top tracks of artist based on seed tracks
+     * Fill the cache for the given query keys (as returned by {@link HotQueries#hottest}) that it
+     * does not hold yet, one after the other and behind any interactive request waiting for the
+     * upstream scheduler. Prefetches are not counted as demand.
+     *
+     * @return how many keys were fetched
      */
-    public List<Track> getTopTracksForArtist(String artistId, String market) throws IOException {
-        String url = String.format("%s/artists/%s/top-tracks?market=%s", config.API_BASE_URL, artistId, market);
+    @SuppressWarnings("try")
+    public int prefetch(List<String> keys) {
+        int fetched = 0;
+        try (UpstreamScheduler.Scope ignored = UpstreamScheduler.background()) {
+            for (String key : keys) {
+                fetched += prefetch(key) ? 1 : 0;
+            }
+        }
+        return fetched;
+    }
 
-        HttpGet httpGet = new HttpGet(url);
-        httpGet.setHeader("Authorization", "Bearer " + accessToken);
+    private boolean prefetch(String key) {
+        if (cache.get(key) != null) {
+            return false;
+        }
+        // Keys end with ":<limit>" or ":<market>"; the query itself may contain ':'
+        int separator = key.lastIndexOf(':');
+        try {
+            if (key.startsWith(SEARCH_KEY_PREFIX) && separator > SEARCH_KEY_PREFIX.length()) {
+                String query = key.substring(SEARCH_KEY_PREFIX.length(), separator);
+                int limit = Integer.parseInt(key.substring(separator + 1));
+                cached(key, SEARCH_TTL_MS, () -> fetchTracks(query, limit));
+                return true;
+            }
+            if (key.startsWith(TOP_TRACKS_KEY_PREFIX) && separator > TOP_TRACKS_KEY_PREFIX.length()) {
+                String artistId = key.substring(TOP_TRACKS_KEY_PREFIX.length(), separator);
+                String market = key.substring(separator + 1);
+                cached(key, TOP_TRACKS_TTL_MS, () -> fetchTopTracks(artistId, market));
+                return true;
+            }
+        } catch (IOException | ParseException | RuntimeException e) {
+            LOG.warn("Prefetch of {} failed: {}", key, e.getMessage());
+        }
+        return false;
+    }
 
-        try (CloseableHttpResponse response = httpClient.execute(httpGet)) {
-            String responseBody = EntityUtils.toString(response.getEntity());
-            JsonObject root = JsonParser.parseString(responseBody).getAsJsonObject();
-            JsonArray tracksArray = root.getAsJsonArray("tracks");
-            return parseTracksFromJsonArray(tracksArray);
-        } catch (ParseException e) {
-            throw new RuntimeException(e);
+    /**
+     * Keep upstream results in the on-disk catalogue, if there is one. A failed write only costs
+     * the restart benefit, so it is logged and the request goes on.
+     */
+    void writeThrough(CatalogueWrite write) {
+        TrackCatalogue stored = catalogue;
+        if (stored == null) {
+            return;
+        }
+        try {
+            write.write(stored);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Failed to write to track catalogue: {}", e.getMessage());
         }
+    }
 
+    /**
+     * Queue freshly fetched tracks for the track index, off the request path, if indexing is enabled
+     */
+    @SuppressWarnings("try")
+    List<Track> indexInBackground(List<Track> tracks) {
+        if (!TRACK_INDEX_ENABLED || tracks.isEmpty() || System.currentTimeMillis() < indexingPausedUntil) {
+            return tracks;
+        }
+        indexer.execute(() -> {
+            try (UpstreamScheduler.Scope ignored = UpstreamScheduler.background()) {
+                indexTracks(tracks);
+            } catch (IOException | RuntimeException e) {
+                // Audio features are not open to every app; do not retry on every search
+                indexingPausedUntil = System.currentTimeMillis() + INDEX_BACKOFF_MS;
+                LOG.debug("Track indexing paused: {}", e.getMessage());
+            }
+        });
+        return tracks;
     }
 
-    public List<Artist> searchArtistByName(String query) throws IOException {
-        String encodedQuery = URLEncoder.encode(query, StandardCharsets.UTF_8);
-        String url = String.format("%s/search?q=%s&type=artist&limit=3", config.API_BASE_URL, encodedQuery);
+    private static ExecutorService newIndexer() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(INDEX_QUEUE_SIZE), r -> {
+            Thread thread = new Thread(r, "track-indexer");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.DiscardPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
 
-        HttpGet httpGet = new HttpGet(url);
-        httpGet.setHeader("Authorization", "Bearer " + accessToken);
+    private List<AudioFeatures> fetchAudioFeatures(List<String> trackIds) throws IOException {
+        String url = String.format("%s/audio-features?ids=%s", apiBaseUrl,
+                URLEncoder.encode(String.join(",", trackIds), StandardCharsets.UTF_8));
 
-        try (CloseableHttpResponse response = httpClient.execute(httpGet)) {
-            String responseBody = EntityUtils.toString(response.getEntity());
-            JsonObject root = JsonParser.parseString(responseBody).getAsJsonObject();
+        return executeGet("upstream.getAudioFeatures", url, parser::parseAudioFeatures);
+    }
 
-            // 🧠 Handle error responses gracefully
-            if (root.has("error")) {
-                JsonObject error = root.getAsJsonObject("error");
-                String message = error.has("message") ? error.get("message").getAsString() : "Unknown error";
-                System.err.println("⚠️ Spotify API error: " + message);
-                return new ArrayList<>();
+    /**
+     * Authorized GET whose body is parsed as it streams off the socket, without buffering it into a String
+     */
+    private <T> T executeGet(String timerName, String url, BodyParser<T> bodyParser) throws IOException {
+        CircuitBreaker breaker = circuitBreaker(timerName);
+        boolean reauthenticated = false;
+        for (int attempt = 1; ; attempt++) {
+            // Checked before every attempt, so retries stop as soon as the circuit opens
+            CircuitBreaker.Permit permit = breaker.tryAcquire();
+            if (permit == null) {
+                throw new CircuitBreaker.OpenException(timerName);
             }
-
-            JsonObject artistsObj = root.getAsJsonObject("artists");
-            if (artistsObj == null || !artistsObj.has("items")) {
-                System.err.println("⚠️ No 'artists' object or 'items' array in response: " + responseBody);
-                return new ArrayList<>();
+            String token;
+            try {
+                scheduler.acquire();
+                token = accessToken.get();
+            } catch (IOException | RuntimeException e) {
+                permit.onIgnored();
+                throw e;
+            }
+            HttpGet httpGet = new HttpGet(url);
+            httpGet.setHeader("Authorization", "Bearer " + token);
+
+            Timer timer = metrics.timer(timerName);
+            long started = System.nanoTime();
+            boolean failed = true;
+            int status;
+            try (CloseableHttpResponse response = httpClient.execute(httpGet)) {
+                status = response.getCode();
+                HttpEntity entity = response.getEntity();
+                if (status < HttpStatus.SC_CLIENT_ERROR) {
+                    T result = bodyParser.parse(entity.getContent());
+                    // Drain whatever the parser did not need so the connection goes back to the pool
+                    EntityUtils.consume(entity);
+                    failed = false;
+                    permit.onSuccess(System.nanoTime() - started);
+                    return result;
+                }
+                // Error payloads are never handed to the parser, which would read them as empty results
+                EntityUtils.consume(entity);
+                if (status == HttpStatus.SC_TOO_MANY_REQUESTS) {
+                    Header retryAfter = response.getFirstHeader("Retry-After");
+                    scheduler.onRateLimited(UpstreamScheduler.parseRetryAfterMillis(
+                            retryAfter == null ? null : retryAfter.getValue()));
+                }
+            } catch (IOException | RuntimeException e) {
+                permit.onFailure();
+                throw e;
+            } finally {
+                timer.record(started, failed);
             }
 
-            JsonArray items = artistsObj.getAsJsonArray("items");
-            List<Artist> artists = new ArrayList<>();
+            recordErrorStatus(permit, status, System.nanoTime() - started);
 
-            for (int i = 0; i < items.size(); i++) {
-                JsonObject item = items.get(i).getAsJsonObject();
-                String id = item.get("id").getAsString();
-                String name = item.get("name").getAsString();
-                artists.add(new Artist(id, name));
+            if (status == HttpStatus.SC_UNAUTHORIZED && !reauthenticated) {
+                // Revoked or expired early: one new token (shared with other rejected calls), one more try
+                LOG.info("Spotify rejected the token, renewing it");
+                accessToken.renew(token);
+                reauthenticated = true;
+                continue;
+            }
+            if (!isRetryable(status) || attempt >= MAX_ATTEMPTS) {
+                throw new StatusException(timerName, status, attempt);
             }
+            LOG.debug("Spotify returned HTTP {}, retrying {}", status, timerName);
+            // A 429 already paused the scheduler; other errors back off on their own, with jitter
+            if (status != HttpStatus.SC_TOO_MANY_REQUESTS) {
+                sleep(UpstreamScheduler.backoffMillis(attempt));
+            }
+        }
+    }
 
-            return artists;
-        } catch (ParseException e) {
-            throw new RuntimeException(e);
+    /**
+     * Settle a circuit breaker permit for an error status; shared with {@link AsyncAPIClient}
+     */
+    static void recordErrorStatus(CircuitBreaker.Permit permit, int status, long elapsedNanos) {
+        if (status == HttpStatus.SC_TOO_MANY_REQUESTS || status == HttpStatus.SC_UNAUTHORIZED) {
+            // Throttling and token trouble say nothing about whether the endpoint is healthy
+            permit.onIgnored();
+        } else if (status >= HttpStatus.SC_SERVER_ERROR) {
+            permit.onFailure();
+        } else {
+            // The endpoint is up; it was the request that was wrong (unknown ID, bad query)
+            permit.onSuccess(elapsedNanos);
         }
     }
 
-    private List<Track> parseTracksFromJsonArray(JsonArray tracksArray) {
-        List<Track> tracks = new ArrayList<>();
+    CircuitBreaker circuitBreaker(String endpoint) {
+        return circuitBreakers.computeIfAbsent(endpoint, CircuitBreaker::fromSystemProperties);
+    }
 
-        for (int i = 0; i < tracksArray.size(); i++) {
-            JsonObject item = tracksArray.get(i).getAsJsonObject();
+    private static boolean isRetryable(int status) {
+        return status == HttpStatus.SC_TOO_MANY_REQUESTS || status == HttpStatus.SC_BAD_GATEWAY
+                || status == HttpStatus.SC_SERVICE_UNAVAILABLE || status == HttpStatus.SC_GATEWAY_TIMEOUT;
+    }
 
-            String id = item.get("id").getAsString();
-            String name = item.get("name").getAsString();
+    private static void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted before retrying Spotify");
+        }
+    }
 
-            List<String> artists = new ArrayList<>();
-            JsonArray artistsArray = item.getAsJsonArray("artists");
-            for (int j = 0; j < artistsArray.size(); j++) {
-                artists.add(artistsArray.get(j).getAsJsonObject().get("name").getAsString());
-            }
+    /**
+     * Serve from the response cache, or call upstream and remember the result.
+     * Concurrent misses for the same key share one upstream call.
+     * Empty results are not cached so a transient upstream error is not pinned for a whole TTL.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T cached(String key, long ttlMillis, UpstreamCall<T> call) throws IOException, ParseException {
+        Object hit = cache.get(key);
+        if (hit != null) {
+            return (T) hit;
+        }
 
-            String albumName = item.getAsJsonObject("album").get("name").getAsString();
+        try {
+            return (T) singleFlight.execute(key, () -> remember(key, call.execute(), ttlMillis));
+        } catch (IOException e) {
+            return (T) staleOr(key, e);
+        } catch (ParseException | RuntimeException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for " + key);
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
 
-            Track track = new Track(id, name, artists, albumName);
-            track.setDurationMs(item.get("duration_ms").getAsInt());
-            track.setPopularity(item.get("popularity").getAsInt());
+    /**
+     * Non-blocking {@link #cached}: the same cache entries, and the same single flight, so it joins
+     * a blocking call in flight for the key and the other way round. Stale fallbacks are not reported
+     * to {@link StaleResponses}, whose trackers belong to the calling thread.
+     */
+    @SuppressWarnings("unchecked")
+    <T> CompletableFuture<T> cachedAsync(String key, long ttlMillis, Supplier<CompletableFuture<T>> call) {
+        Object hit = cache.get(key);
+        if (hit != null) {
+            return CompletableFuture.completedFuture((T) hit);
+        }
 
-            tracks.add(track);
+        return singleFlight.executeAsync(key, () -> call.get().thenApply(value -> remember(key, value, ttlMillis)))
+                .exceptionallyCompose(error -> {
+                    Throwable failure = error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error;
+                    Object stale = staleFor(key, failure);
+                    return stale != null ? CompletableFuture.completedFuture(stale) : CompletableFuture.failedFuture(failure);
+                })
+                .thenApply(value -> (T) value);
+    }
+
+    /**
+     * Cache a fresh upstream result; lists are frozen, and empty ones are not cached
+     */
+    private Object remember(String key, Object value, long ttlMillis) {
+        if (value instanceof List) {
+            value = List.copyOf((List<?>) value);
+            if (((List<?>) value).isEmpty()) {
+                return value;
+            }
+        }
+        if (value != null) {
+            cache.put(key, value, ttlMillis);
         }
+        return value;
+    }
 
-        return tracks;
+    /**
+     * The expired entry for {@code key} in place of a failed upstream call (reported to
+     * {@link StaleResponses}), or the failure if there is none: during an outage an old answer
+     * now beats a fresh one never
+     */
+    private Object staleOr(String key, IOException failure) throws IOException {
+        Object stale = staleFor(key, failure);
+        if (stale == null) {
+            throw failure;
+        }
+        StaleResponses.markServed();
+        return stale;
+    }
+
+    private Object staleFor(String key, Throwable failure) {
+        boolean upstreamTrouble = failure instanceof IOException && !(failure instanceof InterruptedIOException)
+                && !(failure instanceof StatusException && ((StatusException) failure).isBadRequest());
+        Object stale = upstreamTrouble ? cache.getStale(key) : null;
+        if (stale != null) {
+            LOG.debug("Serving stale {}: {}", key, failure.getMessage());
+        }
+        return stale;
+    }
+
+    public ResponseCache<String, Object> getCache() {
+        return cache;
+    }
+
+    public SingleFlight<String, Object> getSingleFlight() {
+        return singleFlight;
     }
 
     /**
-     * Get detailed information about a track by its Spotify ID.
+     * Base URL of the Spotify Web API; shared with {@link AsyncAPIClient}
      */
-    public Track getTrackById(String trackId) throws IOException, ParseException {
-        String url = String.format("%s/tracks/%s", config.API_BASE_URL, trackId);
+    String getApiBaseUrl() {
+        return apiBaseUrl;
+    }
 
-        HttpGet httpGet = new HttpGet(url);
-        httpGet.setHeader("Authorization", "Bearer " + accessToken);
+    /**
+     * Bearer token for Spotify calls; shared with {@link AsyncAPIClient}
+     */
+    AccessTokenManager getAccessTokenManager() {
+        return accessToken;
+    }
 
-        try (CloseableHttpResponse response = httpClient.execute(httpGet)) {
-            String responseBody = EntityUtils.toString(response.getEntity());
-            JsonObject item = JsonParser.parseString(responseBody).getAsJsonObject();
+    /**
+     * Pool occupancy and lease-wait statistics for the shared HTTP connection pool
+     */
+    public InstrumentedConnectionManager getConnectionManager() {
+        return connectionManager;
+    }
 
-            // ✅ Extract track data
-            String id = item.get("id").getAsString();
-            String name = item.get("name").getAsString();
+    public ArtistIdIndex getArtistIndex() {
+        return artistIndex;
+    }
 
-            // Extract artist names
-            List<String> artists = new ArrayList<>();
-            JsonArray artistsArray = item.getAsJsonArray("artists");
-            for (int j = 0; j < artistsArray.size(); j++) {
-                artists.add(artistsArray.get(j).getAsJsonObject().get("name").getAsString());
-            }
+    /**
+     * Nearest-neighbour index over the audio features of tracks seen in upstream results
+     */
+    public TrackVectorIndex getTrackIndex() {
+        return trackIndex;
+    }
 
-            // Album name
-            String albumName = item.getAsJsonObject("album").get("name").getAsString();
+    /**
+     * Paces every upstream call; shared with {@link AsyncAPIClient}
+     */
+    public UpstreamScheduler getUpstreamScheduler() {
+        return scheduler;
+    }
 
-            // Create Track object
-            Track track = new Track(id, name, artists, albumName);
-            track.setDurationMs(item.get("duration_ms").getAsInt());
-            track.setPopularity(item.get("popularity").getAsInt());
+    /**
+     * Circuit breakers of the endpoints called so far
+     */
+    public Collection<CircuitBreaker> getCircuitBreakers() {
+        return circuitBreakers.values();
+    }
 
-            if (!item.get("preview_url").isJsonNull()) {
-                track.setPreviewUrl(item.get("preview_url").getAsString());
-            }
+    /**
+     * Request counts per search and top-tracks query over the last hours, cache hits included
+     */
+    public HotQueries getHotQueries() {
+        return hotQueries;
+    }
 
-            return track;
-        }
+    /**
+     * Use an on-disk catalogue behind the memory cache: misses for tracks, top tracks and artist
+     * names are answered from it when fresh enough, and upstream results are written to it.
+     * The client closes it on {@link #close()}.
+     */
+    public void setCatalogue(TrackCatalogue catalogue) {
+        this.catalogue = catalogue;
+    }
+
+    public TrackCatalogue getCatalogue() {
+        return catalogue;
+    }
+
+    /**
+     * Timings of upstream Spotify calls (cache hits are not counted); shared with the server's own timers
+     */
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    @FunctionalInterface
+    private interface BodyParser<T> {
+        T parse(InputStream body) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface UpstreamCall<T> {
+        T execute() throws IOException, ParseException;
+    }
+
+    @FunctionalInterface
+    interface CatalogueWrite {
+        void write(TrackCatalogue catalogue) throws IOException;
     }
 
     public void close() throws IOException {
+        indexer.shutdownNow();
+        accessToken.close();
         httpClient.close();
+        TrackCatalogue stored = catalogue;
+        if (stored != null) {
+            stored.close();
+        }
+    }
+
+    /**
+     * Spotify answered with an error status
+     */
+    public static final class StatusException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        StatusException(String endpoint, int status, int attempts) {
+            super("Spotify returned HTTP " + status + " for " + endpoint
+                    + (attempts > 1 ? " after " + attempts + " attempts" : ""));
+            this.status = status;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        /**
+         * A 4xx other than 401 and 429: the request itself was wrong, so neither retrying nor an
+         * older cached answer would help
+         */
+        public boolean isBadRequest() {
+            return status >= HttpStatus.SC_CLIENT_ERROR && status < HttpStatus.SC_SERVER_ERROR
+                    && status != HttpStatus.SC_UNAUTHORIZED && status != HttpStatus.SC_TOO_MANY_REQUESTS;
+        }
     }
-}
\ No newline at end of file
+}
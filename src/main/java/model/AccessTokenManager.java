@@ -0,0 +1,218 @@
+package model;
+
+import logging.Logger;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps a valid Spotify bearer token on hand for {@link APIClient} and {@link AsyncAPIClient}.
+ *
+ * A new token is requested in the background a few minutes before the current one expires, so
+ * requests never wait for a renewal or go out with a token Spotify has already dropped. Each token
+ * is published as one immutable value, so a reader sees the old token or the new one, never a mix.
+ * If Spotify still rejects a token (401), {@link #renew(String)} fetches a new one once, however
+ * many requests were rejected at the same time. Likewise, callers that waited for a fetch that
+ * failed get its error rather than trying again one after another, each with its own timeout.
+ */
+public class AccessTokenManager {
+    private static final Logger LOG = Logger.getLogger(AccessTokenManager.class);
+
+    // Lifetime assumed when the token response has no expires_in (Spotify's is an hour)
+    static final long DEFAULT_LIFETIME_MS = TimeUnit.HOURS.toMillis(1);
+    // Renew this long before expiry, or half way through a shorter lifetime
+    private static final long RENEW_BEFORE_EXPIRY_MS = TimeUnit.MINUTES.toMillis(5);
+    // A token this close to expiry is not handed out; it could lapse on the way to Spotify
+    private static final long EXPIRY_SKEW_MS = TimeUnit.SECONDS.toMillis(10);
+    private static final long RETRY_DELAY_MS = TimeUnit.SECONDS.toMillis(30);
+
+    private final TokenSource source;
+    private final LongSupplier clock;
+    private final ScheduledExecutorService renewer;
+    private final Object renewLock = new Object();
+    private volatile Token current;
+    private ScheduledFuture<?> scheduledRenewal;
+    // Fetches finished so far, and the error of the last one if it failed (written under renewLock)
+    private volatile long fetchesDone;
+    private IOException lastFetchFailure;
+
+    private final AtomicLong renewals = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public AccessTokenManager(TokenSource source) {
+        this(source, System::currentTimeMillis);
+    }
+
+    AccessTokenManager(TokenSource source, LongSupplier clock) {
+        this.source = source;
+        this.clock = clock;
+        this.renewer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "token-renewer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * The current token; fetched first if there is none yet or it has expired
+     */
+    public String get() throws IOException {
+        Token token = current;
+        if (token != null && !token.expiresWithin(clock.getAsLong(), EXPIRY_SKEW_MS)) {
+            return token.value;
+        }
+        return renew(token == null ? null : token.value);
+    }
+
+    /**
+     * Fetch a token now and keep renewing it before it expires
+     */
+    public void refresh() throws IOException {
+        synchronized (renewLock) {
+            fetch();
+        }
+    }
+
+    /**
+     * Replace a token Spotify rejected. Callers rejected at the same time share one fetch:
+     * if the token has already moved on from {@code rejected}, the newer one is returned as is,
+     * and if a fetch failed while this caller waited, it fails with that error.
+     */
+    public String renew(String rejected) throws IOException {
+        long fetchesBefore = fetchesDone;
+        synchronized (renewLock) {
+            Token token = current;
+            if (token != null && !token.value.equals(rejected)
+                    && !token.expiresWithin(clock.getAsLong(), EXPIRY_SKEW_MS)) {
+                return token.value;
+            }
+            if (fetchesDone != fetchesBefore && lastFetchFailure != null) {
+                throw new IOException("Spotify token request just failed: " + lastFetchFailure.getMessage(),
+                        lastFetchFailure);
+            }
+            return fetch().value;
+        }
+    }
+
+    /**
+     * {@link #renew(String)} on the renewal thread, for callers that must not block
+     */
+    public void renewInBackground(String rejected) {
+        try {
+            renewer.execute(() -> {
+                try {
+                    renew(rejected);
+                } catch (IOException | RuntimeException e) {
+                    LOG.warn("Failed to renew Spotify token: {}", e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Closed
+        }
+    }
+
+    // Caller holds renewLock
+    private Token fetch() throws IOException {
+        long requestedAt = clock.getAsLong();
+        Grant grant;
+        try {
+            grant = source.fetch();
+        } catch (IOException | RuntimeException e) {
+            failures.incrementAndGet();
+            lastFetchFailure = e instanceof IOException ? (IOException) e : new IOException(e);
+            fetchesDone++;
+            if (current != null) {
+                // Keep trying while there is a token to keep alive
+                scheduleRenewal(RETRY_DELAY_MS);
+            }
+            throw e;
+        }
+        long lifetime = grant.lifetimeMs > 0 ? grant.lifetimeMs : DEFAULT_LIFETIME_MS;
+        // Count the lifetime from before the request, so network time cannot make us overestimate it
+        Token token = new Token(grant.value, requestedAt + lifetime);
+        current = token;
+        lastFetchFailure = null;
+        fetchesDone++;
+        renewals.incrementAndGet();
+        scheduleRenewal(Math.max(lifetime / 2, lifetime - RENEW_BEFORE_EXPIRY_MS));
+        return token;
+    }
+
+    private void scheduleRenewal(long delayMs) {
+        if (scheduledRenewal != null) {
+            scheduledRenewal.cancel(false);
+        }
+        try {
+            scheduledRenewal = renewer.schedule(this::renewScheduled, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Closed
+        }
+    }
+
+    private void renewScheduled() {
+        try {
+            synchronized (renewLock) {
+                fetch();
+            }
+            LOG.info("Renewed Spotify token");
+        } catch (IOException | RuntimeException e) {
+            // The old token may still have some life in it; fetch() has scheduled another try
+            LOG.warn("Failed to renew Spotify token, retrying in {} s: {}",
+                    TimeUnit.MILLISECONDS.toSeconds(RETRY_DELAY_MS), e.getMessage());
+        }
+    }
+
+    /** Tokens fetched, on schedule or on demand */
+    public long getRenewals() {
+        return renewals.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    public void close() {
+        renewer.shutdownNow();
+    }
+
+    /**
+     * Requests a token from Spotify
+     */
+    @FunctionalInterface
+    public interface TokenSource {
+        Grant fetch() throws IOException;
+    }
+
+    /**
+     * A token as Spotify issued it: its value and how long it is valid for
+     */
+    public static final class Grant {
+        private final String value;
+        private final long lifetimeMs;
+
+        public Grant(String value, long lifetimeMs) {
+            this.value = value;
+            this.lifetimeMs = lifetimeMs;
+        }
+    }
+
+    private static final class Token {
+        private final String value;
+        private final long expiresAt;
+
+        private Token(String value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean expiresWithin(long now, long margin) {
+            return expiresAt - margin <= now;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package model;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the Spotify ID of every artist name seen in API payloads, so a
+ * recommendation can go from a track's artist name straight to top tracks
+ * without an extra artist search round trip.
+ */
+public class ArtistIdIndex {
+    private static final int DEFAULT_MAX_ENTRIES = 100_000;
+
+    private final ConcurrentMap<String, String> idsByName = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public ArtistIdIndex() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public ArtistIdIndex(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Record an artist name to ID mapping. The first ID seen for a name is kept.
+     */
+    public void record(String name, String id) {
+        if (name == null || id == null || idsByName.size() >= maxEntries) {
+            return;
+        }
+        idsByName.putIfAbsent(name, id);
+    }
+
+    /**
+     * Look up the artist ID for a name, or null if it has not been seen yet
+     */
+    public String lookup(String name) {
+        String id = name == null ? null : idsByName.get(name);
+        if (id == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return id;
+    }
+
+    public int size() {
+        return idsByName.size();
+    }
+
+    /**
+     * Copy of every name to ID mapping, e.g. for a snapshot
+     */
+    public Map<String, String> entries() {
+        return Map.copyOf(idsByName);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ArtistIdIndex[size=%d, hits=%d, misses=%d]", size(), getHits(), getMisses());
+    }
+}
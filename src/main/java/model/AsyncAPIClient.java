@@ -0,0 +1,259 @@
+package model;
+
+import metrics.Timer;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.config.TlsConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Non-blocking counterpart of {@link APIClient}.
+ * Runs on httpclient5's async I/O reactor and negotiates HTTP/2 where Spotify offers it,
+ * so many upstream calls share a few connections and no thread waits on a response.
+ * Everything but the transport is shared with the blocking client it wraps: the token, the
+ * artist index, the response cache and single flight, the catalogue, rate limiting and circuit
+ * breakers. Calls do not wait for a rate-limit slot or retry; they fail instead, so callers can
+ * fall back to {@link APIClient}.
+ */
+public class AsyncAPIClient {
+    private final APIClient apiClient;
+    private final SpotifyJsonParser parser;
+    private final CloseableHttpAsyncClient httpClient;
+
+    public AsyncAPIClient(APIClient apiClient) {
+        this(apiClient, HttpClientSettings.fromSystemProperties());
+    }
+
+    public AsyncAPIClient(APIClient apiClient, HttpClientSettings settings) {
+        this.apiClient = apiClient;
+        this.parser = new SpotifyJsonParser(apiClient.getArtistIndex());
+
+        PoolingAsyncClientConnectionManager connectionManager = PoolingAsyncClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(settings.getMaxConnectionsTotal())
+                .setMaxConnPerRoute(settings.getMaxConnectionsPerRoute())
+                .setDefaultTlsConfig(TlsConfig.custom()
+                        .setVersionPolicy(HttpVersionPolicy.NEGOTIATE)
+                        .build())
+                .build();
+
+        this.httpClient = HttpAsyncClients.custom()
+                .setConnectionManager(connectionManager)
+                .setIOReactorConfig(IOReactorConfig.custom()
+                        .setSoTimeout(Timeout.ofMilliseconds(settings.getResponseTimeoutMs()))
+                        .build())
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(settings.getConnectionRequestTimeoutMs()))
+                        .setResponseTimeout(Timeout.ofMilliseconds(settings.getResponseTimeoutMs()))
+                        .setConnectionKeepAlive(TimeValue.ofMilliseconds(settings.getKeepAliveMs()))
+                        .build())
+                .evictIdleConnections(TimeValue.ofMilliseconds(settings.getIdleEvictionMs()))
+                .build();
+        this.httpClient.start();
+    }
+
+    /**
+     * Search for tracks by query
+     */
+    public CompletableFuture<List<Track>> searchTracks(String query, int limit) {
+        String key = APIClient.SEARCH_KEY_PREFIX + query + ":" + limit;
+        apiClient.getHotQueries().record(key);
+        return apiClient.cachedAsync(key, APIClient.SEARCH_TTL_MS, () -> {
+            String encodedQuery = URLEncoder.encode(query, StandardCharsets.UTF_8);
+            String url = String.format("%s/search?q=%s&type=track&limit=%d",
+                    apiClient.getApiBaseUrl(), encodedQuery, limit);
+            return get("upstream.searchTracks", url, parser::parseTrackSearch).thenApply(tracks -> {
+                apiClient.writeThrough(catalogue -> catalogue.putTracks(tracks));
+                return apiClient.indexInBackground(tracks);
+            });
+        });
+    }
+
+    /**
+     * Gets top tracks of an artist
+     */
+    public CompletableFuture<List<Track>> getTopTracksForArtist(String artistId, String market) {
+        String key = APIClient.TOP_TRACKS_KEY_PREFIX + artistId + ":" + market;
+        apiClient.getHotQueries().record(key);
+        return apiClient.cachedAsync(key, APIClient.TOP_TRACKS_TTL_MS, () -> {
+            TrackCatalogue stored = apiClient.getCatalogue();
+            List<Track> tracks = stored == null ? null : stored.topTracks(artistId, market, APIClient.TOP_TRACKS_TTL_MS);
+            if (tracks != null) {
+                return CompletableFuture.completedFuture(apiClient.indexInBackground(tracks));
+            }
+            String url = String.format("%s/artists/%s/top-tracks?market=%s", apiClient.getApiBaseUrl(), artistId, market);
+            return get("upstream.getTopTracksForArtist", url, parser::parseTopTracks).thenApply(fetched -> {
+                apiClient.writeThrough(catalogue -> catalogue.putTopTracks(artistId, market, fetched));
+                return apiClient.indexInBackground(fetched);
+            });
+        });
+    }
+
+    public CompletableFuture<List<Artist>> searchArtistByName(String query) {
+        return apiClient.cachedAsync(APIClient.ARTIST_SEARCH_KEY_PREFIX + query, APIClient.ARTIST_SEARCH_TTL_MS, () -> {
+            String encodedQuery = URLEncoder.encode(query, StandardCharsets.UTF_8);
+            String url = String.format("%s/search?q=%s&type=artist&limit=3", apiClient.getApiBaseUrl(), encodedQuery);
+            return get("upstream.searchArtistByName", url, parser::parseArtistSearch).thenApply(artists -> {
+                apiClient.writeThrough(catalogue -> catalogue.putArtists(artists));
+                return artists;
+            });
+        });
+    }
+
+    /**
+     * Get detailed information about a track by its Spotify ID.
+     * Completes with null if Spotify does not know the ID.
+     */
+    public CompletableFuture<Track> getTrackById(String trackId) {
+        return apiClient.cachedAsync(APIClient.TRACK_KEY_PREFIX + trackId, APIClient.TRACK_TTL_MS, () -> {
+            TrackCatalogue stored = apiClient.getCatalogue();
+            Track track = stored == null ? null : stored.track(trackId, APIClient.TRACK_TTL_MS);
+            if (track != null) {
+                return CompletableFuture.completedFuture(track);
+            }
+            String url = String.format("%s/tracks/%s", apiClient.getApiBaseUrl(), trackId);
+            return get("upstream.getTrackById", url, parser::parseTrack).handle((fetched, error) -> {
+                if (error == null) {
+                    apiClient.writeThrough(catalogue -> catalogue.putTracks(List.of(fetched)));
+                    return fetched;
+                }
+                if (error instanceof APIClient.StatusException && ((APIClient.StatusException) error).isBadRequest()) {
+                    // Malformed or unknown ID: there is no such track
+                    return null;
+                }
+                throw error instanceof CompletionException ? (CompletionException) error : new CompletionException(error);
+            });
+        });
+    }
+
+    /**
+     * Resolve an artist name to an ID, searching only if the name has not been seen before.
+     * Completes with null if Spotify does not know the artist.
+     */
+    public CompletableFuture<String> resolveArtistId(String artistName) {
+        String known = apiClient.getArtistIndex().lookup(artistName);
+        if (known == null) {
+            TrackCatalogue stored = apiClient.getCatalogue();
+            known = stored == null ? null : stored.artistIdByName(artistName, APIClient.ARTIST_ID_TTL_MS);
+            if (known != null) {
+                apiClient.getArtistIndex().record(artistName, known);
+            }
+        }
+        if (known != null) {
+            return CompletableFuture.completedFuture(known);
+        }
+        return searchArtistByName(artistName).thenApply(matches -> {
+            if (matches.isEmpty()) {
+                return null;
+            }
+            String artistId = matches.get(0).getId();
+            apiClient.getArtistIndex().record(artistName, artistId);
+            return artistId;
+        });
+    }
+
+    /**
+     * One authorized GET, with no retries: waiting to retry would mean holding a thread.
+     * Fails fast instead when the circuit is open or no request slot is free right now, and
+     * error statuses complete it with an {@link APIClient.StatusException}. The caller decides
+     * whether to fall back to {@link APIClient}, which waits and retries.
+     */
+    private <T> CompletableFuture<T> get(String timerName, String url, BodyParser<T> parse) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        CircuitBreaker.Permit permit = apiClient.circuitBreaker(timerName).tryAcquire();
+        if (permit == null) {
+            future.completeExceptionally(new CircuitBreaker.OpenException(timerName));
+            return future;
+        }
+        UpstreamScheduler scheduler = apiClient.getUpstreamScheduler();
+        AccessTokenManager tokens = apiClient.getAccessTokenManager();
+        String token;
+        try {
+            if (!scheduler.tryAcquire()) {
+                throw new IOException("Spotify rate limit: no request slot free for " + timerName);
+            }
+            token = tokens.get();
+        } catch (IOException | RuntimeException e) {
+            permit.onIgnored();
+            future.completeExceptionally(e);
+            return future;
+        }
+        SimpleHttpRequest request = SimpleRequestBuilder.get(url)
+                .setHeader("Authorization", "Bearer " + token)
+                .build();
+
+        Timer timer = apiClient.getMetrics().timer(timerName);
+        long started = System.nanoTime();
+        future.whenComplete((result, error) -> timer.record(started, error != null));
+        httpClient.execute(request, new FutureCallback<SimpleHttpResponse>() {
+            @Override
+            public void completed(SimpleHttpResponse response) {
+                int status = response.getCode();
+                if (status < HttpStatus.SC_CLIENT_ERROR) {
+                    permit.onSuccess(System.nanoTime() - started);
+                    try {
+                        byte[] body = response.getBodyBytes();
+                        future.complete(parse.parse(new ByteArrayInputStream(body == null ? new byte[0] : body)));
+                    } catch (IOException | RuntimeException e) {
+                        future.completeExceptionally(e);
+                    }
+                    return;
+                }
+                APIClient.recordErrorStatus(permit, status, System.nanoTime() - started);
+                if (status == HttpStatus.SC_TOO_MANY_REQUESTS) {
+                    Header retryAfter = response.getFirstHeader("Retry-After");
+                    scheduler.onRateLimited(UpstreamScheduler.parseRetryAfterMillis(
+                            retryAfter == null ? null : retryAfter.getValue()));
+                }
+                if (status == HttpStatus.SC_UNAUTHORIZED) {
+                    // Callback threads must not block on the token request
+                    tokens.renewInBackground(token);
+                }
+                future.completeExceptionally(new APIClient.StatusException(timerName, status, 1));
+            }
+
+            @Override
+            public void failed(Exception ex) {
+                permit.onFailure();
+                future.completeExceptionally(ex);
+            }
+
+            @Override
+            public void cancelled() {
+                permit.onIgnored();
+                future.cancel(false);
+            }
+        });
+        return future;
+    }
+
+    @FunctionalInterface
+    private interface BodyParser<T> {
+        T parse(InputStream body) throws IOException;
+    }
+
+    public void close() {
+        httpClient.close(CloseMode.GRACEFUL);
+    }
+}
@@ -0,0 +1,124 @@
+package model;
+
+import logging.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recommends the candidates that sound most like the seeds.
+ *
+ * Candidates come from another strategy (by default {@link BlendedStrategy}: top tracks of every
+ * seed artist). Audio features for seeds and candidates are fetched in one batched call, the
+ * seeds' normalized vectors are averaged into a profile, and candidates are ranked by their
+ * distance to it. If Spotify has no features at all (the endpoint is not open to every app),
+ * the candidate strategy's own order is kept.
+ */
+public class AudioFeatureStrategy implements RecommendationStrategy {
+    private static final Logger LOG = Logger.getLogger(AudioFeatureStrategy.class);
+
+    // Candidates to re-rank; with the seeds this fits in one or two audio-features calls
+    private static final int CANDIDATE_POOL = 100;
+
+    public enum Metric {
+        EUCLIDEAN,
+        COSINE
+    }
+
+    private final APIClient apiClient;
+    private final RecommendationStrategy candidateSource;
+    private final Metric metric;
+
+    public AudioFeatureStrategy(APIClient apiClient) {
+        this(apiClient, new BlendedStrategy(apiClient), Metric.EUCLIDEAN);
+    }
+
+    public AudioFeatureStrategy(APIClient apiClient, RecommendationStrategy candidateSource, Metric metric) {
+        this.apiClient = apiClient;
+        this.candidateSource = candidateSource;
+        this.metric = metric;
+    }
+
+    @Override
+    public List<Track> recommend(List<Track> userTracks, int count) {
+        if (userTracks == null || userTracks.isEmpty() || count <= 0) {
+            LOG.warn("No seed tracks provided for recommendation.");
+            return new ArrayList<>();
+        }
+
+        List<Track> candidates = candidateSource.recommend(userTracks, Math.max(count, CANDIDATE_POOL));
+        if (candidates.size() <= 1) {
+            return candidates;
+        }
+
+        List<String> trackIds = new ArrayList<>(userTracks.size() + candidates.size());
+        for (Track seed : userTracks) {
+            trackIds.add(seed.getId());
+        }
+        for (Track candidate : candidates) {
+            trackIds.add(candidate.getId());
+        }
+
+        Map<String, AudioFeatures> features;
+        try {
+            features = apiClient.getAudioFeatures(trackIds);
+        } catch (IOException e) {
+            LOG.warn("Audio features unavailable, keeping candidate order: {}", e.getMessage());
+            return limit(candidates, count);
+        }
+
+        AudioFeatureVectors seedVectors = new AudioFeatureVectors(userTracks.size());
+        for (Track seed : userTracks) {
+            AudioFeatures seedFeatures = features.get(seed.getId());
+            if (seedFeatures != null) {
+                seedVectors.add(seedFeatures);
+            }
+        }
+        if (seedVectors.size() == 0) {
+            LOG.debug("No audio features for any seed, keeping candidate order");
+            return limit(candidates, count);
+        }
+
+        // Row i of the matrix is candidates.get(candidateRows[i])
+        AudioFeatureVectors candidateVectors = new AudioFeatureVectors(candidates.size());
+        int[] candidateRows = new int[candidates.size()];
+        boolean[] ranked = new boolean[candidates.size()];
+        for (int i = 0; i < candidates.size(); i++) {
+            AudioFeatures candidateFeatures = features.get(candidates.get(i).getId());
+            if (candidateFeatures != null) {
+                candidateRows[candidateVectors.add(candidateFeatures)] = i;
+            }
+        }
+
+        double[] distances = new double[candidateVectors.size()];
+        if (metric == Metric.COSINE) {
+            candidateVectors.cosineDistance(seedVectors.centroid(), distances);
+        } else {
+            candidateVectors.squaredEuclidean(seedVectors.centroid(), distances);
+        }
+
+        List<Track> recommendations = new ArrayList<>(count);
+        for (int row : AudioFeatureVectors.smallest(distances, candidateVectors.size(), count)) {
+            recommendations.add(candidates.get(candidateRows[row]));
+            ranked[candidateRows[row]] = true;
+        }
+        // Candidates without features only fill up a short list, in their original order
+        for (int i = 0; i < candidates.size() && recommendations.size() < count; i++) {
+            if (!ranked[i] && !features.containsKey(candidates.get(i).getId())) {
+                recommendations.add(candidates.get(i));
+            }
+        }
+        return recommendations;
+    }
+
+    private static List<Track> limit(List<Track> tracks, int count) {
+        return tracks.size() > count ? new ArrayList<>(tracks.subList(0, count)) : tracks;
+    }
+
+    @Override
+    public String getStrategyName() {
+        return "Audio Feature Similarity";
+    }
+}
@@ -0,0 +1,160 @@
+package model;
+
+/**
+ * Normalized audio feature vectors packed into one {@code float[]}, one row per track.
+ *
+ * Rows are (danceability, energy, valence, tempo, acousticness), all scaled to 0..1, so every
+ * feature weighs the same in a distance. Scoring walks the flat array with no boxing and no
+ * per-track objects, which keeps ranking thousands of candidates cheap.
+ */
+public final class AudioFeatureVectors {
+    public static final int DIMENSIONS = 5;
+
+    // Tempo range mapped to 0..1; Spotify reports 0 for tracks it could not analyse
+    private static final double MIN_TEMPO = 40;
+    private static final double MAX_TEMPO = 220;
+
+    private float[] values;
+    private int size;
+
+    public AudioFeatureVectors(int expectedSize) {
+        this.values = new float[Math.max(1, expectedSize) * DIMENSIONS];
+    }
+
+    /**
+     * Append a track's normalized vector and return its row
+     */
+    public int add(AudioFeatures features) {
+        if ((size + 1) * DIMENSIONS > values.length) {
+            float[] larger = new float[values.length * 2];
+            System.arraycopy(values, 0, larger, 0, size * DIMENSIONS);
+            values = larger;
+        }
+        normalize(features, values, size * DIMENSIONS);
+        return size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * One component of a row's normalized vector
+     */
+    public float value(int row, int dimension) {
+        return values[row * DIMENSIONS + dimension];
+    }
+
+    /**
+     * Write the normalized vector for one track at {@code offset}
+     */
+    public static void normalize(AudioFeatures features, float[] out, int offset) {
+        out[offset] = (float) clamp(features.getDanceability());
+        out[offset + 1] = (float) clamp(features.getEnergy());
+        out[offset + 2] = (float) clamp(features.getValence());
+        out[offset + 3] = (float) clamp((features.getTempo() - MIN_TEMPO) / (MAX_TEMPO - MIN_TEMPO));
+        out[offset + 4] = (float) clamp(features.getAcousticness());
+    }
+
+    /**
+     * Mean of all rows, e.g. the profile of several seed tracks
+     */
+    public float[] centroid() {
+        float[] centroid = new float[DIMENSIONS];
+        for (int row = 0; row < size; row++) {
+            int offset = row * DIMENSIONS;
+            for (int d = 0; d < DIMENSIONS; d++) {
+                centroid[d] += values[offset + d];
+            }
+        }
+        if (size > 0) {
+            for (int d = 0; d < DIMENSIONS; d++) {
+                centroid[d] /= size;
+            }
+        }
+        return centroid;
+    }
+
+    /**
+     * Squared euclidean distance of every row to {@code query}, into {@code out[row]}
+     */
+    public void squaredEuclidean(float[] query, double[] out) {
+        for (int row = 0; row < size; row++) {
+            int offset = row * DIMENSIONS;
+            double sum = 0;
+            for (int d = 0; d < DIMENSIONS; d++) {
+                double diff = values[offset + d] - query[d];
+                sum += diff * diff;
+            }
+            out[row] = sum;
+        }
+    }
+
+    /**
+     * Squared euclidean distance of one row to {@code query}
+     */
+    public double squaredEuclidean(int row, float[] query) {
+        int offset = row * DIMENSIONS;
+        double sum = 0;
+        for (int d = 0; d < DIMENSIONS; d++) {
+            double diff = values[offset + d] - query[d];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    /**
+     * Cosine distance (1 - cosine similarity) of every row to {@code query}, into {@code out[row]}.
+     * A zero vector is treated as maximally distant.
+     */
+    public void cosineDistance(float[] query, double[] out) {
+        double queryNorm = 0;
+        for (int d = 0; d < DIMENSIONS; d++) {
+            queryNorm += query[d] * query[d];
+        }
+        queryNorm = Math.sqrt(queryNorm);
+
+        for (int row = 0; row < size; row++) {
+            int offset = row * DIMENSIONS;
+            double dot = 0;
+            double norm = 0;
+            for (int d = 0; d < DIMENSIONS; d++) {
+                float v = values[offset + d];
+                dot += v * query[d];
+                norm += v * v;
+            }
+            double denominator = Math.sqrt(norm) * queryNorm;
+            out[row] = denominator == 0 ? 2 : 1 - dot / denominator;
+        }
+    }
+
+    /**
+     * Rows of the {@code k} smallest values among the first {@code n}, closest first.
+     * Insertion into a k-sized window: no boxing, and cheap for the small k of a recommendation list.
+     */
+    public static int[] smallest(double[] values, int n, int k) {
+        int limit = Math.min(k, n);
+        int[] rows = new int[limit];
+        if (limit == 0) {
+            return rows;
+        }
+        int filled = 0;
+        for (int row = 0; row < n; row++) {
+            double value = values[row];
+            if (filled == limit && value >= values[rows[limit - 1]]) {
+                continue;
+            }
+            int position = filled < limit ? filled++ : limit - 1;
+            while (position > 0 && values[rows[position - 1]] > value) {
+                rows[position] = rows[position - 1];
+                position--;
+            }
+            rows[position] = row;
+        }
+        return rows;
+    }
+
+    private static double clamp(double value) {
+        return value < 0 ? 0 : value > 1 ? 1 : value;
+    }
+}
@@ -2,6 +2,8 @@ package model;
 
 /**
  * Represents audio analysis features from Spotify API
+ * (GET /audio-features, see {@link APIClient#getAudioFeatures}).
+ * Danceability, energy, valence and acousticness are 0..1; tempo is in BPM.
  */
 public class AudioFeatures {
     private String trackId;
@@ -15,6 +17,31 @@ public class AudioFeatures {
         this.trackId = trackId;
     }
 
+    // Getters
+    public String getTrackId() {
+        return trackId;
+    }
+
+    public double getDanceability() {
+        return danceability;
+    }
+
+    public double getEnergy() {
+        return energy;
+    }
+
+    public double getValence() {
+        return valence;
+    }
+
+    public double getTempo() {
+        return tempo;
+    }
+
+    public double getAcousticness() {
+        return acousticness;
+    }
+
     // Setters
     public void setDanceability(double danceability) {
         this.danceability = danceability;
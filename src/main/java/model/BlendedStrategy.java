@@ -0,0 +1,282 @@
+package model;
+
+import logging.Logger;
+import org.apache.hc.core5.http.ParseException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recommendation strategy that blends every seed track and every artist on them.
+ *
+ * Each distinct seed artist's top tracks are fetched once, in parallel on a bounded executor.
+ * A candidate's score mixes how often it turns up (weighted by the number of seed tracks that
+ * feature the artist whose list it is on) with its Spotify popularity. Only the best {@code count}
+ * candidates are kept, in a min-heap of that size, instead of sorting all of them.
+ */
+public class BlendedStrategy implements RecommendationStrategy {
+    private static final Logger LOG = Logger.getLogger(BlendedStrategy.class);
+
+    private static final int DEFAULT_THREADS = 8;
+    // Fan-out tasks waiting for a thread; beyond that the calling thread runs them itself
+    private static final int DEFAULT_QUEUE_SIZE = 64;
+    private static final double FREQUENCY_WEIGHT = 0.7;
+    private static final double POPULARITY_WEIGHT = 0.3;
+    private static final String MARKET = "US";
+
+    private static final Comparator<Candidate> WORST_FIRST = Comparator
+            .comparingDouble((Candidate c) -> c.score)
+            .thenComparingInt(c -> c.track.getPopularity())
+            .thenComparing(Comparator.comparingInt((Candidate c) -> c.order).reversed());
+
+    private final APIClient apiClient;
+    private final ExecutorService executor;
+
+    public BlendedStrategy(APIClient apiClient) {
+        this(apiClient, newBoundedExecutor(DEFAULT_THREADS, DEFAULT_QUEUE_SIZE));
+    }
+
+    public BlendedStrategy(APIClient apiClient, ExecutorService executor) {
+        this.apiClient = apiClient;
+        this.executor = executor;
+    }
+
+    @Override
+    public List<Track> recommend(List<Track> userTracks, int count) {
+        if (userTracks == null || userTracks.isEmpty() || count <= 0) {
+            LOG.warn("No seed tracks provided for recommendation.");
+            return new ArrayList<>();
+        }
+        try {
+            return blend(userTracks, count);
+        } catch (IOException e) {
+            LOG.warn("Blended recommendation failed: {}", e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Same as {@link #recommend}, but says why when the seeds lead nowhere.
+     * A seed may also be a bare track ID (no artists at all); it is looked up first.
+     *
+     * @throws IOException if no artist was found for any seed, or no artist's top tracks could be fetched
+     */
+    public List<Track> blend(List<Track> userTracks, int count) throws IOException {
+        // 1. Every artist of every seed, counted once per seed track that features them
+        Set<String> seedTrackIds = new HashSet<>();
+        List<CompletableFuture<List<String>>> seedArtists = new ArrayList<>();
+        for (Track seed : userTracks) {
+            if (seed.getId() != null) {
+                seedTrackIds.add(seed.getId());
+            }
+            if (!seed.getArtistIds().isEmpty()) {
+                seedArtists.add(CompletableFuture.completedFuture(List.copyOf(new LinkedHashSet<>(seed.getArtistIds()))));
+            } else if (seed.getArtists() != null && !seed.getArtists().isEmpty()) {
+                // Older payloads carry names only (resolving searches Spotify only if the name is new)
+                for (String artistName : new LinkedHashSet<>(seed.getArtists())) {
+                    if (artistName == null) {
+                        continue;
+                    }
+                    seedArtists.add(submit(() -> resolve(List.of(artistName))));
+                }
+            } else if (seed.getId() != null) {
+                seedArtists.add(submit(() -> artistsOf(seed.getId())));
+            }
+        }
+
+        Map<String, Integer> artistWeights = new LinkedHashMap<>();
+        for (CompletableFuture<List<String>> seedArtist : seedArtists) {
+            List<String> artistIds = joinOrNull(seedArtist, "Seed lookup");
+            if (artistIds != null) {
+                for (String artistId : artistIds) {
+                    artistWeights.merge(artistId, 1, Integer::sum);
+                }
+            }
+        }
+        if (artistWeights.isEmpty()) {
+            throw new IOException("no artist found for any seed track");
+        }
+
+        // 2. Top tracks of all artists in parallel
+        Map<String, CompletableFuture<List<Track>>> topTracks = new LinkedHashMap<>();
+        for (String artistId : artistWeights.keySet()) {
+            topTracks.put(artistId, submit(() -> apiClient.getTopTracksForArtist(artistId, MARKET)));
+        }
+
+        // 3. Merge by track ID; frequency is the summed weight of the lists a track is on
+        Map<String, Candidate> candidates = new LinkedHashMap<>();
+        int fetched = 0;
+        for (Map.Entry<String, CompletableFuture<List<Track>>> entry : topTracks.entrySet()) {
+            List<Track> tracks = joinOrNull(entry.getValue(), "Top tracks for " + entry.getKey());
+            if (tracks == null) {
+                continue;
+            }
+            fetched++;
+            int weight = artistWeights.get(entry.getKey());
+            for (Track track : tracks) {
+                if (track.getId() == null || seedTrackIds.contains(track.getId())) {
+                    continue;
+                }
+                candidates.computeIfAbsent(track.getId(), id -> new Candidate(track, candidates.size()))
+                        .frequency += weight;
+            }
+        }
+        if (fetched == 0) {
+            throw new IOException("no top tracks could be fetched");
+        }
+
+        return count <= 0 ? new ArrayList<>() : topCandidates(candidates.values(), count);
+    }
+
+    /**
+     * Artist IDs of a seed the caller only knows by track ID
+     */
+    private List<String> artistsOf(String trackId) throws IOException, ParseException {
+        Track track = apiClient.getTrackById(trackId);
+        if (track == null || track.getArtists() == null || track.getArtists().isEmpty()) {
+            throw new IOException("No artist found for track ID: " + trackId);
+        }
+        if (!track.getArtistIds().isEmpty()) {
+            return List.copyOf(new LinkedHashSet<>(track.getArtistIds()));
+        }
+        return resolve(new LinkedHashSet<>(track.getArtists()));
+    }
+
+    private List<String> resolve(Collection<String> artistNames) throws IOException {
+        List<String> artistIds = new ArrayList<>();
+        for (String artistName : artistNames) {
+            String artistId = apiClient.resolveArtistId(artistName);
+            if (artistId != null) {
+                artistIds.add(artistId);
+            }
+        }
+        if (artistIds.isEmpty()) {
+            throw new IOException("Artist not found: " + String.join(", ", artistNames));
+        }
+        return artistIds;
+    }
+
+    /**
+     * Score every candidate and keep the best {@code count} in a bounded min-heap: O(n log count)
+     */
+    private static List<Track> topCandidates(Iterable<Candidate> candidates, int count) {
+        int maxFrequency = 1;
+        for (Candidate candidate : candidates) {
+            maxFrequency = Math.max(maxFrequency, candidate.frequency);
+        }
+
+        PriorityQueue<Candidate> best = new PriorityQueue<>(count + 1, WORST_FIRST);
+        for (Candidate candidate : candidates) {
+            candidate.score = FREQUENCY_WEIGHT * candidate.frequency / maxFrequency
+                    + POPULARITY_WEIGHT * candidate.track.getPopularity() / 100.0;
+            if (best.size() < count) {
+                best.add(candidate);
+            } else if (WORST_FIRST.compare(candidate, best.peek()) > 0) {
+                best.poll();
+                best.add(candidate);
+            }
+        }
+
+        List<Track> ranked = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            ranked.add(best.poll().track);
+        }
+        Collections.reverse(ranked);
+        return ranked;
+    }
+
+    /**
+     * Run an upstream call on the executor; stale answers it gets count for the caller's request
+     */
+    private <T> CompletableFuture<T> submit(Callable<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        StaleResponses.Tracker stale = StaleResponses.current();
+        try {
+            executor.execute(() -> {
+                StaleResponses.Attachment attachment = stale != null ? stale.attach() : null;
+                try {
+                    future.complete(call.call());
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    if (attachment != null) {
+                        attachment.close();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Only once the executor is shut down; CallerRunsPolicy absorbs bursts
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * The result, or null if the call failed; one failed seed or artist does not sink the recommendation
+     */
+    private static <T> T joinOrNull(CompletableFuture<T> future, String what) {
+        try {
+            return future.join();
+        } catch (CompletionException | CancellationException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            LOG.warn("{} failed: {}", what, cause.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Fixed threads (which time out when idle) and a bounded queue; when both are full the
+     * caller runs the call itself, so a burst of seeds slows down instead of piling up
+     */
+    private static ExecutorService newBoundedExecutor(int threads, int queueSize) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), r -> {
+            Thread thread = new Thread(r, "blended-strategy-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    @Override
+    public String getStrategyName() {
+        return "Blended Multi-Seed Top Tracks";
+    }
+
+    /**
+     * A merged track with its first-seen position, frequency and final score
+     */
+    private static final class Candidate {
+        private final Track track;
+        private final int order;
+        private int frequency;
+        private double score;
+
+        private Candidate(Track track, int order) {
+            this.track = track;
+            this.order = order;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package model;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops calling one Spotify endpoint while it is failing, so request threads fail fast instead
+ * of queueing up behind timeouts.
+ *
+ * Closed, every call goes through. After {@code failureThreshold} failures in a row (errors,
+ * 5xx, or calls slower than {@code slowCallMs}) the circuit opens and calls are refused without
+ * touching the network. Once {@code openMs} has passed it is half-open: a single probe call is let
+ * through; if it succeeds the circuit closes, otherwise it opens for another {@code openMs}.
+ *
+ * Every permit from {@link #tryAcquire()} must be settled with exactly one of
+ * {@link Permit#onSuccess(long)}, {@link Permit#onFailure()} or {@link Permit#onIgnored()}.
+ * Only permits from the current state count: a slow call admitted before the circuit opened
+ * cannot close it, and only the probe decides what happens after half-open.
+ */
+public class CircuitBreaker {
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final long slowCallNanos;
+    private final LongSupplier nanoClock;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    // When OPEN: when it opened; when HALF_OPEN: when the probe went out
+    private long since;
+    private boolean probing;
+    // Changes on every transition and every probe; permits from an older one are not counted
+    private long generation;
+
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong opened = new AtomicLong();
+
+    public CircuitBreaker(String name, int failureThreshold, long openMs, long slowCallMs) {
+        this(name, failureThreshold, openMs, slowCallMs, System::nanoTime);
+    }
+
+    CircuitBreaker(String name, int failureThreshold, long openMs, long slowCallMs, LongSupplier nanoClock) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("failureThreshold must be positive: " + failureThreshold);
+        }
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMs);
+        this.slowCallNanos = slowCallMs > 0 ? TimeUnit.MILLISECONDS.toNanos(slowCallMs) : Long.MAX_VALUE;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Breaker for one endpoint. {@code -Dcircuit.failureThreshold} (default 5), {@code -Dcircuit.openMs}
+     * (default 30000) and {@code -Dcircuit.slowCallMs} (default 5000, 0 turns it off) apply to every
+     * endpoint; a suffix overrides them for one, e.g. {@code -Dcircuit.failureThreshold.upstream.searchTracks=10}.
+     */
+    public static CircuitBreaker fromSystemProperties(String endpoint) {
+        int threshold = Integer.getInteger("circuit.failureThreshold", 5);
+        long openMs = Long.getLong("circuit.openMs", 30_000);
+        long slowCallMs = Long.getLong("circuit.slowCallMs", 5_000);
+        return new CircuitBreaker(endpoint,
+                Integer.getInteger("circuit.failureThreshold." + endpoint, threshold),
+                Long.getLong("circuit.openMs." + endpoint, openMs),
+                Long.getLong("circuit.slowCallMs." + endpoint, slowCallMs));
+    }
+
+    /**
+     * A permit for one call if it may go out now, or null. While open calls are refused until
+     * {@code openMs} has passed; then one caller gets the probe and the rest keep being refused
+     * until it has been settled.
+     */
+    public synchronized Permit tryAcquire() {
+        long now = nanoClock.getAsLong();
+        switch (state) {
+            case CLOSED:
+                return new Permit(generation, false);
+            case OPEN:
+                if (now - since < openNanos) {
+                    rejected.incrementAndGet();
+                    return null;
+                }
+                state = State.HALF_OPEN;
+                break;
+            default:
+                // A probe that was never settled must not keep the circuit shut forever
+                if (probing && now - since < openNanos) {
+                    rejected.incrementAndGet();
+                    return null;
+                }
+        }
+        probing = true;
+        since = now;
+        // Anything still out from before, including an abandoned probe, no longer counts
+        generation++;
+        return new Permit(generation, true);
+    }
+
+    private synchronized void onSuccess(Permit permit, long elapsedNanos) {
+        if (elapsedNanos > slowCallNanos) {
+            onFailure(permit);
+            return;
+        }
+        if (!isCurrent(permit)) {
+            return;
+        }
+        consecutiveFailures = 0;
+        if (permit.probe) {
+            probing = false;
+            state = State.CLOSED;
+            generation++;
+        }
+    }
+
+    private synchronized void onFailure(Permit permit) {
+        if (!isCurrent(permit)) {
+            return;
+        }
+        consecutiveFailures++;
+        if (permit.probe || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            since = nanoClock.getAsLong();
+            probing = false;
+            generation++;
+            opened.incrementAndGet();
+        }
+    }
+
+    private synchronized void onIgnored(Permit permit) {
+        if (isCurrent(permit) && permit.probe) {
+            probing = false;
+        }
+    }
+
+    /**
+     * Was the permit handed out in the current state? A call admitted while closed that ends
+     * after the circuit opened, or a probe that was given up on, says nothing about it any more.
+     */
+    private boolean isCurrent(Permit permit) {
+        return permit.generation == generation;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /** Calls refused without going upstream */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /** Times the circuit opened */
+    public long getOpened() {
+        return opened.get();
+    }
+
+    /**
+     * Leave to make one call, tied to the state it was handed out in
+     */
+    public final class Permit {
+        private final long generation;
+        private final boolean probe;
+
+        private Permit(long generation, boolean probe) {
+            this.generation = generation;
+            this.probe = probe;
+        }
+
+        /**
+         * The call succeeded after {@code elapsedNanos}; too slow still counts as a failure
+         */
+        public void onSuccess(long elapsedNanos) {
+            CircuitBreaker.this.onSuccess(this, elapsedNanos);
+        }
+
+        public void onFailure() {
+            CircuitBreaker.this.onFailure(this);
+        }
+
+        /**
+         * The permit was not used for a verdict (e.g. rate limited, or no token); a probe can go again
+         */
+        public void onIgnored() {
+            CircuitBreaker.this.onIgnored(this);
+        }
+    }
+
+    /**
+     * A call refused because the endpoint's circuit is open
+     */
+    public static final class OpenException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public OpenException(String endpoint) {
+            super("Spotify " + endpoint + " is failing; not calling it for now");
+        }
+    }
+}
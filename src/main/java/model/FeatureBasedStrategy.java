@@ -1,27 +1,36 @@
 package model;
 
+import logging.Logger;
 import org.apache.hc.core5.http.ParseException;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Simple artist-based recommendation strategy.
  * Uses the artist of the selected track and returns their top tracks.
  */
 public class FeatureBasedStrategy implements RecommendationStrategy {
+    private static final Logger LOG = Logger.getLogger(FeatureBasedStrategy.class);
 
     private final APIClient apiClient;
+    private final AsyncAPIClient asyncClient;
 
     public FeatureBasedStrategy(APIClient apiClient) {
+        this(apiClient, null);
+    }
+
+    public FeatureBasedStrategy(APIClient apiClient, AsyncAPIClient asyncClient) {
         this.apiClient = apiClient;
+        this.asyncClient = asyncClient;
     }
 
     @Override
     public List<Track> recommend(List<Track> userTracks, int count) {
         if (userTracks == null || userTracks.isEmpty()) {
-            System.err.println("No seed tracks provided for recommendation.");
+            LOG.warn("No seed tracks provided for recommendation.");
             return new ArrayList<>();
         }
 
@@ -29,20 +38,23 @@ public class FeatureBasedStrategy implements RecommendationStrategy {
             // Use the first track as the seed
             Track seedTrack = userTracks.get(0);
             if (seedTrack.getArtists().isEmpty()) {
-                System.err.println("No artist found for seed track.");
+                LOG.warn("No artist found for seed track.");
                 return new ArrayList<>();
             }
 
-            // Search the artist by name to get the Spotify artist ID
-            String artistName = seedTrack.getArtists().get(0);
-            List<Artist> artistMatches = apiClient.searchArtistByName(artistName);
-            if (artistMatches.isEmpty()) {
-                System.err.println("Artist not found: " + artistName);
-                return new ArrayList<>();
+            // Use the artist ID carried on the track, or resolve the name (searches only if the name is new)
+            String artistId;
+            if (!seedTrack.getArtistIds().isEmpty()) {
+                artistId = seedTrack.getArtistIds().get(0);
+            } else {
+                String artistName = seedTrack.getArtists().get(0);
+                artistId = apiClient.resolveArtistId(artistName);
+                if (artistId == null) {
+                    LOG.warn("Artist not found: {}", artistName);
+                    return new ArrayList<>();
+                }
             }
 
-            String artistId = artistMatches.get(0).getId();
-
             // Fetch that artist’s top tracks
             List<Track> topTracks = apiClient.getTopTracksForArtist(artistId, "US");
 
@@ -53,11 +65,42 @@ public class FeatureBasedStrategy implements RecommendationStrategy {
             return topTracks;
 
         } catch (IOException e) {
-            e.printStackTrace();
+            LOG.warn("Recommendation failed", e);
             return new ArrayList<>();
         }
     }
 
+    /**
+     * Same recommendation as {@link #recommend}, composed from non-blocking calls:
+     * the artist lookup (if needed) feeds straight into the top-tracks request.
+     * If the non-blocking path fails (no free rate-limit slot, an upstream error) the blocking
+     * path, which waits and retries, answers instead, off the I/O thread.
+     * Without an {@link AsyncAPIClient} only the blocking path is used.
+     */
+    public CompletableFuture<List<Track>> recommendAsync(List<Track> userTracks, int count) {
+        if (asyncClient == null) {
+            return CompletableFuture.supplyAsync(() -> recommend(userTracks, count));
+        }
+        if (userTracks == null || userTracks.isEmpty() || userTracks.get(0).getArtists().isEmpty()) {
+            return CompletableFuture.completedFuture(recommend(userTracks, count));
+        }
+
+        Track seedTrack = userTracks.get(0);
+        CompletableFuture<String> artistId = seedTrack.getArtistIds().isEmpty()
+                ? asyncClient.resolveArtistId(seedTrack.getArtists().get(0))
+                : CompletableFuture.completedFuture(seedTrack.getArtistIds().get(0));
+
+        return artistId
+                .thenCompose(id -> id == null
+                        ? CompletableFuture.completedFuture(List.<Track>of())
+                        : asyncClient.getTopTracksForArtist(id, "US"))
+                .<List<Track>>thenApply(topTracks -> topTracks.size() > count ? topTracks.subList(0, count) : topTracks)
+                .exceptionallyAsync(e -> {
+                    LOG.debug("Async recommendation failed, falling back to blocking calls: {}", e.getMessage());
+                    return recommend(userTracks, count);
+                });
+    }
+
     @Override
     public String getStrategyName() {
         return "Artist-Based Top Tracks";
@@ -0,0 +1,133 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * How often each upstream query (by cache key) was asked for, in hourly buckets over the last
+ * few hours, cache hits included. The hottest ones are worth fetching ahead of the first request
+ * after a restart.
+ */
+public class HotQueries {
+    private static final long BUCKET_MS = TimeUnit.HOURS.toMillis(1);
+    // Keys per bucket; past that only keys already counted this hour are counted
+    private static final int MAX_KEYS_PER_BUCKET = 5_000;
+    // Longer keys (e.g. a pasted paragraph as a search) are not counted: nobody repeats them
+    static final int MAX_KEY_LENGTH = 512;
+
+    private final int hours;
+    private final LongSupplier clock;
+    // Oldest first; each holds the start of its hour and the counts within it
+    private final List<Bucket> buckets = new ArrayList<>();
+
+    public HotQueries(int hours) {
+        this(hours, System::currentTimeMillis);
+    }
+
+    HotQueries(int hours, LongSupplier clock) {
+        this.hours = Math.max(1, hours);
+        this.clock = clock;
+    }
+
+    public synchronized void record(String key) {
+        record(key, 1, clock.getAsLong());
+    }
+
+    /**
+     * Add {@code count} requests for {@code key} at {@code time}; also used to restore a snapshot
+     */
+    public synchronized void record(String key, int count, long time) {
+        if (key.length() > MAX_KEY_LENGTH) {
+            return;
+        }
+        long hourStart = time - time % BUCKET_MS;
+        if (hourStart <= clock.getAsLong() - hours * BUCKET_MS) {
+            return;
+        }
+        Bucket bucket = null;
+        for (Bucket candidate : buckets) {
+            if (candidate.hourStart == hourStart) {
+                bucket = candidate;
+                break;
+            }
+        }
+        if (bucket == null) {
+            bucket = new Bucket(hourStart);
+            buckets.add(bucket);
+            buckets.sort(Comparator.comparingLong(b -> b.hourStart));
+            expire();
+        }
+        if (bucket.counts.size() < MAX_KEYS_PER_BUCKET || bucket.counts.containsKey(key)) {
+            bucket.counts.merge(key, count, Integer::sum);
+        }
+    }
+
+    /**
+     * Up to {@code limit} keys by request count over the window, hottest first
+     */
+    public synchronized List<String> hottest(int limit) {
+        expire();
+        Map<String, Integer> totals = new HashMap<>();
+        for (Bucket bucket : buckets) {
+            bucket.counts.forEach((key, count) -> totals.merge(key, count, Integer::sum));
+        }
+
+        Comparator<Map.Entry<String, Integer>> coldestFirst = Map.Entry.comparingByValue();
+        PriorityQueue<Map.Entry<String, Integer>> hottest = new PriorityQueue<>(limit + 1, coldestFirst);
+        for (Map.Entry<String, Integer> total : totals.entrySet()) {
+            hottest.add(total);
+            if (hottest.size() > limit) {
+                hottest.poll();
+            }
+        }
+        List<String> keys = new ArrayList<>(hottest.size());
+        while (!hottest.isEmpty()) {
+            keys.add(0, hottest.poll().getKey());
+        }
+        return keys;
+    }
+
+    /**
+     * Visit every (hour, key, count) still in the window, oldest hour first.
+     * The counts are copied first, so the visitor does not hold up {@link #record}.
+     */
+    public void forEach(CountVisitor visitor) {
+        List<Bucket> copies = new ArrayList<>();
+        synchronized (this) {
+            expire();
+            for (Bucket bucket : buckets) {
+                Bucket copy = new Bucket(bucket.hourStart);
+                copy.counts.putAll(bucket.counts);
+                copies.add(copy);
+            }
+        }
+        for (Bucket bucket : copies) {
+            bucket.counts.forEach((key, count) -> visitor.visit(bucket.hourStart, key, count));
+        }
+    }
+
+    private void expire() {
+        long oldest = clock.getAsLong() - hours * BUCKET_MS;
+        buckets.removeIf(bucket -> bucket.hourStart <= oldest);
+    }
+
+    @FunctionalInterface
+    public interface CountVisitor {
+        void visit(long hourStart, String key, int count);
+    }
+
+    private static final class Bucket {
+        private final long hourStart;
+        private final Map<String, Integer> counts = new HashMap<>();
+
+        private Bucket(long hourStart) {
+            this.hourStart = hourStart;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package model;
+
+/**
+ * Tuning knobs for the pooled HTTP client used by {@link APIClient}.
+ * Defaults suit one server instance talking to Spotify; every value can be overridden
+ * with a {@code -Dhttp.<name>=<value>} system property.
+ */
+public class HttpClientSettings {
+    private int maxConnectionsTotal = 50;
+    private int maxConnectionsPerRoute = 20;
+    private long connectTimeoutMs = 3_000;
+    private long responseTimeoutMs = 10_000;
+    private long connectionRequestTimeoutMs = 2_000;
+    private long keepAliveMs = 30_000;
+    private long idleEvictionMs = 30_000;
+    private long connectionTimeToLiveMs = 5 * 60_000;
+
+    /**
+     * Defaults, overridden by any http.* system properties that are set
+     */
+    public static HttpClientSettings fromSystemProperties() {
+        HttpClientSettings settings = new HttpClientSettings();
+        settings.maxConnectionsTotal = Integer.getInteger("http.maxConnectionsTotal", settings.maxConnectionsTotal);
+        settings.maxConnectionsPerRoute = Integer.getInteger("http.maxConnectionsPerRoute", settings.maxConnectionsPerRoute);
+        settings.connectTimeoutMs = Long.getLong("http.connectTimeoutMs", settings.connectTimeoutMs);
+        settings.responseTimeoutMs = Long.getLong("http.responseTimeoutMs", settings.responseTimeoutMs);
+        settings.connectionRequestTimeoutMs = Long.getLong("http.connectionRequestTimeoutMs", settings.connectionRequestTimeoutMs);
+        settings.keepAliveMs = Long.getLong("http.keepAliveMs", settings.keepAliveMs);
+        settings.idleEvictionMs = Long.getLong("http.idleEvictionMs", settings.idleEvictionMs);
+        settings.connectionTimeToLiveMs = Long.getLong("http.connectionTimeToLiveMs", settings.connectionTimeToLiveMs);
+        return settings;
+    }
+
+    public int getMaxConnectionsTotal() {
+        return maxConnectionsTotal;
+    }
+
+    public void setMaxConnectionsTotal(int maxConnectionsTotal) {
+        this.maxConnectionsTotal = maxConnectionsTotal;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    public long getConnectTimeoutMs() {
+        return connectTimeoutMs;
+    }
+
+    public void setConnectTimeoutMs(long connectTimeoutMs) {
+        this.connectTimeoutMs = connectTimeoutMs;
+    }
+
+    public long getResponseTimeoutMs() {
+        return responseTimeoutMs;
+    }
+
+    public void setResponseTimeoutMs(long responseTimeoutMs) {
+        this.responseTimeoutMs = responseTimeoutMs;
+    }
+
+    /** How long a request may wait for a free pooled connection */
+    public long getConnectionRequestTimeoutMs() {
+        return connectionRequestTimeoutMs;
+    }
+
+    public void setConnectionRequestTimeoutMs(long connectionRequestTimeoutMs) {
+        this.connectionRequestTimeoutMs = connectionRequestTimeoutMs;
+    }
+
+    /** Keep-alive used when the server does not send a Keep-Alive header */
+    public long getKeepAliveMs() {
+        return keepAliveMs;
+    }
+
+    public void setKeepAliveMs(long keepAliveMs) {
+        this.keepAliveMs = keepAliveMs;
+    }
+
+    /** Pooled connections idle for longer than this are closed in the background */
+    public long getIdleEvictionMs() {
+        return idleEvictionMs;
+    }
+
+    public void setIdleEvictionMs(long idleEvictionMs) {
+        this.idleEvictionMs = idleEvictionMs;
+    }
+
+    public long getConnectionTimeToLiveMs() {
+        return connectionTimeToLiveMs;
+    }
+
+    public void setConnectionTimeToLiveMs(long connectionTimeToLiveMs) {
+        this.connectionTimeToLiveMs = connectionTimeToLiveMs;
+    }
+}
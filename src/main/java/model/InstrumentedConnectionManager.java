@@ -0,0 +1,94 @@
+package model;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.io.ConnectionEndpoint;
+import org.apache.hc.client5.http.io.LeaseRequest;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connection pool that also records how long requests wait to lease a connection.
+ * A rising average or max wait means the per-route limit is throttling handler threads.
+ */
+public class InstrumentedConnectionManager extends PoolingHttpClientConnectionManager {
+    private final AtomicLong leases = new AtomicLong();
+    private final AtomicLong leaseTimeouts = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public InstrumentedConnectionManager(HttpClientSettings settings) {
+        super();
+        setMaxTotal(settings.getMaxConnectionsTotal());
+        setDefaultMaxPerRoute(settings.getMaxConnectionsPerRoute());
+        setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(settings.getConnectTimeoutMs()))
+                .setSocketTimeout(Timeout.ofMilliseconds(settings.getResponseTimeoutMs()))
+                .setTimeToLive(TimeValue.ofMilliseconds(settings.getConnectionTimeToLiveMs()))
+                .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                .build());
+    }
+
+    @Override
+    public LeaseRequest lease(String id, HttpRoute route, Timeout requestTimeout, Object state) {
+        LeaseRequest delegate = super.lease(id, route, requestTimeout, state);
+        return new LeaseRequest() {
+            @Override
+            public ConnectionEndpoint get(Timeout timeout)
+                    throws InterruptedException, ExecutionException, TimeoutException {
+                long start = System.nanoTime();
+                try {
+                    ConnectionEndpoint endpoint = delegate.get(timeout);
+                    leases.incrementAndGet();
+                    return endpoint;
+                } catch (TimeoutException e) {
+                    leaseTimeouts.incrementAndGet();
+                    throw e;
+                } finally {
+                    long waited = System.nanoTime() - start;
+                    totalWaitNanos.addAndGet(waited);
+                    maxWaitNanos.accumulateAndGet(waited, Math::max);
+                }
+            }
+
+            @Override
+            public boolean cancel() {
+                return delegate.cancel();
+            }
+        };
+    }
+
+    public long getLeaseCount() {
+        return leases.get();
+    }
+
+    public long getLeaseTimeouts() {
+        return leaseTimeouts.get();
+    }
+
+    public double getAverageLeaseWaitMillis() {
+        long count = leases.get() + leaseTimeouts.get();
+        return count == 0 ? 0.0 : totalWaitNanos.get() / 1_000_000.0 / count;
+    }
+
+    public double getMaxLeaseWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * One-line summary of pool occupancy and lease waits
+     */
+    public String describe() {
+        PoolStats stats = getTotalStats();
+        return String.format("Pool[leased=%d, pending=%d, available=%d, max=%d, leases=%d, timeouts=%d, "
+                        + "avgWait=%.2fms, maxWait=%.2fms]",
+                stats.getLeased(), stats.getPending(), stats.getAvailable(), stats.getMax(),
+                getLeaseCount(), getLeaseTimeouts(), getAverageLeaseWaitMillis(), getMaxLeaseWaitMillis());
+    }
+}
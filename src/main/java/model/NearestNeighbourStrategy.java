@@ -0,0 +1,73 @@
+package model;
+
+import logging.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Recommends the indexed tracks that sound most like the seeds, without asking Spotify for candidates.
+ *
+ * With {@code -DtrackIndex.enabled=true}, every track {@link APIClient} sees in search and top-tracks
+ * results goes into its {@link TrackVectorIndex}; the seeds' profile (mean audio feature vector) is looked up there and
+ * its nearest neighbours are the recommendation. Only seeds that are not indexed yet cost an
+ * audio-features call. While the index cannot answer (no features for any seed, or nothing else
+ * indexed) the fallback strategy does.
+ */
+public class NearestNeighbourStrategy implements RecommendationStrategy {
+    private static final Logger LOG = Logger.getLogger(NearestNeighbourStrategy.class);
+
+    private final APIClient apiClient;
+    private final RecommendationStrategy fallback;
+
+    public NearestNeighbourStrategy(APIClient apiClient) {
+        this(apiClient, new BlendedStrategy(apiClient));
+    }
+
+    public NearestNeighbourStrategy(APIClient apiClient, RecommendationStrategy fallback) {
+        this.apiClient = apiClient;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public List<Track> recommend(List<Track> userTracks, int count) {
+        if (userTracks == null || userTracks.isEmpty() || count <= 0) {
+            LOG.warn("No seed tracks provided for recommendation.");
+            return new ArrayList<>();
+        }
+
+        TrackVectorIndex index = apiClient.getTrackIndex();
+        Set<String> seedIds = new HashSet<>();
+        for (Track seed : userTracks) {
+            if (seed.getId() != null) {
+                seedIds.add(seed.getId());
+            }
+        }
+
+        float[] profile = index.centroid(seedIds);
+        if (profile == null) {
+            try {
+                apiClient.indexTracks(userTracks);
+            } catch (IOException e) {
+                LOG.warn("Audio features unavailable for seeds: {}", e.getMessage());
+            }
+            profile = index.centroid(seedIds);
+        }
+
+        List<Track> nearest = profile == null ? List.of() : index.nearest(profile, count, seedIds);
+        if (nearest.isEmpty()) {
+            LOG.debug("Track index cannot answer ({} tracks indexed), using {}", index.size(),
+                    fallback.getStrategyName());
+            return fallback.recommend(userTracks, count);
+        }
+        return nearest;
+    }
+
+    @Override
+    public String getStrategyName() {
+        return "Nearest Neighbours (local index)";
+    }
+}
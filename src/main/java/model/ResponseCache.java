@@ -0,0 +1,188 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded in-memory cache for upstream API responses.
+ * Each entry carries its own time-to-live; when the cache is full the least recently
+ * used entry is evicted. Hit, miss and eviction counts are kept for monitoring.
+ *
+ * Expired entries can be kept for a while longer ({@code maxStaleMillis}): {@link #get} no longer
+ * returns them, but {@link #getStale} does, as a fallback when the upstream is unavailable.
+ */
+public class ResponseCache<K, V> {
+    private final int maxEntries;
+    private final long maxStaleMillis;
+    private final LongSupplier clock;
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+
+    public ResponseCache(int maxEntries) {
+        this(maxEntries, 0);
+    }
+
+    public ResponseCache(int maxEntries, long maxStaleMillis) {
+        this(maxEntries, maxStaleMillis, System::currentTimeMillis);
+    }
+
+    ResponseCache(int maxEntries, LongSupplier clock) {
+        this(maxEntries, 0, clock);
+    }
+
+    ResponseCache(int maxEntries, long maxStaleMillis, LongSupplier clock) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.maxStaleMillis = Math.max(0, maxStaleMillis);
+        this.clock = clock;
+        // Access order turns the map's iteration order into least-recently-used first
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > ResponseCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Return the cached value, or null if it is missing or has expired
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        long now = clock.getAsLong();
+        if (entry.expiresAt <= now) {
+            if (entry.expiresAt + maxStaleMillis <= now) {
+                entries.remove(key);
+                expirations.incrementAndGet();
+            }
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.value;
+    }
+
+    /**
+     * Return the cached value even if it has expired, as long as it expired less than
+     * {@code maxStaleMillis} ago; null otherwise
+     */
+    public synchronized V getStale(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null || entry.expiresAt + maxStaleMillis <= clock.getAsLong()) {
+            return null;
+        }
+        staleHits.incrementAndGet();
+        return entry.value;
+    }
+
+    /**
+     * Store a value that stays fresh for ttlMillis
+     */
+    public synchronized void put(K key, V value, long ttlMillis) {
+        entries.put(key, new Entry<>(value, clock.getAsLong() + ttlMillis));
+    }
+
+    /**
+     * Visit every entry that has not expired with the time it has left, least recently used
+     * first. The entries are copied under the lock and visited outside it, so the visitor may
+     * take its time (e.g. write a snapshot) without blocking requests.
+     */
+    public void forEachLive(EntryVisitor<K, V> visitor) {
+        List<Map.Entry<K, Entry<V>>> live;
+        long now;
+        synchronized (this) {
+            now = clock.getAsLong();
+            live = new ArrayList<>(entries.size());
+            for (Map.Entry<K, Entry<V>> entry : entries.entrySet()) {
+                if (entry.getValue().expiresAt > now) {
+                    live.add(Map.entry(entry.getKey(), entry.getValue()));
+                }
+            }
+        }
+        for (Map.Entry<K, Entry<V>> entry : live) {
+            visitor.visit(entry.getKey(), entry.getValue().value, entry.getValue().expiresAt - now);
+        }
+    }
+
+    public synchronized void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getExpirations() {
+        return expirations.get();
+    }
+
+    /** Values returned by {@link #getStale}, fresh or not */
+    public long getStaleHits() {
+        return staleHits.get();
+    }
+
+    public double getHitRatio() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0.0 : (double) hits.get() / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ResponseCache[size=%d/%d, hits=%d, misses=%d, evictions=%d, expirations=%d]",
+                size(), maxEntries, getHits(), getMisses(), getEvictions(), getExpirations());
+    }
+
+    @FunctionalInterface
+    public interface EntryVisitor<K, V> {
+        void visit(K key, V value, long remainingTtlMillis);
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package model;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent identical upstream calls into one.
+ * The first caller for a key runs the call; anyone asking for the same key while it is
+ * still in flight waits on the same future instead of sending their own request.
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    @FunctionalInterface
+    public interface Call<V> {
+        V execute() throws Exception;
+    }
+
+    /**
+     * Run the call for this key, or join the one already running.
+     * Failures are rethrown to every waiting caller.
+     */
+    public V execute(K key, Call<V> call) throws Exception {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return await(existing);
+        }
+
+        executed.incrementAndGet();
+        try {
+            V value = call.execute();
+            mine.complete(value);
+            return value;
+        } catch (Throwable e) {
+            // Errors too, or the callers waiting on this key would never wake up
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Non-blocking {@link #execute}: start the call for this key, or join the one already running,
+     * whether that was started here or by a blocking caller
+     */
+    public CompletableFuture<V> executeAsync(K key, Supplier<CompletableFuture<V>> call) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            // A copy, so one caller cancelling does not cancel the call for everyone
+            return existing.copy();
+        }
+
+        executed.incrementAndGet();
+        CompletableFuture<V> started;
+        try {
+            started = call.get();
+        } catch (Throwable e) {
+            started = CompletableFuture.failedFuture(e);
+        }
+        started.whenComplete((value, error) -> {
+            if (error == null) {
+                mine.complete(value);
+            } else {
+                // Blocking waiters expect the failure itself, as execute() would have thrown it
+                mine.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error);
+            }
+            inFlight.remove(key, mine);
+        });
+        return mine.copy();
+    }
+
+    private V await(CompletableFuture<V> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /** Number of calls that actually went upstream */
+    public long getExecuted() {
+        return executed.get();
+    }
+
+    /** Number of callers that piggybacked on an in-flight call */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SingleFlight[executed=%d, coalesced=%d, inFlight=%d]",
+                getExecuted(), getCoalesced(), getInFlight());
+    }
+}
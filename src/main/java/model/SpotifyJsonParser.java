@@ -0,0 +1,449 @@
+package model;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import logging.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns Spotify Web API response bodies into model objects.
+ * Shared by {@link APIClient} and {@link AsyncAPIClient}; every artist name/ID pair
+ * it sees is recorded in the artist index.
+ *
+ * Bodies are read as a token stream straight off the response: only the fields a
+ * {@link Track} or {@link Artist} needs are materialized, everything else (album images,
+ * available_markets, external_urls, ...) is skipped without building objects for it.
+ */
+public class SpotifyJsonParser {
+    private static final Logger LOG = Logger.getLogger(SpotifyJsonParser.class);
+
+    private final ArtistIdIndex artistIndex;
+
+    public SpotifyJsonParser(ArtistIdIndex artistIndex) {
+        this.artistIndex = artistIndex;
+    }
+
+    /**
+     * Parse Track objects from a /search?type=track response
+     * Demonstrates JSON parsing and object creation
+     */
+    public List<Track> parseTrackSearch(InputStream body) throws IOException {
+        return parseTrackSearch(utf8(body));
+    }
+
+    public List<Track> parseTrackSearch(String body) throws IOException {
+        return parseTrackSearch(new StringReader(body));
+    }
+
+    private List<Track> parseTrackSearch(Reader body) throws IOException {
+        JsonReader reader = new JsonReader(body);
+        List<Track> tracks = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "tracks":
+                    tracks = readPagingItems(reader);
+                    break;
+                case "error":
+                    throw new IOException("Spotify API error: " + readErrorMessage(reader));
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (tracks == null) {
+            throw new IOException("No 'tracks' object in search response");
+        }
+        return tracks;
+    }
+
+    /**
+     * Parse Track objects from an /artists/{id}/top-tracks response
+     */
+    public List<Track> parseTopTracks(InputStream body) throws IOException {
+        return parseTopTracks(utf8(body));
+    }
+
+    public List<Track> parseTopTracks(String body) throws IOException {
+        return parseTopTracks(new StringReader(body));
+    }
+
+    private List<Track> parseTopTracks(Reader body) throws IOException {
+        JsonReader reader = new JsonReader(body);
+        List<Track> tracks = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "tracks":
+                    tracks = readTrackArray(reader);
+                    break;
+                case "error":
+                    throw new IOException("Spotify API error: " + readErrorMessage(reader));
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (tracks == null) {
+            throw new IOException("No 'tracks' array in top-tracks response");
+        }
+        return tracks;
+    }
+
+    /**
+     * Parse a single /tracks/{id} response
+     */
+    public Track parseTrack(InputStream body) throws IOException {
+        return parseTrack(utf8(body));
+    }
+
+    public Track parseTrack(String body) throws IOException {
+        return parseTrack(new StringReader(body));
+    }
+
+    private Track parseTrack(Reader body) throws IOException {
+        Track track = readTrack(new JsonReader(body));
+        if (track.getId() == null) {
+            throw new IOException("No track in response");
+        }
+        return track;
+    }
+
+    /**
+     * Parse Artist objects from a /search?type=artist response.
+     * Error payloads and unexpected shapes give an empty list.
+     */
+    public List<Artist> parseArtistSearch(InputStream body) throws IOException {
+        return parseArtistSearch(utf8(body));
+    }
+
+    public List<Artist> parseArtistSearch(String body) throws IOException {
+        return parseArtistSearch(new StringReader(body));
+    }
+
+    private List<Artist> parseArtistSearch(Reader body) throws IOException {
+        JsonReader reader = new JsonReader(body);
+        List<Artist> artists = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "artists":
+                    artists = readArtistPage(reader);
+                    break;
+                case "error":
+                    // 🧠 Handle error responses gracefully
+                    LOG.warn("⚠️ Spotify API error: {}", readErrorMessage(reader));
+                    return new ArrayList<>();
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (artists == null) {
+            LOG.warn("⚠️ No 'artists' object or 'items' array in response");
+            return new ArrayList<>();
+        }
+        return artists;
+    }
+
+    /**
+     * Parse an /audio-features?ids=... response. Spotify answers null for IDs it has no
+     * analysis for; those are left out, so the list may be shorter than the request.
+     */
+    public List<AudioFeatures> parseAudioFeatures(InputStream body) throws IOException {
+        return parseAudioFeatures(utf8(body));
+    }
+
+    public List<AudioFeatures> parseAudioFeatures(String body) throws IOException {
+        return parseAudioFeatures(new StringReader(body));
+    }
+
+    private List<AudioFeatures> parseAudioFeatures(Reader body) throws IOException {
+        JsonReader reader = new JsonReader(body);
+        List<AudioFeatures> features = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "audio_features":
+                    features = new ArrayList<>();
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        if (reader.peek() == JsonToken.NULL) {
+                            reader.nextNull();
+                            continue;
+                        }
+                        AudioFeatures feature = readAudioFeatures(reader);
+                        if (feature != null) {
+                            features.add(feature);
+                        }
+                    }
+                    reader.endArray();
+                    break;
+                case "error":
+                    throw new IOException("Spotify API error: " + readErrorMessage(reader));
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (features == null) {
+            throw new IOException("No 'audio_features' array in response");
+        }
+        return features;
+    }
+
+    private static AudioFeatures readAudioFeatures(JsonReader reader) throws IOException {
+        String id = null;
+        double danceability = 0;
+        double energy = 0;
+        double valence = 0;
+        double tempo = 0;
+        double acousticness = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id":
+                    id = nextStringOrNull(reader);
+                    break;
+                case "danceability":
+                    danceability = reader.nextDouble();
+                    break;
+                case "energy":
+                    energy = reader.nextDouble();
+                    break;
+                case "valence":
+                    valence = reader.nextDouble();
+                    break;
+                case "tempo":
+                    tempo = reader.nextDouble();
+                    break;
+                case "acousticness":
+                    acousticness = reader.nextDouble();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (id == null) {
+            return null;
+        }
+        AudioFeatures features = new AudioFeatures(id);
+        features.setDanceability(danceability);
+        features.setEnergy(energy);
+        features.setValence(valence);
+        features.setTempo(tempo);
+        features.setAcousticness(acousticness);
+        return features;
+    }
+
+    /**
+     * Read the "items" of a paging object ({"href":..., "items":[...], "total":...})
+     */
+    private List<Track> readPagingItems(JsonReader reader) throws IOException {
+        List<Track> tracks = new ArrayList<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("items")) {
+                tracks = readTrackArray(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return tracks;
+    }
+
+    private List<Track> readTrackArray(JsonReader reader) throws IOException {
+        List<Track> tracks = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() == JsonToken.NULL) {
+                // Spotify occasionally returns null entries for unavailable tracks
+                reader.nextNull();
+                continue;
+            }
+            tracks.add(readTrack(reader));
+        }
+        reader.endArray();
+        return tracks;
+    }
+
+    private Track readTrack(JsonReader reader) throws IOException {
+        String id = null;
+        String name = null;
+        List<String> artists = new ArrayList<>();
+        List<String> artistIds = new ArrayList<>();
+        String albumId = null;
+        String albumName = null;
+        int durationMs = 0;
+        int popularity = 0;
+        String previewUrl = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id":
+                    id = nextStringOrNull(reader);
+                    break;
+                case "name":
+                    name = nextStringOrNull(reader);
+                    break;
+                case "artists":
+                    readTrackArtists(reader, artists, artistIds);
+                    break;
+                case "album":
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String field = reader.nextName();
+                        if (field.equals("id")) {
+                            albumId = nextStringOrNull(reader);
+                        } else if (field.equals("name")) {
+                            albumName = nextStringOrNull(reader);
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    break;
+                case "duration_ms":
+                    durationMs = reader.nextInt();
+                    break;
+                case "popularity":
+                    popularity = reader.nextInt();
+                    break;
+                case "preview_url":
+                    previewUrl = nextStringOrNull(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        // Create Track object
+        Track track = new Track(id, name, artists, albumName);
+        track.setArtistIds(artistIds);
+        track.setAlbumId(albumId);
+        track.setDurationMs(durationMs);
+        track.setPopularity(popularity);
+        track.setPreviewUrl(previewUrl);
+        return track;
+    }
+
+    private void readTrackArtists(JsonReader reader, List<String> names, List<String> ids) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String artistId = null;
+            String artistName = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String field = reader.nextName();
+                if (field.equals("id")) {
+                    artistId = nextStringOrNull(reader);
+                } else if (field.equals("name")) {
+                    artistName = nextStringOrNull(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            // Local and unavailable artists have no ID; leaving them out keeps names and IDs aligned
+            if (artistId == null) {
+                continue;
+            }
+            names.add(artistName);
+            ids.add(artistId);
+            // The artist ID comes along for free, so keep it for name -> ID lookups
+            artistIndex.record(artistName, artistId);
+        }
+        reader.endArray();
+    }
+
+    private List<Artist> readArtistPage(JsonReader reader) throws IOException {
+        List<Artist> artists = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!reader.nextName().equals("items")) {
+                reader.skipValue();
+                continue;
+            }
+            artists = new ArrayList<>();
+            reader.beginArray();
+            while (reader.hasNext()) {
+                String id = null;
+                String name = null;
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String field = reader.nextName();
+                    if (field.equals("id")) {
+                        id = nextStringOrNull(reader);
+                    } else if (field.equals("name")) {
+                        name = nextStringOrNull(reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+                artists.add(new Artist(id, name));
+                artistIndex.record(name, id);
+            }
+            reader.endArray();
+        }
+        reader.endObject();
+        return artists;
+    }
+
+    private static String readErrorMessage(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            // OAuth errors use {"error": "invalid_client", ...}
+            if (reader.peek() == JsonToken.STRING) {
+                return reader.nextString();
+            }
+            reader.skipValue();
+            return "Unknown error";
+        }
+        String message = "Unknown error";
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("message")) {
+                message = nextStringOrNull(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return message;
+    }
+
+    private static String nextStringOrNull(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    private static Reader utf8(InputStream body) {
+        return new InputStreamReader(body, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,86 @@
+package model;
+
+/**
+ * Tells a request handler whether anything it got from {@link APIClient} was a stale cache entry
+ * served because Spotify could not be reached.
+ *
+ * The handler opens a {@link #track()} scope around its work and asks {@link Tracker#servedStale()}
+ * at the end. Work it hands to other threads reports to the same tracker through
+ * {@link Tracker#attach()}.
+ */
+public final class StaleResponses {
+    private static final ThreadLocal<Tracker> CURRENT = new ThreadLocal<>();
+
+    private StaleResponses() {
+    }
+
+    /**
+     * Start tracking on the calling thread until the returned tracker is closed
+     */
+    public static Tracker track() {
+        Tracker tracker = new Tracker(CURRENT.get());
+        CURRENT.set(tracker);
+        return tracker;
+    }
+
+    /**
+     * The calling thread's tracker, or null if nobody is tracking
+     */
+    public static Tracker current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Called by {@link APIClient} when it answered from a stale entry
+     */
+    static void markServed() {
+        Tracker tracker = CURRENT.get();
+        if (tracker != null) {
+            tracker.stale = true;
+        }
+    }
+
+    public static final class Tracker implements AutoCloseable {
+        private final Tracker previous;
+        private volatile boolean stale;
+
+        private Tracker(Tracker previous) {
+            this.previous = previous;
+        }
+
+        public boolean servedStale() {
+            return stale;
+        }
+
+        /**
+         * Report stale answers on the calling thread (another thread than the one tracking) here
+         */
+        public Attachment attach() {
+            Tracker before = CURRENT.get();
+            CURRENT.set(this);
+            return () -> restore(before);
+        }
+
+        @Override
+        public void close() {
+            if (stale && previous != null) {
+                previous.stale = true;
+            }
+            restore(previous);
+        }
+
+        private static void restore(Tracker tracker) {
+            if (tracker == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(tracker);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Attachment extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -10,6 +10,8 @@ public class Track {
     private String id;
     private String name;
     private List<String> artists;
+    private List<String> artistIds;
+    private String albumId;
     private String albumName;
     private int durationMs;
     private int popularity;
@@ -24,6 +26,10 @@ public class Track {
     }
 
     // Getters and Setters (Encapsulation)
+    public String getId() {
+        return id;
+    }
+
     public String getName() {
         return name;
     }
@@ -32,6 +38,42 @@ public class Track {
         return artists;
     }
 
+    /**
+     * Spotify IDs of the artists, in the same order as {@link #getArtists()}.
+     * Empty for tracks built without IDs (e.g. from an older server).
+     */
+    public List<String> getArtistIds() {
+        return artistIds == null ? List.of() : artistIds;
+    }
+
+    public void setArtistIds(List<String> artistIds) {
+        this.artistIds = artistIds;
+    }
+
+    public String getAlbumId() {
+        return albumId;
+    }
+
+    public void setAlbumId(String albumId) {
+        this.albumId = albumId;
+    }
+
+    public String getAlbumName() {
+        return albumName;
+    }
+
+    public int getDurationMs() {
+        return durationMs;
+    }
+
+    public int getPopularity() {
+        return popularity;
+    }
+
+    public String getPreviewUrl() {
+        return previewUrl;
+    }
+
     public void setDurationMs(int durationMs) {
         this.durationMs = durationMs;
     }
@@ -0,0 +1,635 @@
+package model;
+
+import logging.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Tracks, artists and top-track lists learned from Spotify, kept on disk across restarts.
+ *
+ * Two memory-mapped files in one directory:
+ * <ul>
+ *   <li>{@code tracks.log}: append-only records, each {@code [int length][type][written at][key][fields]};
+ *       a newer record for the same key supersedes the older one</li>
+ *   <li>{@code tracks.idx}: open-addressing hash table of {@code (key hash, record offset)} slots</li>
+ * </ul>
+ * A lookup hashes the key, probes the index and decodes the record straight out of the mapped log:
+ * no read calls and no intermediate buffers, and the key is compared in place. The index can always
+ * be rebuilt from the log, which happens when it is missing or behind (e.g. after a crash between
+ * the two writes). Writes reach the page cache immediately and the disk on {@link #close()}.
+ *
+ * Superseded records are not reclaimed; rewrites of fresh records are skipped to keep the log small.
+ */
+public class TrackCatalogue implements Closeable {
+    private static final Logger LOG = Logger.getLogger(TrackCatalogue.class);
+
+    private static final int LOG_MAGIC = 0x54434C47; // "TCLG"
+    private static final int INDEX_MAGIC = 0x54434958; // "TCIX"
+    private static final int VERSION = 1;
+    // Log header: magic, version, end of the last complete record
+    private static final int LOG_HEADER = 16;
+    // Index header: magic, version, capacity, count, log offset indexed up to
+    private static final int INDEX_HEADER = 24;
+    private static final int SLOT_SIZE = 16;
+    private static final int INITIAL_LOG_CAPACITY = 1 << 20;
+    private static final int INITIAL_INDEX_SLOTS = 1 << 12;
+    // One mapping is at most 2 GB; the catalogue stops growing well before that
+    private static final long MAX_LOG_BYTES = 1L << 30;
+    // A record younger than this is not written again
+    private static final long REWRITE_AFTER_MS = TimeUnit.HOURS.toMillis(1);
+
+    private static final byte TRACK = 1;
+    private static final byte TOP_TRACKS = 2;
+    private static final byte ARTIST = 3;
+    private static final byte ARTIST_NAME = 4;
+
+    private final Path logPath;
+    private final Path indexPath;
+    private final LongSupplier clock;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private FileChannel logChannel;
+    private MappedByteBuffer log;
+    private long logEnd;
+    private FileChannel indexChannel;
+    private MappedByteBuffer index;
+    private int capacity;
+    private int count;
+    private boolean full;
+
+    private TrackCatalogue(Path directory, LongSupplier clock) {
+        this.logPath = directory.resolve("tracks.log");
+        this.indexPath = directory.resolve("tracks.idx");
+        this.clock = clock;
+    }
+
+    /**
+     * Open the catalogue in {@code directory}, creating it if needed
+     */
+    public static TrackCatalogue open(Path directory) throws IOException {
+        return open(directory, System::currentTimeMillis);
+    }
+
+    static TrackCatalogue open(Path directory, LongSupplier clock) throws IOException {
+        Files.createDirectories(directory);
+        TrackCatalogue catalogue = new TrackCatalogue(directory, clock);
+        catalogue.openLog();
+        catalogue.openIndex();
+        LOG.info("Track catalogue {}: {} entries", directory, catalogue.count);
+        return catalogue;
+    }
+
+    /**
+     * The stored track, or null if it is unknown or was written more than {@code maxAgeMs} ago
+     */
+    public Track track(String trackId, long maxAgeMs) {
+        lock.readLock().lock();
+        try {
+            Cursor record = find(TRACK, trackId, maxAgeMs);
+            return record == null ? null : readTrack(record, trackId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * An artist's stored top tracks, or null if unknown, too old, or one of the tracks is missing
+     */
+    public List<Track> topTracks(String artistId, String market, long maxAgeMs) {
+        lock.readLock().lock();
+        try {
+            Cursor record = find(TOP_TRACKS, artistId + "|" + market, maxAgeMs);
+            if (record == null) {
+                return null;
+            }
+            int size = record.readInt();
+            List<Track> tracks = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                String trackId = record.readString();
+                Cursor track = find(TRACK, trackId, Long.MAX_VALUE);
+                if (track == null) {
+                    return null;
+                }
+                tracks.add(readTrack(track, trackId));
+            }
+            return tracks;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The stored artist with this ID, or null if it is unknown or was written more than {@code maxAgeMs} ago
+     */
+    public Artist artist(String artistId, long maxAgeMs) {
+        lock.readLock().lock();
+        try {
+            Cursor record = find(ARTIST, artistId, maxAgeMs);
+            return record == null ? null : new Artist(artistId, record.readString());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The ID most recently seen under exactly this name, or null if the name is unknown or was
+     * written more than {@code maxAgeMs} ago
+     */
+    public String artistIdByName(String name, long maxAgeMs) {
+        lock.readLock().lock();
+        try {
+            Cursor record = find(ARTIST_NAME, name, maxAgeMs);
+            return record == null ? null : record.readString();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of distinct keys (tracks, artists, names, top-track lists)
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Store tracks and the artists on them
+     */
+    public void putTracks(Collection<Track> tracks) throws IOException {
+        lock.writeLock().lock();
+        try {
+            for (Track track : tracks) {
+                putTrack(track);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Store an artist's top tracks (and the tracks themselves)
+     */
+    public void putTopTracks(String artistId, String market, List<Track> tracks) throws IOException {
+        lock.writeLock().lock();
+        try {
+            List<String> trackIds = new ArrayList<>(tracks.size());
+            for (Track track : tracks) {
+                if (putTrack(track)) {
+                    trackIds.add(track.getId());
+                }
+            }
+            String key = artistId + "|" + market;
+            if (isFresh(TOP_TRACKS, key)) {
+                return;
+            }
+            append(TOP_TRACKS, key, out -> {
+                out.writeInt(trackIds.size());
+                for (String trackId : trackIds) {
+                    writeString(out, trackId);
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Store artists, e.g. from an artist search
+     */
+    public void putArtists(Collection<Artist> artists) throws IOException {
+        lock.writeLock().lock();
+        try {
+            for (Artist artist : artists) {
+                putArtist(artist.getId(), artist.getName());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean putTrack(Track track) throws IOException {
+        if (track == null || track.getId() == null) {
+            return false;
+        }
+        List<String> artistIds = track.getArtistIds();
+        List<String> artists = track.getArtists() != null ? track.getArtists() : List.of();
+        if (artists.size() == artistIds.size()) {
+            for (int i = 0; i < artists.size(); i++) {
+                putArtist(artistIds.get(i), artists.get(i));
+            }
+        }
+        if (isFresh(TRACK, track.getId())) {
+            return true;
+        }
+        append(TRACK, track.getId(), out -> {
+            writeString(out, track.getName());
+            writeStrings(out, artists);
+            writeStrings(out, artistIds);
+            writeString(out, track.getAlbumId());
+            writeString(out, track.getAlbumName());
+            out.writeInt(track.getDurationMs());
+            out.writeInt(track.getPopularity());
+            writeString(out, track.getPreviewUrl());
+        });
+        return true;
+    }
+
+    private void putArtist(String artistId, String name) throws IOException {
+        if (artistId == null || name == null) {
+            return;
+        }
+        // A different value supersedes the stored one at once; the same one is rewritten like tracks
+        if (!isFresh(ARTIST, artistId, name)) {
+            append(ARTIST, artistId, out -> writeString(out, name));
+        }
+        if (!isFresh(ARTIST_NAME, name, artistId)) {
+            append(ARTIST_NAME, name, out -> writeString(out, artistId));
+        }
+    }
+
+    private boolean isFresh(byte type, String key) {
+        return find(type, key, REWRITE_AFTER_MS) != null;
+    }
+
+    /**
+     * Whether a fresh record for {@code key} holds exactly {@code value}
+     */
+    private boolean isFresh(byte type, String key, String value) {
+        Cursor record = find(type, key, REWRITE_AFTER_MS);
+        return record != null && value.equals(record.readString());
+    }
+
+    /**
+     * Append one record to the log, then point the index at it
+     */
+    private void append(byte type, String key, RecordBody body) throws IOException {
+        if (full) {
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(type);
+        out.writeLong(clock.getAsLong());
+        writeString(out, key);
+        body.write(out);
+        out.flush();
+
+        int length = bytes.size();
+        long offset = logEnd;
+        if (offset + 4 + length > MAX_LOG_BYTES) {
+            full = true;
+            LOG.warn("Track catalogue is full ({} MB), not storing any more", MAX_LOG_BYTES >> 20);
+            return;
+        }
+        ensureLogCapacity(offset + 4 + length);
+        log.putInt((int) offset, length);
+        log.put((int) offset + 4, bytes.toByteArray());
+        logEnd = offset + 4 + length;
+        log.putLong(8, logEnd);
+
+        indexPut(hash(type, key), offset, type, key);
+        index.putLong(16, logEnd);
+    }
+
+    /**
+     * A cursor positioned after the key of the newest record for {@code key}, or null
+     */
+    private Cursor find(byte type, String key, long maxAgeMs) {
+        if (key == null) {
+            return null;
+        }
+        long hash = hash(type, key);
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int mask = capacity - 1;
+        for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+            int position = INDEX_HEADER + slot * SLOT_SIZE;
+            long slotHash = index.getLong(position);
+            if (slotHash == 0) {
+                return null;
+            }
+            if (slotHash != hash) {
+                continue;
+            }
+            long offset = index.getLong(position + 8);
+            if (offset + 4 > logEnd) {
+                continue;
+            }
+            Cursor record = new Cursor((int) offset + 4);
+            if (record.readByte() != type) {
+                continue;
+            }
+            long writtenAt = record.readLong();
+            if (!record.keyEquals(keyBytes)) {
+                continue;
+            }
+            return clock.getAsLong() - writtenAt <= maxAgeMs ? record : null;
+        }
+    }
+
+    private void indexPut(long hash, long offset, byte type, String key) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int mask = capacity - 1;
+        for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+            int position = INDEX_HEADER + slot * SLOT_SIZE;
+            long slotHash = index.getLong(position);
+            if (slotHash == 0) {
+                index.putLong(position, hash);
+                index.putLong(position + 8, offset);
+                index.putInt(12, ++count);
+                if (count * 2 > capacity) {
+                    growIndex();
+                }
+                return;
+            }
+            if (slotHash == hash && sameKey(index.getLong(position + 8), type, keyBytes)) {
+                index.putLong(position + 8, offset);
+                return;
+            }
+        }
+    }
+
+    private boolean sameKey(long offset, byte type, byte[] keyBytes) {
+        if (offset + 4 > logEnd) {
+            return false;
+        }
+        Cursor record = new Cursor((int) offset + 4);
+        if (record.readByte() != type) {
+            return false;
+        }
+        record.readLong();
+        return record.keyEquals(keyBytes);
+    }
+
+    /**
+     * Double the table into a new file, then swap it in
+     */
+    private void growIndex() throws IOException {
+        Path grown = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        int newCapacity = capacity * 2;
+        try (FileChannel channel = FileChannel.open(grown, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer table = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    INDEX_HEADER + (long) newCapacity * SLOT_SIZE);
+            writeIndexHeader(table, newCapacity, count, index.getLong(16));
+            int mask = newCapacity - 1;
+            for (int slot = 0; slot < capacity; slot++) {
+                int position = INDEX_HEADER + slot * SLOT_SIZE;
+                long hash = index.getLong(position);
+                if (hash == 0) {
+                    continue;
+                }
+                int target = (int) hash & mask;
+                while (table.getLong(INDEX_HEADER + target * SLOT_SIZE) != 0) {
+                    target = (target + 1) & mask;
+                }
+                table.putLong(INDEX_HEADER + target * SLOT_SIZE, hash);
+                table.putLong(INDEX_HEADER + target * SLOT_SIZE + 8, index.getLong(position + 8));
+            }
+            table.force();
+        }
+        indexChannel.close();
+        Files.move(grown, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        mapIndex();
+    }
+
+    private static long hash(byte type, String key) {
+        // 64-bit FNV-1a over the type and the key's UTF-8 bytes; 0 marks an empty slot
+        long hash = 0xcbf29ce484222325L;
+        hash = (hash ^ type) * 0x100000001b3L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    private void openLog() throws IOException {
+        logChannel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long size = logChannel.size();
+        log = logChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, INITIAL_LOG_CAPACITY));
+        if (size < LOG_HEADER || log.getInt(0) != LOG_MAGIC || log.getInt(4) != VERSION) {
+            if (size >= LOG_HEADER) {
+                LOG.warn("Unrecognized track catalogue {}, starting a new one", logPath);
+            }
+            log.putInt(0, LOG_MAGIC);
+            log.putInt(4, VERSION);
+            log.putLong(8, LOG_HEADER);
+        }
+        logEnd = log.getLong(8);
+    }
+
+    private void openIndex() throws IOException {
+        boolean usable = Files.exists(indexPath) && Files.size(indexPath) >= INDEX_HEADER;
+        if (usable) {
+            mapIndex();
+            usable = index.getInt(0) == INDEX_MAGIC && index.getInt(4) == VERSION
+                    && Integer.bitCount(capacity) == 1
+                    && index.capacity() == INDEX_HEADER + (long) capacity * SLOT_SIZE
+                    && index.getLong(16) <= logEnd;
+        }
+        long indexedUpTo = LOG_HEADER;
+        if (usable) {
+            indexedUpTo = index.getLong(16);
+        } else {
+            if (indexChannel != null) {
+                indexChannel.close();
+            }
+            try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                MappedByteBuffer table = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                        INDEX_HEADER + (long) INITIAL_INDEX_SLOTS * SLOT_SIZE);
+                writeIndexHeader(table, INITIAL_INDEX_SLOTS, 0, LOG_HEADER);
+            }
+            mapIndex();
+        }
+
+        if (indexedUpTo < logEnd) {
+            LOG.info("Indexing track catalogue from offset {}", indexedUpTo);
+            reindex(indexedUpTo);
+        }
+    }
+
+    /**
+     * Add every record from {@code offset} to the end of the log to the index
+     */
+    private void reindex(long offset) throws IOException {
+        while (offset + 4 <= logEnd) {
+            int length = log.getInt((int) offset);
+            if (length <= 0 || offset + 4 + length > logEnd) {
+                LOG.warn("Track catalogue {} is damaged at offset {}, ignoring the rest", logPath, offset);
+                logEnd = offset;
+                log.putLong(8, logEnd);
+                break;
+            }
+            Cursor record = new Cursor((int) offset + 4);
+            byte type = record.readByte();
+            record.readLong();
+            String key = record.readString();
+            indexPut(hash(type, key), offset, type, key);
+            offset += 4 + length;
+        }
+        index.putLong(16, logEnd);
+    }
+
+    private void mapIndex() throws IOException {
+        indexChannel = FileChannel.open(indexPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, indexChannel.size());
+        capacity = index.getInt(8);
+        count = index.getInt(12);
+    }
+
+    private static void writeIndexHeader(MappedByteBuffer table, int capacity, int count, long indexedUpTo) {
+        table.putInt(0, INDEX_MAGIC);
+        table.putInt(4, VERSION);
+        table.putInt(8, capacity);
+        table.putInt(12, count);
+        table.putLong(16, indexedUpTo);
+    }
+
+    private void ensureLogCapacity(long needed) throws IOException {
+        if (needed <= log.capacity()) {
+            return;
+        }
+        long grown = Math.min(MAX_LOG_BYTES, Math.max(needed, (long) log.capacity() * 2));
+        log.force();
+        log = logChannel.map(FileChannel.MapMode.READ_WRITE, 0, grown);
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            log.force();
+            index.force();
+            logChannel.close();
+            indexChannel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Track readTrack(Cursor record, String trackId) {
+        String name = record.readString();
+        List<String> artists = record.readStrings();
+        List<String> artistIds = record.readStrings();
+        String albumId = record.readString();
+        String albumName = record.readString();
+
+        Track track = new Track(trackId, name, artists, albumName);
+        track.setArtistIds(artistIds);
+        track.setAlbumId(albumId);
+        track.setDurationMs(record.readInt());
+        track.setPopularity(record.readInt());
+        track.setPreviewUrl(record.readString());
+        return track;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    @FunctionalInterface
+    private interface RecordBody {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Reads fields at increasing positions of the mapped log with absolute gets, so concurrent
+     * readers never share a buffer position
+     */
+    private final class Cursor {
+        private int position;
+
+        private Cursor(int position) {
+            this.position = position;
+        }
+
+        private byte readByte() {
+            return log.get(position++);
+        }
+
+        private int readInt() {
+            int value = log.getInt(position);
+            position += 4;
+            return value;
+        }
+
+        private long readLong() {
+            long value = log.getLong(position);
+            position += 8;
+            return value;
+        }
+
+        private String readString() {
+            int length = readInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] utf8 = new byte[length];
+            log.get(position, utf8);
+            position += length;
+            return new String(utf8, StandardCharsets.UTF_8);
+        }
+
+        private List<String> readStrings() {
+            int size = readInt();
+            List<String> values = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                values.add(readString());
+            }
+            return values;
+        }
+
+        /**
+         * Compare the key string at the cursor with {@code expected} byte by byte, skipping it if equal
+         */
+        private boolean keyEquals(byte[] expected) {
+            int length = log.getInt(position);
+            if (length != expected.length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (log.get(position + 4 + i) != expected[i]) {
+                    return false;
+                }
+            }
+            position += 4 + length;
+            return true;
+        }
+    }
+}
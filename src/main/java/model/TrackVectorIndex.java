@@ -0,0 +1,324 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Approximate nearest-neighbour index over the audio feature vectors of every track seen so far.
+ *
+ * A small random-projection forest: each tree splits its leaves on the hyperplane halfway between
+ * two random member vectors once they grow past {@link #LEAF_SIZE}, so tracks can be inserted one at a
+ * time as they turn up and the trees stay balanced enough without rebuilding. A query walks all trees
+ * at once, closest side first (by distance to the splitting hyperplane), gathers a few hundred
+ * candidate rows and ranks only those by exact euclidean distance; recall is traded for a constant
+ * query cost instead of a scan of the whole catalogue.
+ *
+ * Queries run concurrently; an insert takes the write lock for the few tree descents it needs.
+ */
+public class TrackVectorIndex {
+    private static final int DEFAULT_TREES = 8;
+    private static final int DEFAULT_MAX_ENTRIES = 200_000;
+    private static final int LEAF_SIZE = 32;
+    // Rows ranked exactly per query, at least; more when many results are asked for
+    private static final int MIN_CANDIDATES = 512;
+    // Attempts at finding two distinct vectors to split a leaf between
+    private static final int SPLIT_ATTEMPTS = 8;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AudioFeatureVectors vectors = new AudioFeatureVectors(1024);
+    private final List<Track> tracks = new ArrayList<>();
+    private final Map<String, Integer> rowsById = new HashMap<>();
+    private final Node[] roots;
+    private final int maxEntries;
+    private final Random random;
+
+    public TrackVectorIndex() {
+        this(DEFAULT_TREES, DEFAULT_MAX_ENTRIES, new Random());
+    }
+
+    public TrackVectorIndex(int trees, int maxEntries, Random random) {
+        this.roots = new Node[trees];
+        for (int i = 0; i < trees; i++) {
+            roots[i] = new Node(new int[LEAF_SIZE], 0);
+        }
+        this.maxEntries = maxEntries;
+        this.random = random;
+    }
+
+    /**
+     * Index a track by its audio features. A track already in the index only has its metadata
+     * replaced (features of a recording do not change); once full, new tracks are ignored.
+     *
+     * @return whether the track was new
+     */
+    public boolean add(Track track, AudioFeatures features) {
+        if (track == null || track.getId() == null || features == null) {
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            Integer existing = rowsById.get(track.getId());
+            if (existing != null) {
+                tracks.set(existing, track);
+                return false;
+            }
+            if (tracks.size() >= maxEntries) {
+                return false;
+            }
+            int row = vectors.add(features);
+            tracks.add(track);
+            rowsById.put(track.getId(), row);
+            for (Node root : roots) {
+                insert(root, row);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean contains(String trackId) {
+        lock.readLock().lock();
+        try {
+            return rowsById.containsKey(trackId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return tracks.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Mean normalized vector of the given tracks that are indexed, or null if none is
+     */
+    public float[] centroid(Collection<String> trackIds) {
+        lock.readLock().lock();
+        try {
+            float[] centroid = new float[AudioFeatureVectors.DIMENSIONS];
+            int found = 0;
+            for (String trackId : trackIds) {
+                Integer row = trackId == null ? null : rowsById.get(trackId);
+                if (row == null) {
+                    continue;
+                }
+                for (int d = 0; d < AudioFeatureVectors.DIMENSIONS; d++) {
+                    centroid[d] += vectors.value(row, d);
+                }
+                found++;
+            }
+            if (found == 0) {
+                return null;
+            }
+            for (int d = 0; d < AudioFeatureVectors.DIMENSIONS; d++) {
+                centroid[d] /= found;
+            }
+            return centroid;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * About the {@code k} indexed tracks closest to a normalized vector, closest first,
+     * leaving out {@code excludedIds} (e.g. the seeds themselves)
+     */
+    public List<Track> nearest(float[] query, int k, Set<String> excludedIds) {
+        lock.readLock().lock();
+        try {
+            int size = tracks.size();
+            if (size == 0 || k <= 0) {
+                return new ArrayList<>();
+            }
+            int wanted = Math.min(size, k + excludedIds.size());
+            int[] candidates = candidates(query, Math.max(MIN_CANDIDATES, wanted * roots.length));
+
+            double[] distances = new double[candidates.length];
+            for (int i = 0; i < candidates.length; i++) {
+                distances[i] = vectors.squaredEuclidean(candidates[i], query);
+            }
+            List<Track> nearest = new ArrayList<>(k);
+            for (int position : AudioFeatureVectors.smallest(distances, candidates.length, wanted)) {
+                Track track = tracks.get(candidates[position]);
+                if (!excludedIds.contains(track.getId())) {
+                    nearest.add(track);
+                    if (nearest.size() == k) {
+                        break;
+                    }
+                }
+            }
+            return nearest;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Distinct rows from the leaves nearest the query across all trees, until at least
+     * {@code searchSize} are gathered (or every leaf was visited)
+     */
+    private int[] candidates(float[] query, int searchSize) {
+        int size = tracks.size();
+        BitSet seen = new BitSet(size);
+        int[] rows = new int[Math.min(size, searchSize + LEAF_SIZE)];
+        int found = 0;
+
+        // Highest priority first: how far the query is inside every hyperplane on the way down
+        PriorityQueue<Probe> probes = new PriorityQueue<>((a, b) -> Double.compare(b.priority, a.priority));
+        for (Node root : roots) {
+            probes.add(new Probe(root, Double.POSITIVE_INFINITY));
+        }
+        while (found < searchSize && found < size && !probes.isEmpty()) {
+            Probe probe = probes.poll();
+            Node node = probe.node;
+            if (node.isLeaf()) {
+                for (int i = 0; i < node.count; i++) {
+                    int row = node.rows[i];
+                    if (!seen.get(row)) {
+                        seen.set(row);
+                        if (found == rows.length) {
+                            rows = Arrays.copyOf(rows, Math.min(size, rows.length * 2));
+                        }
+                        rows[found++] = row;
+                    }
+                }
+                continue;
+            }
+            double margin = node.margin(query);
+            probes.add(new Probe(node.right, Math.min(probe.priority, margin)));
+            probes.add(new Probe(node.left, Math.min(probe.priority, -margin)));
+        }
+        return found == rows.length ? rows : Arrays.copyOf(rows, found);
+    }
+
+    private void insert(Node root, int row) {
+        Node node = root;
+        while (!node.isLeaf()) {
+            node = node.margin(vectors, row) >= 0 ? node.right : node.left;
+        }
+        if (node.count == node.rows.length) {
+            node.rows = Arrays.copyOf(node.rows, node.rows.length * 2);
+        }
+        node.rows[node.count++] = row;
+        if (node.count > node.splitAt) {
+            split(node);
+        }
+    }
+
+    /**
+     * Turn a full leaf into a split on the hyperplane halfway between two of its vectors.
+     * A leaf of (near) identical vectors cannot be split; it is allowed to grow instead.
+     */
+    private void split(Node leaf) {
+        int dimensions = AudioFeatureVectors.DIMENSIONS;
+        for (int attempt = 0; attempt < SPLIT_ATTEMPTS; attempt++) {
+            int a = leaf.rows[random.nextInt(leaf.count)];
+            int b = leaf.rows[random.nextInt(leaf.count)];
+            float[] normal = new float[dimensions];
+            double offset = 0;
+            double length = 0;
+            for (int d = 0; d < dimensions; d++) {
+                float va = vectors.value(a, d);
+                float vb = vectors.value(b, d);
+                normal[d] = va - vb;
+                offset += normal[d] * (va + vb) / 2.0;
+                length += normal[d] * normal[d];
+            }
+            if (length == 0) {
+                continue;
+            }
+
+            int[] left = new int[leaf.count];
+            int[] right = new int[leaf.count];
+            int leftCount = 0;
+            int rightCount = 0;
+            for (int i = 0; i < leaf.count; i++) {
+                int row = leaf.rows[i];
+                double margin = 0;
+                for (int d = 0; d < dimensions; d++) {
+                    margin += normal[d] * vectors.value(row, d);
+                }
+                if (margin - offset >= 0) {
+                    right[rightCount++] = row;
+                } else {
+                    left[leftCount++] = row;
+                }
+            }
+            if (leftCount == 0 || rightCount == 0) {
+                continue;
+            }
+            leaf.normal = normal;
+            leaf.offset = offset;
+            leaf.left = new Node(left, leftCount);
+            leaf.right = new Node(right, rightCount);
+            leaf.rows = null;
+            leaf.count = 0;
+            return;
+        }
+        leaf.splitAt *= 2;
+    }
+
+    /**
+     * A leaf (rows set) or a split (normal set); rows on the side the normal points to go right
+     */
+    private static final class Node {
+        private int[] rows;
+        private int count;
+        private int splitAt = LEAF_SIZE;
+        private float[] normal;
+        private double offset;
+        private Node left;
+        private Node right;
+
+        private Node(int[] rows, int count) {
+            this.rows = rows;
+            this.count = count;
+        }
+
+        private boolean isLeaf() {
+            return normal == null;
+        }
+
+        private double margin(float[] vector) {
+            double dot = 0;
+            for (int d = 0; d < normal.length; d++) {
+                dot += normal[d] * vector[d];
+            }
+            return dot - offset;
+        }
+
+        private double margin(AudioFeatureVectors vectors, int row) {
+            double dot = 0;
+            for (int d = 0; d < normal.length; d++) {
+                dot += normal[d] * vectors.value(row, d);
+            }
+            return dot - offset;
+        }
+    }
+
+    private static final class Probe {
+        private final Node node;
+        private final double priority;
+
+        private Probe(Node node, double priority) {
+            this.node = node;
+            this.priority = priority;
+        }
+    }
+}
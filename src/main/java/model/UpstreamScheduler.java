@@ -0,0 +1,257 @@
+package model;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Decides when {@link APIClient} may send the next request to Spotify.
+ *
+ * A token bucket holds the call rate to our quota and lets short bursts through. Callers that find
+ * it empty wait in one queue, interactive requests ahead of background work (prefetching, indexing),
+ * first come first served within a priority. A 429 pauses everyone until its Retry-After has passed,
+ * so a burst is spread out instead of being answered with a cascade of failures. Waiting is bounded:
+ * past the deadline the call fails rather than holding a handler thread forever.
+ *
+ * Priority is per thread: code running in a {@link #background()} scope is scheduled as background.
+ */
+public class UpstreamScheduler {
+    public enum Priority {
+        INTERACTIVE,
+        BACKGROUND
+    }
+
+    private static final ThreadLocal<Priority> PRIORITY = ThreadLocal.withInitial(() -> Priority.INTERACTIVE);
+
+    // Retry-After is optional on a 429; wait this long when it is missing
+    private static final long DEFAULT_RETRY_AFTER_MS = 1_000;
+    private static final long BASE_BACKOFF_MS = 200;
+    private static final long MAX_BACKOFF_MS = 5_000;
+
+    private final double permitsPerSecond;
+    private final double burst;
+    private final long maxWaitNanos;
+    private final LongSupplier nanoClock;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final PriorityQueue<Waiter> waiting = new PriorityQueue<>(
+            Comparator.comparing((Waiter w) -> w.priority).thenComparingLong(w -> w.sequence));
+    private long nextSequence;
+    private double tokens;
+    private long refilledAt;
+    private long pausedUntil;
+
+    private final AtomicLong granted = new AtomicLong();
+    private final AtomicLong delayed = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+
+    public UpstreamScheduler(double permitsPerSecond, int burst, long maxWaitMs) {
+        this(permitsPerSecond, burst, maxWaitMs, System::nanoTime);
+    }
+
+    UpstreamScheduler(double permitsPerSecond, int burst, long maxWaitMs, LongSupplier nanoClock) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate and burst must be positive: " + permitsPerSecond + ", " + burst);
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        this.nanoClock = nanoClock;
+        this.tokens = burst;
+        this.refilledAt = nanoClock.getAsLong();
+        this.pausedUntil = refilledAt;
+    }
+
+    /**
+     * Rate, burst and maximum wait from {@code -Dupstream.ratePerSecond}, {@code -Dupstream.burst}
+     * and {@code -Dupstream.maxWaitMs}
+     */
+    public static UpstreamScheduler fromSystemProperties() {
+        return new UpstreamScheduler(
+                Double.parseDouble(System.getProperty("upstream.ratePerSecond", "10")),
+                Integer.getInteger("upstream.burst", 20),
+                Long.getLong("upstream.maxWaitMs", 10_000));
+    }
+
+    /**
+     * Schedule the calling thread's upstream calls as background work until the scope is closed
+     */
+    public static Scope background() {
+        Priority previous = PRIORITY.get();
+        PRIORITY.set(Priority.BACKGROUND);
+        return () -> PRIORITY.set(previous);
+    }
+
+    /**
+     * Wait for a permit to send one request, at the calling thread's priority
+     *
+     * @throws IOException if none was granted within the maximum wait
+     */
+    public void acquire() throws IOException {
+        Priority priority = PRIORITY.get();
+        lock.lock();
+        try {
+            Waiter waiter = new Waiter(priority, nextSequence++);
+            waiting.add(waiter);
+            long deadline = nanoClock.getAsLong() + maxWaitNanos;
+            boolean waited = false;
+            try {
+                while (true) {
+                    long now = nanoClock.getAsLong();
+                    refill(now);
+                    long wait;
+                    if (waiting.peek() == waiter) {
+                        if (now >= pausedUntil && tokens >= 1) {
+                            tokens -= 1;
+                            granted.incrementAndGet();
+                            if (waited) {
+                                delayed.incrementAndGet();
+                            }
+                            return;
+                        }
+                        long untilToken = (long) Math.ceil((1 - tokens) / permitsPerSecond * 1e9);
+                        wait = Math.max(pausedUntil - now, untilToken);
+                    } else {
+                        // The head signals when it is done
+                        wait = Long.MAX_VALUE;
+                    }
+                    long remaining = deadline - now;
+                    if (remaining <= 0) {
+                        timedOut.incrementAndGet();
+                        throw new IOException("Spotify rate limit: no request slot within "
+                                + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos) + " ms");
+                    }
+                    waited = true;
+                    changed.awaitNanos(Math.min(wait, remaining));
+                }
+            } finally {
+                waiting.remove(waiter);
+                changed.signalAll();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a Spotify request slot");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take a permit only if one is free right now and nobody is waiting; for callers that must not block
+     */
+    public boolean tryAcquire() {
+        lock.lock();
+        try {
+            long now = nanoClock.getAsLong();
+            refill(now);
+            if (!waiting.isEmpty() || now < pausedUntil || tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+            granted.incrementAndGet();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Spotify answered 429: nobody sends again until {@code retryAfterMs} has passed (a second if unknown)
+     */
+    public void onRateLimited(long retryAfterMs) {
+        rateLimited.incrementAndGet();
+        long pause = TimeUnit.MILLISECONDS.toNanos(retryAfterMs > 0 ? retryAfterMs : DEFAULT_RETRY_AFTER_MS);
+        lock.lock();
+        try {
+            long now = nanoClock.getAsLong();
+            pausedUntil = Math.max(pausedUntil, now + pause);
+            // Whatever was saved up was evidently more than Spotify allows right now
+            tokens = 0;
+            refilledAt = Math.max(refilledAt, pausedUntil);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Full-jitter exponential backoff before retry number {@code attempt} (1, 2, ...) of a failed call
+     */
+    public static long backoffMillis(int attempt) {
+        long ceiling = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(attempt - 1, 10));
+        return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+    }
+
+    /**
+     * Parse a Retry-After header (seconds; Spotify does not send dates), or -1
+     */
+    public static long parseRetryAfterMillis(String header) {
+        if (header == null) {
+            return -1;
+        }
+        try {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(header.trim()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void refill(long now) {
+        if (now > refilledAt) {
+            tokens = Math.min(burst, tokens + (now - refilledAt) * permitsPerSecond / 1e9);
+            refilledAt = now;
+        }
+    }
+
+    public int getQueueLength() {
+        lock.lock();
+        try {
+            return waiting.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getGranted() {
+        return granted.get();
+    }
+
+    /** Permits granted only after waiting for the bucket or a Retry-After pause */
+    public long getDelayed() {
+        return delayed.get();
+    }
+
+    public long getTimedOut() {
+        return timedOut.get();
+    }
+
+    /** 429 responses seen */
+    public long getRateLimited() {
+        return rateLimited.get();
+    }
+
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final class Waiter {
+        private final Priority priority;
+        private final long sequence;
+
+        private Waiter(Priority priority, long sequence) {
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+    }
+}
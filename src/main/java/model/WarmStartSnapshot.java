@@ -0,0 +1,287 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Saves an {@link APIClient}'s warm state to one compact file and loads it back after a restart:
+ * cached track searches, top-track lists, single tracks and artist searches (with the time each
+ * had left to live), the artist name to ID mapping, and the recent per-query request counts
+ * that tell the server what to prefetch.
+ *
+ * The file is gzipped {@link DataOutputStream} records, written to a temporary file and moved
+ * into place, so a crash mid-save leaves the previous snapshot intact. Strings are length-prefixed
+ * UTF-8 (not {@link DataOutputStream#writeUTF}, which stops at 64 KB) as in {@link TrackCatalogue}.
+ */
+public final class WarmStartSnapshot {
+    private static final int MAGIC = 0x57534E50; // "WSNP"
+    private static final int VERSION = 2;
+
+    private static final byte END = 0;
+    private static final byte TRACK_LIST = 1;
+    private static final byte ARTIST_LIST = 2;
+    private static final byte TRACK = 3;
+
+    private WarmStartSnapshot() {
+    }
+
+    /**
+     * Write the client's current state to {@code file}
+     *
+     * @return the number of cache entries saved
+     */
+    public static int save(APIClient client, Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        int saved;
+        try {
+            saved = write(client, temporary);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return saved;
+    }
+
+    private static int write(APIClient client, Path temporary) throws IOException {
+        int[] saved = {0};
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(temporary))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(System.currentTimeMillis());
+
+            client.getCache().forEachLive((key, value, remainingTtl) -> unchecked(() -> {
+                if (writeEntry(out, key, value, remainingTtl)) {
+                    saved[0]++;
+                }
+            }));
+            out.writeByte(END);
+
+            Map<String, String> artistIds = client.getArtistIndex().entries();
+            out.writeInt(artistIds.size());
+            for (Map.Entry<String, String> entry : artistIds.entrySet()) {
+                writeString(out, entry.getKey());
+                writeString(out, entry.getValue());
+            }
+
+            // Request counts, each preceded by true; false ends them
+            client.getHotQueries().forEach((hourStart, key, count) -> unchecked(() -> {
+                out.writeBoolean(true);
+                out.writeLong(hourStart);
+                writeString(out, key);
+                out.writeInt(count);
+            }));
+            out.writeBoolean(false);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return saved[0];
+    }
+
+    /**
+     * Load a snapshot written by {@link #save} into the client. Entries that expired while the
+     * server was down are dropped. A missing file is not an error; an unreadable one is.
+     *
+     * @return the number of cache entries restored
+     */
+    public static int restore(APIClient client, Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a warm-start snapshot: " + file);
+            }
+            long downtime = Math.max(0, System.currentTimeMillis() - in.readLong());
+
+            int restored = 0;
+            byte kind;
+            while ((kind = in.readByte()) != END) {
+                String key = readString(in);
+                long ttl = in.readLong() - downtime;
+                Object value = readValue(in, kind);
+                if (ttl > 0) {
+                    client.getCache().put(key, value, ttl);
+                    restored++;
+                }
+            }
+
+            ArtistIdIndex artistIndex = client.getArtistIndex();
+            for (int i = in.readInt(); i > 0; i--) {
+                artistIndex.record(readString(in), readString(in));
+            }
+
+            HotQueries hotQueries = client.getHotQueries();
+            while (in.readBoolean()) {
+                long hourStart = in.readLong();
+                hotQueries.record(readString(in), in.readInt(), hourStart);
+            }
+            return restored;
+        }
+    }
+
+    /**
+     * One cache entry; values of other types (e.g. audio features) are left out
+     */
+    private static boolean writeEntry(DataOutputStream out, String key, Object value, long remainingTtl)
+            throws IOException {
+        if (value instanceof Track) {
+            out.writeByte(TRACK);
+            writeString(out, key);
+            out.writeLong(remainingTtl);
+            writeTrack(out, (Track) value);
+            return true;
+        }
+        if (!(value instanceof List) || ((List<?>) value).isEmpty()) {
+            return false;
+        }
+        List<?> list = (List<?>) value;
+        if (list.get(0) instanceof Track) {
+            out.writeByte(TRACK_LIST);
+            writeString(out, key);
+            out.writeLong(remainingTtl);
+            out.writeInt(list.size());
+            for (Object track : list) {
+                writeTrack(out, (Track) track);
+            }
+            return true;
+        }
+        if (list.get(0) instanceof Artist) {
+            out.writeByte(ARTIST_LIST);
+            writeString(out, key);
+            out.writeLong(remainingTtl);
+            out.writeInt(list.size());
+            for (Object artist : list) {
+                writeString(out, ((Artist) artist).getId());
+                writeString(out, ((Artist) artist).getName());
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static void unchecked(Write write) {
+        try {
+            write.run();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Write {
+        void run() throws IOException;
+    }
+
+    private static Object readValue(DataInputStream in, byte kind) throws IOException {
+        switch (kind) {
+            case TRACK:
+                return readTrack(in);
+            case TRACK_LIST: {
+                int size = in.readInt();
+                List<Track> tracks = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    tracks.add(readTrack(in));
+                }
+                return List.copyOf(tracks);
+            }
+            case ARTIST_LIST: {
+                int size = in.readInt();
+                List<Artist> artists = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    artists.add(new Artist(readString(in), readString(in)));
+                }
+                return List.copyOf(artists);
+            }
+            default:
+                throw new IOException("Unknown snapshot entry type " + kind);
+        }
+    }
+
+    private static void writeTrack(DataOutputStream out, Track track) throws IOException {
+        writeString(out, track.getId());
+        writeString(out, track.getName());
+        writeStrings(out, track.getArtists() != null ? track.getArtists() : List.of());
+        writeStrings(out, track.getArtistIds());
+        writeString(out, track.getAlbumId());
+        writeString(out, track.getAlbumName());
+        out.writeInt(track.getDurationMs());
+        out.writeInt(track.getPopularity());
+        writeString(out, track.getPreviewUrl());
+    }
+
+    private static Track readTrack(DataInputStream in) throws IOException {
+        String id = readString(in);
+        String name = readString(in);
+        List<String> artists = readStrings(in);
+        List<String> artistIds = readStrings(in);
+        String albumId = readString(in);
+        String albumName = readString(in);
+
+        Track track = new Track(id, name, artists, albumName);
+        track.setArtistIds(artistIds);
+        track.setAlbumId(albumId);
+        track.setDurationMs(in.readInt());
+        track.setPopularity(in.readInt());
+        track.setPreviewUrl(readString(in));
+        return track;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < -1) {
+            throw new IOException("Corrupt snapshot: string length " + length);
+        }
+        if (length == -1) {
+            return null;
+        }
+        byte[] utf8 = new byte[length];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+}
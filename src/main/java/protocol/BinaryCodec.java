@@ -0,0 +1,270 @@
+package protocol;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import model.Track;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact encoding of requests and responses for {@link WireProtocol#BINARY} connections.
+ *
+ * Every payload starts with a kind byte. Tracks are written field by field with no names:
+ * durations and popularity as varints, and every string (artist and album names and IDs above all)
+ * through a per-message dictionary, so a name repeated on every track of a recommendation list
+ * is sent once. Requests and free-form payloads use a tagged binary form of JSON.
+ * A stale response ends with one flags byte; decoders that predate it ignore trailing bytes.
+ */
+public final class BinaryCodec {
+    private static final int KIND_REQUEST = 1;
+    private static final int KIND_TRACKS = 2;
+    private static final int KIND_ERROR = 3;
+    private static final int KIND_DATA = 4;
+
+    private static final int TAG_NULL = 0;
+    private static final int TAG_FALSE = 1;
+    private static final int TAG_TRUE = 2;
+    private static final int TAG_LONG = 3;
+    private static final int TAG_DOUBLE = 4;
+    private static final int TAG_STRING = 5;
+    private static final int TAG_ARRAY = 6;
+    private static final int TAG_OBJECT = 7;
+
+    private static final int FLAG_STALE = 1;
+
+    private static final int MAX_DEPTH = 32;
+
+    private BinaryCodec() {
+    }
+
+    public static byte[] encodeRequest(JsonObject request) {
+        BinaryWriter out = new BinaryWriter();
+        out.writeByte(KIND_REQUEST);
+        writeJson(out, request, 0);
+        return out.toByteArray();
+    }
+
+    public static JsonObject decodeRequest(byte[] payload) throws IOException {
+        BinaryReader in = new BinaryReader(payload);
+        if (in.readByte() != KIND_REQUEST) {
+            throw new IOException("Not a request");
+        }
+        JsonElement request = readJson(in, 0);
+        if (!request.isJsonObject()) {
+            throw new IOException("Request is not an object");
+        }
+        return request.getAsJsonObject();
+    }
+
+    public static byte[] encodeResponse(Response response) {
+        BinaryWriter out = new BinaryWriter();
+        if (!response.isSuccess()) {
+            out.writeByte(KIND_ERROR);
+            writeJson(out, response.getRequestId(), 0);
+            out.writeDictString(response.getMessage());
+        } else if (response.getTracks() != null) {
+            out.writeByte(KIND_TRACKS);
+            writeJson(out, response.getRequestId(), 0);
+            out.writeDictString(response.getAction());
+            writeTracks(out, response.getTracks());
+        } else {
+            out.writeByte(KIND_DATA);
+            writeJson(out, response.getRequestId(), 0);
+            out.writeDictString(response.getAction());
+            writeJson(out, response.getData(), 0);
+        }
+        if (response.isSuccess() && response.isStale()) {
+            out.writeByte(FLAG_STALE);
+        }
+        return out.toByteArray();
+    }
+
+    public static Response decodeResponse(byte[] payload) throws IOException {
+        BinaryReader in = new BinaryReader(payload);
+        int kind = in.readByte();
+        JsonElement requestId = readJson(in, 0);
+        Response response;
+        switch (kind) {
+            case KIND_ERROR:
+                response = Response.error(in.readDictString());
+                break;
+            case KIND_TRACKS:
+                String action = in.readDictString();
+                response = Response.tracks(action, readTracks(in));
+                break;
+            case KIND_DATA:
+                String dataAction = in.readDictString();
+                JsonElement data = readJson(in, 0);
+                response = Response.data(dataAction, data.isJsonObject() ? data.getAsJsonObject() : null);
+                break;
+            default:
+                throw new IOException("Unknown response kind: " + kind);
+        }
+        if (in.hasRemaining()) {
+            response.withStale((in.readByte() & FLAG_STALE) != 0);
+        }
+        return response.withRequestId(requestId.isJsonNull() ? null : requestId);
+    }
+
+    private static void writeTracks(BinaryWriter out, List<Track> tracks) {
+        out.writeVarLong(tracks.size());
+        for (Track track : tracks) {
+            out.writeDictString(track.getId());
+            out.writeDictString(track.getName());
+            writeStrings(out, track.getArtists());
+            writeStrings(out, track.getArtistIds());
+            out.writeDictString(track.getAlbumId());
+            out.writeDictString(track.getAlbumName());
+            out.writeDictString(track.getPreviewUrl());
+            out.writeZigZag(track.getDurationMs());
+            out.writeZigZag(track.getPopularity());
+        }
+    }
+
+    private static List<Track> readTracks(BinaryReader in) throws IOException {
+        int count = in.readCount();
+        List<Track> tracks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String id = in.readDictString();
+            String name = in.readDictString();
+            List<String> artists = readStrings(in);
+            List<String> artistIds = readStrings(in);
+            String albumId = in.readDictString();
+            String albumName = in.readDictString();
+            String previewUrl = in.readDictString();
+
+            Track track = new Track(id, name, artists, albumName);
+            track.setArtistIds(artistIds);
+            track.setAlbumId(albumId);
+            track.setPreviewUrl(previewUrl);
+            track.setDurationMs((int) in.readZigZag());
+            track.setPopularity((int) in.readZigZag());
+            tracks.add(track);
+        }
+        return tracks;
+    }
+
+    /**
+     * 0 = null list, otherwise size + 1 followed by the strings
+     */
+    private static void writeStrings(BinaryWriter out, List<String> values) {
+        if (values == null) {
+            out.writeVarLong(0);
+            return;
+        }
+        out.writeVarLong(values.size() + 1L);
+        for (String value : values) {
+            out.writeDictString(value);
+        }
+    }
+
+    private static List<String> readStrings(BinaryReader in) throws IOException {
+        int tag = in.readCount();
+        if (tag == 0) {
+            return null;
+        }
+        List<String> values = new ArrayList<>(tag - 1);
+        for (int i = 1; i < tag; i++) {
+            values.add(in.readDictString());
+        }
+        return values;
+    }
+
+    private static void writeJson(BinaryWriter out, JsonElement value, int depth) {
+        if (value == null || value.isJsonNull()) {
+            out.writeByte(TAG_NULL);
+        } else if (value.isJsonObject()) {
+            checkDepth(depth);
+            out.writeByte(TAG_OBJECT);
+            out.writeVarLong(value.getAsJsonObject().size());
+            for (Map.Entry<String, JsonElement> field : value.getAsJsonObject().entrySet()) {
+                out.writeDictString(field.getKey());
+                writeJson(out, field.getValue(), depth + 1);
+            }
+        } else if (value.isJsonArray()) {
+            checkDepth(depth);
+            out.writeByte(TAG_ARRAY);
+            out.writeVarLong(value.getAsJsonArray().size());
+            for (JsonElement element : value.getAsJsonArray()) {
+                writeJson(out, element, depth + 1);
+            }
+        } else {
+            JsonPrimitive primitive = value.getAsJsonPrimitive();
+            if (primitive.isBoolean()) {
+                out.writeByte(primitive.getAsBoolean() ? TAG_TRUE : TAG_FALSE);
+            } else if (primitive.isNumber()) {
+                writeNumber(out, primitive.getAsBigDecimal());
+            } else {
+                out.writeByte(TAG_STRING);
+                out.writeDictString(primitive.getAsString());
+            }
+        }
+    }
+
+    private static void writeNumber(BinaryWriter out, BigDecimal number) {
+        try {
+            long whole = number.longValueExact();
+            out.writeByte(TAG_LONG);
+            out.writeZigZag(whole);
+        } catch (ArithmeticException notAWholeLong) {
+            out.writeByte(TAG_DOUBLE);
+            out.writeDouble(number.doubleValue());
+        }
+    }
+
+    private static JsonElement readJson(BinaryReader in, int depth) throws IOException {
+        int tag = in.readByte();
+        switch (tag) {
+            case TAG_NULL:
+                return JsonNull.INSTANCE;
+            case TAG_FALSE:
+                return new JsonPrimitive(false);
+            case TAG_TRUE:
+                return new JsonPrimitive(true);
+            case TAG_LONG:
+                return new JsonPrimitive(in.readZigZag());
+            case TAG_DOUBLE:
+                return new JsonPrimitive(in.readDouble());
+            case TAG_STRING:
+                String string = in.readDictString();
+                return string == null ? JsonNull.INSTANCE : new JsonPrimitive(string);
+            case TAG_ARRAY: {
+                checkDepth(depth);
+                int count = in.readCount();
+                JsonArray array = new JsonArray(count);
+                for (int i = 0; i < count; i++) {
+                    array.add(readJson(in, depth + 1));
+                }
+                return array;
+            }
+            case TAG_OBJECT: {
+                checkDepth(depth);
+                int count = in.readCount();
+                JsonObject object = new JsonObject();
+                for (int i = 0; i < count; i++) {
+                    String key = in.readDictString();
+                    if (key == null) {
+                        throw new IOException("Null object key");
+                    }
+                    object.add(key, readJson(in, depth + 1));
+                }
+                return object;
+            }
+            default:
+                throw new IOException("Unknown value tag: " + tag);
+        }
+    }
+
+    private static void checkDepth(int depth) {
+        if (depth >= MAX_DEPTH) {
+            throw new IllegalArgumentException("JSON nested deeper than " + MAX_DEPTH);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package protocol;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads what {@link BinaryWriter} wrote, rebuilding the string dictionary as it goes.
+ * Malformed input fails with an IOException rather than a runtime exception.
+ */
+final class BinaryReader {
+    private final byte[] bytes;
+    private int position;
+    private final List<String> dictionary = new ArrayList<>();
+
+    BinaryReader(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    int readByte() throws IOException {
+        require(1);
+        return bytes[position++] & 0xFF;
+    }
+
+    long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    long readZigZag() throws IOException {
+        long encoded = readVarLong();
+        return (encoded >>> 1) ^ -(encoded & 1);
+    }
+
+    int readCount() throws IOException {
+        long count = readVarLong();
+        if (count < 0 || count > bytes.length - position) {
+            // Every element takes at least one byte, so a larger count cannot be genuine
+            throw new IOException("Invalid element count: " + count);
+        }
+        return (int) count;
+    }
+
+    double readDouble() throws IOException {
+        require(8);
+        long bits = 0;
+        for (int i = 0; i < 8; i++) {
+            bits = (bits << 8) | (bytes[position++] & 0xFF);
+        }
+        return Double.longBitsToDouble(bits);
+    }
+
+    String readString() throws IOException {
+        int length = readCount();
+        require(length);
+        String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    String readDictString() throws IOException {
+        long tag = readVarLong();
+        if (tag == 0) {
+            return null;
+        }
+        if (tag == 1) {
+            String value = readString();
+            dictionary.add(value);
+            return value;
+        }
+        long index = tag - 2;
+        if (index < 0 || index >= dictionary.size()) {
+            throw new IOException("Unknown dictionary reference: " + index);
+        }
+        return dictionary.get((int) index);
+    }
+
+    boolean hasRemaining() {
+        return position < bytes.length;
+    }
+
+    private void require(int count) throws IOException {
+        if (count < 0 || bytes.length - position < count) {
+            throw new EOFException("Binary message truncated");
+        }
+    }
+}
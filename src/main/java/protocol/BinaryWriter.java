@@ -0,0 +1,78 @@
+package protocol;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Growable byte sink for {@link BinaryCodec}: unsigned and zigzag varints, raw strings,
+ * and dictionary strings that are written out once per message and referenced by index after that.
+ */
+final class BinaryWriter {
+    private byte[] bytes = new byte[256];
+    private int size;
+    private final Map<String, Integer> dictionary = new HashMap<>();
+
+    void writeByte(int value) {
+        ensure(1);
+        bytes[size++] = (byte) value;
+    }
+
+    void writeVarLong(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[size++] = (byte) value;
+    }
+
+    void writeZigZag(long value) {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    void writeDouble(double value) {
+        long bits = Double.doubleToLongBits(value);
+        ensure(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            bytes[size++] = (byte) (bits >>> shift);
+        }
+    }
+
+    void writeString(String value) {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(utf8.length);
+        ensure(utf8.length);
+        System.arraycopy(utf8, 0, bytes, size, utf8.length);
+        size += utf8.length;
+    }
+
+    /**
+     * 0 = null, 1 = new string follows (and joins the dictionary), n >= 2 = dictionary entry n - 2
+     */
+    void writeDictString(String value) {
+        if (value == null) {
+            writeVarLong(0);
+            return;
+        }
+        Integer index = dictionary.get(value);
+        if (index != null) {
+            writeVarLong(index + 2L);
+            return;
+        }
+        dictionary.put(value, dictionary.size());
+        writeVarLong(1);
+        writeString(value);
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(bytes, size);
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package protocol;
+
+/**
+ * Payload compression a binary connection can agree on in its {@link Handshake}.
+ * Compressed frames carry {@link Frames#FLAG_DEFLATE}; small payloads are sent as they are.
+ */
+public enum Compression {
+    NONE("none"),
+    DEFLATE("deflate");
+
+    private final String wireName;
+
+    Compression(String wireName) {
+        this.wireName = wireName;
+    }
+
+    public String getWireName() {
+        return wireName;
+    }
+
+    /**
+     * The compression with this wire name, or NONE for anything unknown
+     */
+    public static Compression fromWireName(String name) {
+        for (Compression compression : values()) {
+            if (compression.wireName.equals(name)) {
+                return compression;
+            }
+        }
+        return NONE;
+    }
+}
@@ -0,0 +1,122 @@
+package protocol;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * zlib deflate for frame payloads.
+ *
+ * Compressing runs on whichever worker thread built the response. Workers borrow a Deflater and
+ * its output buffer from a small pool and hand them back, so connections share a handful of
+ * compressors instead of allocating native zlib state per response or per socket. The pool is
+ * not per thread: with a virtual thread per connection that would mean one compressor per
+ * response, whose native memory nobody frees. Compressors beyond the pool's size are ended.
+ * Inflaters hold per-stream state and belong to one connection's reader.
+ */
+final class Deflate {
+    // Below this a frame header and the deflate block overhead eat most of the gain
+    static final int MIN_COMPRESS_BYTES = 256;
+
+    private static final int BUFFER_BYTES = 16 * 1024;
+    // Idle compressors kept for reuse; about one per core is busy at any time
+    private static final BlockingQueue<Compressor> POOL =
+            new ArrayBlockingQueue<>(Integer.getInteger("deflate.poolSize", 2 * Runtime.getRuntime().availableProcessors()));
+
+    private Deflate() {
+    }
+
+    /**
+     * The compressed payload, or null if it would not be smaller than the original
+     */
+    static byte[] compress(byte[] payload) {
+        Compressor compressor = POOL.poll();
+        if (compressor == null) {
+            compressor = new Compressor();
+        }
+        try {
+            return compressor.compress(payload);
+        } finally {
+            compressor.release();
+        }
+    }
+
+    /**
+     * Idle compressors in the pool
+     */
+    static int pooled() {
+        return POOL.size();
+    }
+
+    private static final class Compressor {
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private byte[] buffer = new byte[BUFFER_BYTES];
+
+        byte[] compress(byte[] payload) {
+            deflater.reset();
+            deflater.setInput(payload);
+            deflater.finish();
+
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == buffer.length) {
+                    if (length >= payload.length) {
+                        return null;
+                    }
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+            return length < payload.length ? Arrays.copyOf(buffer, length) : null;
+        }
+
+        /**
+         * Back to the pool, or free the native state now if the pool is full
+         */
+        void release() {
+            if (buffer.length > BUFFER_BYTES) {
+                // One large payload should not pin a large buffer for good
+                buffer = new byte[BUFFER_BYTES];
+            }
+            if (!POOL.offer(this)) {
+                deflater.end();
+            }
+        }
+    }
+
+    static Inflater newInflater() {
+        return new Inflater();
+    }
+
+    /**
+     * Inflate one payload; fails rather than growing past {@link Frames#MAX_PAYLOAD_BYTES}
+     */
+    static byte[] inflate(Inflater inflater, byte[] compressed) throws IOException {
+        inflater.reset();
+        inflater.setInput(compressed);
+        byte[] out = new byte[Math.max(64, Math.min(compressed.length * 4, Frames.MAX_PAYLOAD_BYTES))];
+        int length = 0;
+        try {
+            while (!inflater.finished()) {
+                if (length == out.length) {
+                    if (out.length >= Frames.MAX_PAYLOAD_BYTES) {
+                        throw new IOException("Inflated frame exceeds " + Frames.MAX_PAYLOAD_BYTES + " bytes");
+                    }
+                    out = Arrays.copyOf(out, Math.min(out.length * 2, Frames.MAX_PAYLOAD_BYTES));
+                }
+                int inflated = inflater.inflate(out, length, out.length - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated compressed frame");
+                }
+                length += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed frame: " + e.getMessage(), e);
+        }
+        return length == out.length ? out : Arrays.copyOf(out, length);
+    }
+}
@@ -0,0 +1,169 @@
+package protocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Inflater;
+
+/**
+ * Length-prefixed framing used once a connection has left JSON lines:
+ * {@code [int32 payload length][byte flags][payload]}, big-endian.
+ * The flags byte names the payload codec: 0 for a plain payload, {@link #FLAG_DEFLATE} for a
+ * zlib-compressed one. The length is always the number of bytes on the wire.
+ */
+public final class Frames {
+    public static final int HEADER_BYTES = 5;
+    public static final int MAX_PAYLOAD_BYTES = 16 * 1024 * 1024;
+    public static final int FLAG_DEFLATE = 1;
+
+    private Frames() {
+    }
+
+    /**
+     * Write one frame; the caller flushes
+     */
+    public static void write(OutputStream out, byte[] payload) throws IOException {
+        write(out, payload, Compression.NONE);
+    }
+
+    /**
+     * Write one frame, compressing the payload if the connection agreed on it and it pays off; the caller flushes
+     */
+    public static void write(OutputStream out, byte[] payload, Compression compression) throws IOException {
+        byte[] compressed = compress(payload, compression);
+        byte[] body = compressed != null ? compressed : payload;
+        byte[] header = new byte[HEADER_BYTES];
+        ByteBuffer.wrap(header).putInt(body.length).put((byte) (compressed != null ? FLAG_DEFLATE : 0));
+        out.write(header);
+        out.write(body);
+    }
+
+    /**
+     * One frame as a buffer ready to be written to a channel
+     */
+    public static ByteBuffer encode(byte[] payload) {
+        return encode(payload, Compression.NONE);
+    }
+
+    public static ByteBuffer encode(byte[] payload, Compression compression) {
+        byte[] compressed = compress(payload, compression);
+        byte[] body = compressed != null ? compressed : payload;
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_BYTES + body.length);
+        frame.putInt(body.length).put((byte) (compressed != null ? FLAG_DEFLATE : 0)).put(body);
+        frame.flip();
+        return frame;
+    }
+
+    /**
+     * Inflater for reading frames on a connection that agreed on compression, or null if it did not.
+     * It belongs to that connection's reader; call {@code end()} when the connection closes.
+     */
+    public static Inflater newInflater(Compression compression) {
+        return compression == Compression.DEFLATE ? Deflate.newInflater() : null;
+    }
+
+    private static byte[] compress(byte[] payload, Compression compression) {
+        if (compression != Compression.DEFLATE || payload.length < Deflate.MIN_COMPRESS_BYTES) {
+            return null;
+        }
+        return Deflate.compress(payload);
+    }
+
+    /**
+     * Read the next frame's payload, or null if the stream ended cleanly between frames
+     */
+    public static byte[] read(InputStream in) throws IOException {
+        return read(in, null);
+    }
+
+    /**
+     * Same, inflating compressed frames with the connection's inflater (null if it agreed on none)
+     */
+    public static byte[] read(InputStream in, Inflater inflater) throws IOException {
+        DataInputStream data = in instanceof DataInputStream ? (DataInputStream) in : new DataInputStream(in);
+        int first = data.read();
+        if (first < 0) {
+            return null;
+        }
+        int length = (first << 24) | (data.readUnsignedByte() << 16) | (data.readUnsignedByte() << 8)
+                | data.readUnsignedByte();
+        int flags = data.readUnsignedByte();
+        checkHeader(length, flags, inflater);
+
+        byte[] payload = new byte[length];
+        data.readFully(payload);
+        return decode(payload, flags, inflater);
+    }
+
+    /**
+     * Payload of the frame at the buffer's position, advancing past it, or null (position unchanged)
+     * if the frame is not complete yet
+     */
+    public static byte[] read(ByteBuffer buffer) throws IOException {
+        return read(buffer, null);
+    }
+
+    public static byte[] read(ByteBuffer buffer, Inflater inflater) throws IOException {
+        if (buffer.remaining() < HEADER_BYTES) {
+            return null;
+        }
+        int start = buffer.position();
+        int length = buffer.getInt(start);
+        int flags = buffer.get(start + 4) & 0xff;
+        checkHeader(length, flags, inflater);
+        if (buffer.remaining() < HEADER_BYTES + length) {
+            return null;
+        }
+
+        byte[] payload = new byte[length];
+        buffer.get(start + HEADER_BYTES, payload);
+        buffer.position(start + HEADER_BYTES + length);
+        return decode(payload, flags, inflater);
+    }
+
+    /**
+     * Read a '\n'-terminated UTF-8 line straight from the stream, without buffering past it.
+     * Used for the JSON lines before a handshake, so no frame bytes are swallowed by a reader;
+     * pass a buffered stream, bytes are read one at a time.
+     */
+    public static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                if (line.size() == 0) {
+                    return null;
+                }
+                throw new EOFException("Stream ended in the middle of a line");
+            }
+            if (line.size() >= MAX_PAYLOAD_BYTES) {
+                throw new IOException("Line exceeds " + MAX_PAYLOAD_BYTES + " bytes");
+            }
+            line.write(b);
+        }
+        byte[] bytes = line.toByteArray();
+        int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] decode(byte[] payload, int flags, Inflater inflater) throws IOException {
+        return (flags & FLAG_DEFLATE) != 0 ? Deflate.inflate(inflater, payload) : payload;
+    }
+
+    private static void checkHeader(int length, int flags, Inflater inflater) throws IOException {
+        if (length < 0 || length > MAX_PAYLOAD_BYTES) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        if ((flags & ~FLAG_DEFLATE) != 0) {
+            throw new IOException("Unsupported frame flags: " + flags);
+        }
+        if ((flags & FLAG_DEFLATE) != 0 && inflater == null) {
+            throw new IOException("Compressed frame on a connection without compression");
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package protocol;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+/**
+ * HELLO exchange that switches a connection away from JSON lines.
+ *
+ * The client sends {@code {"action":"HELLO","protocol":"binary"}} as a JSON line and waits
+ * for the answer before sending anything else. A server that supports the protocol answers
+ * {@code {"status":"success","action":"HELLO","protocol":"binary"}} and every message after
+ * that is a {@link Frames frame}. Servers that predate HELLO answer with an unknown-action
+ * error, and the client simply carries on with JSON lines.
+ *
+ * A binary HELLO may also ask for {@code "compression":"deflate"}; the answer echoes the
+ * compression the server will use, and a server that leaves it out compresses nothing.
+ */
+public final class Handshake {
+    public static final String ACTION = "HELLO";
+
+    private Handshake() {
+    }
+
+    public static boolean isHello(JsonObject request) {
+        return request != null && request.has("action") && request.get("action").isJsonPrimitive()
+                && ACTION.equals(request.get("action").getAsString());
+    }
+
+    /**
+     * Client side: the HELLO line asking for the given protocol
+     */
+    public static String request(WireProtocol wanted) {
+        return request(wanted, Compression.NONE);
+    }
+
+    public static String request(WireProtocol wanted, Compression compression) {
+        JsonObject hello = new JsonObject();
+        hello.addProperty("action", ACTION);
+        hello.addProperty("protocol", wanted.getWireName());
+        if (compression != Compression.NONE) {
+            hello.addProperty("compression", compression.getWireName());
+        }
+        return hello.toString();
+    }
+
+    /**
+     * Server side: the protocol to use for a HELLO request (this server supports all of them)
+     */
+    public static WireProtocol negotiate(JsonObject hello) {
+        JsonElement protocol = hello.get("protocol");
+        return protocol != null && protocol.isJsonPrimitive()
+                ? WireProtocol.fromWireName(protocol.getAsString())
+                : WireProtocol.JSON;
+    }
+
+    /**
+     * Server side: the compression to use for a HELLO request; only framed protocols can carry it
+     */
+    public static Compression negotiateCompression(JsonObject hello) {
+        JsonElement compression = hello.get("compression");
+        if (negotiate(hello) != WireProtocol.BINARY || compression == null || !compression.isJsonPrimitive()) {
+            return Compression.NONE;
+        }
+        return Compression.fromWireName(compression.getAsString());
+    }
+
+    /**
+     * Server side: the JSON line confirming the agreed protocol
+     */
+    public static String response(WireProtocol agreed) {
+        return response(agreed, Compression.NONE);
+    }
+
+    public static String response(WireProtocol agreed, Compression compression) {
+        JsonObject response = new JsonObject();
+        response.addProperty("status", "success");
+        response.addProperty("action", ACTION);
+        response.addProperty("protocol", agreed.getWireName());
+        if (compression != Compression.NONE) {
+            response.addProperty("compression", compression.getWireName());
+        }
+        return response.toString();
+    }
+
+    /**
+     * Client side: the protocol the server agreed to, JSON if it did not understand HELLO
+     */
+    public static WireProtocol accepted(String responseLine) {
+        return WireProtocol.fromWireName(stringField(successfulResponse(responseLine), "protocol"));
+    }
+
+    /**
+     * Client side: the compression the server agreed to, NONE if it did not mention any
+     */
+    public static Compression acceptedCompression(String responseLine) {
+        return Compression.fromWireName(stringField(successfulResponse(responseLine), "compression"));
+    }
+
+    private static String stringField(JsonObject response, String name) {
+        JsonElement field = response == null ? null : response.get(name);
+        return field != null && field.isJsonPrimitive() ? field.getAsString() : null;
+    }
+
+    private static JsonObject successfulResponse(String responseLine) {
+        if (responseLine == null) {
+            return null;
+        }
+        try {
+            JsonObject response = JsonParser.parseString(responseLine).getAsJsonObject();
+            return "success".equals(stringField(response, "status")) ? response : null;
+        } catch (JsonParseException | IllegalStateException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package protocol;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import model.Track;
+
+import java.util.List;
+
+/**
+ * One server response, before it is encoded for the wire.
+ * Carries either a track list, a free-form JSON payload (e.g. STATS) or an error message,
+ * plus the client's requestId when it sent one. A response built from cached data that had
+ * expired (because Spotify was unavailable) is marked stale.
+ */
+public class Response {
+    private final boolean success;
+    private final String action;
+    private final String message;
+    private final List<Track> tracks;
+    private final JsonObject data;
+    private JsonElement requestId;
+    private boolean stale;
+
+    private Response(boolean success, String action, String message, List<Track> tracks, JsonObject data) {
+        this.success = success;
+        this.action = action;
+        this.message = message;
+        this.tracks = tracks;
+        this.data = data;
+    }
+
+    public static Response tracks(String action, List<Track> tracks) {
+        return new Response(true, action, null, tracks, null);
+    }
+
+    public static Response data(String action, JsonObject data) {
+        return new Response(true, action, null, null, data);
+    }
+
+    public static Response error(String message) {
+        return new Response(false, null, message, null, null);
+    }
+
+    public Response withRequestId(JsonElement requestId) {
+        this.requestId = requestId;
+        return this;
+    }
+
+    public Response withStale(boolean stale) {
+        this.stale = stale;
+        return this;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /** Track results, or null for error and JSON-payload responses */
+    public List<Track> getTracks() {
+        return tracks;
+    }
+
+    /** Free-form payload, or null for track and error responses */
+    public JsonObject getData() {
+        return data;
+    }
+
+    public JsonElement getRequestId() {
+        return requestId;
+    }
+
+    /** True if some of the data is older than its time-to-live */
+    public boolean isStale() {
+        return stale;
+    }
+
+    /**
+     * The JSON-lines form: {"status":..., "action":..., "data":...} or {"status":"error","message":...},
+     * then "stale":true if it applies, with the requestId last
+     */
+    public JsonObject toJson(Gson gson) {
+        JsonObject json = new JsonObject();
+        if (success) {
+            json.addProperty("status", "success");
+            json.addProperty("action", action);
+            json.add("data", tracks != null ? gson.toJsonTree(tracks) : data);
+            if (stale) {
+                json.addProperty("stale", true);
+            }
+        } else {
+            json.addProperty("status", "error");
+            json.addProperty("message", message);
+        }
+        if (requestId != null) {
+            json.add("requestId", requestId);
+        }
+        return json;
+    }
+}
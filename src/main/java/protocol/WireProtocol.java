@@ -0,0 +1,32 @@
+package protocol;
+
+/**
+ * Encodings a connection can speak. JSON lines are the default; anything else is
+ * agreed with a {@link Handshake} at the start of the connection.
+ */
+public enum WireProtocol {
+    JSON("json"),
+    BINARY("binary");
+
+    private final String wireName;
+
+    WireProtocol(String wireName) {
+        this.wireName = wireName;
+    }
+
+    public String getWireName() {
+        return wireName;
+    }
+
+    /**
+     * The protocol with this wire name, or JSON for anything unknown
+     */
+    public static WireProtocol fromWireName(String name) {
+        for (WireProtocol protocol : values()) {
+            if (protocol.wireName.equals(name)) {
+                return protocol;
+            }
+        }
+        return JSON;
+    }
+}
@@ -1,161 +1,183 @@
 package server;
 
-import com.google.gson.Gson;
 import com.google.gson.JsonObject;
-import model.APIClient;
-import model.Track;
-import model.Artist;
-import org.apache.hc.core5.http.ParseException;
-
-import java.io.BufferedReader;
+import logging.Logger;
+import protocol.BinaryCodec;
+import protocol.Compression;
+import protocol.Frames;
+import protocol.Handshake;
+import protocol.Response;
+import protocol.WireProtocol;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.Socket;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.zip.Inflater;
 
 /**
  * Handles individual client connections in separate threads
  * Demonstrates Multithreading and Socket communication
  */
 public class ClientHandler implements Runnable {
-    private final Socket clientSocket;
-    private final APIClient apiClient;
-    private final Gson gson;
+    private static final Logger LOG = Logger.getLogger(ClientHandler.class);
+
+    // Upper bound on pipelined requests one client may have running at once
+    private static final int MAX_IN_FLIGHT = 32;
 
-    public ClientHandler(Socket socket, APIClient apiClient) {
+    private final Socket clientSocket;
+    private final RequestProcessor processor;
+    private final Executor requestExecutor;
+    private final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+    private OutputStream out;
+    // Agreed in the HELLO, before any worker writes a frame
+    private Compression compression = Compression.NONE;
+
+    public ClientHandler(Socket socket, RequestProcessor processor, Executor requestExecutor) {
         this.clientSocket = socket;
-        this.apiClient = apiClient;
-        this.gson = new Gson();
+        this.processor = processor;
+        this.requestExecutor = requestExecutor;
     }
 
     @Override
     public void run() {
-        System.out.println("New client connected: " + clientSocket.getInetAddress());
+        LOG.debug("New client connected: {}", clientSocket.getInetAddress());
 
         try (
-                BufferedReader in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-                PrintWriter out = new PrintWriter(clientSocket.getOutputStream(), true)
+                BufferedInputStream in = new BufferedInputStream(clientSocket.getInputStream());
+                BufferedOutputStream writer = new BufferedOutputStream(clientSocket.getOutputStream())
         ) {
+            out = writer;
             String request;
-            while ((request = in.readLine()) != null) {
+            while ((request = Frames.readLine(in)) != null) {
 
                 if (request.trim().isEmpty()) {
                     // Skip empty lines so Gson never sees "null"
                     continue;
                 }
 
-                System.out.println("Received request: " + request);
-                String response = handleRequest(request);
-                out.println(response);
+                LOG.debug("Received request: {}", request);
+                JsonObject jsonRequest = processor.parse(request);
+                if (Handshake.isHello(jsonRequest)) {
+                    WireProtocol agreed = Handshake.negotiate(jsonRequest);
+                    // Answers to earlier requests must still go out as lines, before the switch
+                    awaitInFlight();
+                    compression = Handshake.negotiateCompression(jsonRequest);
+                    send(Handshake.response(agreed, compression));
+                    if (agreed == WireProtocol.BINARY) {
+                        readFrames(in);
+                        break;
+                    }
+                } else if (RequestProcessor.isPipelined(jsonRequest)) {
+                    dispatch(() -> send(processor.process(jsonRequest)));
+                } else {
+                    // Untagged requests keep the original one-at-a-time, in-order behaviour
+                    send(processor.process(request));
+                }
             }
+            // Let pipelined requests finish writing before the socket closes
+            awaitInFlight();
         } catch (IOException e) {
-            System.err.println("Error handling client: " + e.getMessage());
+            LOG.warn("Error handling client: {}", e.getMessage());
         } finally {
             try {
                 clientSocket.close();
-                System.out.println("Client disconnected");
+                LOG.debug("Client disconnected");
             } catch (IOException e) {
-                e.printStackTrace();
+                LOG.warn("Failed to close client socket", e);
             }
         }
     }
 
     /**
-     * Process client requests and return JSON responses
+     * Binary protocol loop: one request per frame, scheduled the same way as JSON lines
      */
-    private String handleRequest(String request) {
+    private void readFrames(InputStream in) throws IOException {
+        Inflater inflater = Frames.newInflater(compression);
         try {
-            if (request == null || request.trim().isEmpty()) {
-                return createErrorResponse("Empty or invalid request");
+            readFrames(in, inflater);
+        } finally {
+            if (inflater != null) {
+                inflater.end();
             }
+        }
+    }
 
-            JsonObject jsonRequest = gson.fromJson(request, JsonObject.class);
-            if (jsonRequest == null || !jsonRequest.has("action")) {
-                return createErrorResponse("Not a valid JSON Object: " + request);
+    private void readFrames(InputStream in, Inflater inflater) throws IOException {
+        byte[] payload;
+        while ((payload = Frames.read(in, inflater)) != null) {
+            JsonObject jsonRequest;
+            try {
+                jsonRequest = BinaryCodec.decodeRequest(payload);
+            } catch (IOException | IllegalArgumentException e) {
+                // The frame boundary is intact, so one bad payload does not cost the connection
+                sendFrame(BinaryCodec.encodeResponse(Response.error("Invalid binary request: " + e.getMessage())));
+                continue;
             }
 
-            String action = jsonRequest.get("action").getAsString();
-
-            switch (action) {
-                case "SEARCH":
-                    return handleSearch(jsonRequest);
-                case "RECOMMEND":
-                    return handleRecommend(jsonRequest);
-                default:
-                    return createErrorResponse("Unknown action: " + action);
+            LOG.debug("Received binary request: {}", jsonRequest);
+            if (RequestProcessor.isPipelined(jsonRequest)) {
+                dispatch(() -> sendFrame(processor.processBinary(jsonRequest)));
+            } else {
+                sendFrame(processor.processBinary(jsonRequest));
             }
-        } catch (Exception e) {
-            return createErrorResponse("Error processing request: " + e.getMessage());
         }
     }
 
-
-    private String handleSearch(JsonObject request) {
+    /**
+     * Run a tagged request concurrently; its response is written as soon as it is ready
+     */
+    private void dispatch(Runnable request) {
+        // Blocks reading further requests once this client has too many in flight
+        inFlight.acquireUninterruptibly();
         try {
-            String query = request.get("query").getAsString();
-            int limit = request.has("limit") ? request.get("limit").getAsInt() : 10;
-
-            List<Track> tracks = apiClient.searchTracks(query, limit);
-
-            JsonObject response = new JsonObject();
-            response.addProperty("status", "success");
-            response.addProperty("action", "SEARCH");
-            response.add("data", gson.toJsonTree(tracks));
-
-            return gson.toJson(response);
-        } catch (IOException e) {
-            return createErrorResponse("Search failed: " + e.getMessage());
-        } catch (ParseException e) {
-            throw new RuntimeException(e);
+            requestExecutor.execute(() -> {
+                try {
+                    request.run();
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            request.run();
         }
     }
 
-    private String handleRecommend(JsonObject request) {
-        try {
-            String trackId = request.get("trackId").getAsString();
-            String market = "US"; // You can change this for your region
-
-            // ✅ 1. Get full track details by ID
-            Track seedTrack = apiClient.getTrackById(trackId);
-
-            if (seedTrack == null || seedTrack.getArtists().isEmpty()) {
-                return createErrorResponse("No artist found for track ID: " + trackId);
-            }
-
-            // ✅ 2. Use the first artist of the selected track
-            String artistName = seedTrack.getArtists().get(0);
-            System.out.println("Getting top tracks for artist: " + artistName);
+    private void awaitInFlight() {
+        inFlight.acquireUninterruptibly(MAX_IN_FLIGHT);
+        inFlight.release(MAX_IN_FLIGHT);
+    }
 
-            // ✅ 3. Search Spotify for the artist to get their ID
-            List<Artist> artistMatches = apiClient.searchArtistByName(artistName);
-            if (artistMatches.isEmpty()) {
-                return createErrorResponse("Artist not found: " + artistName);
+    private void send(String response) {
+        byte[] line = (response + "\n").getBytes(StandardCharsets.UTF_8);
+        synchronized (out) {
+            try {
+                out.write(line);
+                out.flush();
+            } catch (IOException e) {
+                LOG.debug("Failed to send response: {}", e.getMessage());
             }
-
-            String artistId = artistMatches.get(0).getId();
-
-            // ✅ 4. Get top tracks for that artist
-            List<Track> topTracks = apiClient.getTopTracksForArtist(artistId, market);
-
-            // ✅ 5. Package results into a JSON response
-            JsonObject response = new JsonObject();
-            response.addProperty("status", "success");
-            response.addProperty("action", "RECOMMEND");
-            response.add("data", gson.toJsonTree(topTracks));
-
-            return gson.toJson(response);
-
-        } catch (Exception e) {
-            e.printStackTrace();
-            return createErrorResponse("Recommendation failed: " + e.getMessage());
         }
     }
 
-    private String createErrorResponse(String message) {
-        JsonObject response = new JsonObject();
-        response.addProperty("status", "error");
-        response.addProperty("message", message);
-        return gson.toJson(response);
+    private void sendFrame(byte[] payload) {
+        // Compress outside the lock so other responses can be written meanwhile
+        ByteBuffer frame = Frames.encode(payload, compression);
+        synchronized (out) {
+            try {
+                out.write(frame.array(), 0, frame.limit());
+                out.flush();
+            } catch (IOException e) {
+                LOG.debug("Failed to send response: {}", e.getMessage());
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,92 +1,247 @@
 package server;
 
 import config.config;
+import logging.Logger;
 import model.APIClient;
-import config.config;
+import model.TrackCatalogue;
+import model.WarmStartSnapshot;
 import org.apache.hc.core5.http.ParseException;
 
 import java.io.IOException;
+import java.lang.reflect.Method;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.file.Path;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Multi-threaded server that handles multiple client connections
  * Demonstrates Server Socket programming and Thread Pool
  */
 public class MusicRecommendationServer {
+    private static final Logger LOG = Logger.getLogger(MusicRecommendationServer.class);
+
+    // How often the metrics snapshot is printed; -Dmetrics.dumpIntervalSeconds=0 turns it off
+    private static final long METRICS_DUMP_INTERVAL_SECONDS = Long.getLong("metrics.dumpIntervalSeconds", 60);
+    // Where tracks learned from Spotify are kept across restarts; -Dcatalogue.dir= (empty) turns it off
+    private static final String CATALOGUE_DIR = System.getProperty("catalogue.dir", "data/catalogue");
+    // Warm caches saved on shutdown and every few minutes; -Dsnapshot.file= (empty) turns it off
+    private static final String SNAPSHOT_FILE = System.getProperty("snapshot.file", "data/warm-start.snapshot");
+    private static final long SNAPSHOT_INTERVAL_MINUTES = Long.getLong("snapshot.intervalMinutes", 10);
+    // Hottest queries fetched right after startup if the snapshot did not bring them back
+    private static final int PREFETCH_QUERIES = Integer.getInteger("snapshot.prefetchQueries", 50);
+
     private final int port;
+    private final ServerMode mode;
     private final APIClient apiClient;
+    private final RequestProcessor processor;
     private final ExecutorService threadPool;
+    // Runs pipelined (requestId-tagged) requests so a connection thread can keep reading
+    private final ExecutorService requestPool;
+    private volatile NioServer nioServer;
+    private volatile ScheduledExecutorService metricsDumper;
+    private volatile ScheduledExecutorService warmStart;
     private volatile boolean running;
 
     public MusicRecommendationServer(int port) {
+        this(port, ServerMode.THREAD_POOL);
+    }
+
+    public MusicRecommendationServer(int port, ServerMode mode) {
         this.port = port;
+        this.mode = mode;
         this.apiClient = new APIClient();
-        this.threadPool = Executors.newFixedThreadPool(10); // Pool of 10 threads
+        this.processor = new RequestProcessor(apiClient);
+        this.threadPool = mode == ServerMode.VIRTUAL_THREADS
+                ? newVirtualThreadExecutor()
+                : Executors.newFixedThreadPool(10); // Pool of 10 threads
+        // Connection threads must not wait on their own pool, so thread-pool mode gets a separate one
+        this.requestPool = mode == ServerMode.THREAD_POOL ? Executors.newFixedThreadPool(10) : threadPool;
         this.running = false;
     }
 
+    /**
+     * Executor that starts a new virtual thread per task.
+     * Looked up reflectively so the project still compiles on Java 17; running it needs Java 21+.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Virtual threads need Java 21 or newer (running "
+                    + System.getProperty("java.version") + ")", e);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create virtual thread executor", e);
+        }
+    }
+
     /**
      * Start the server and listen for client connections
      */
     public void start() throws IOException, ParseException {
-        // Authenticate with Spotify API
-        System.out.println("Authenticating with Spotify API...");
+        openCatalogue();
+        restoreSnapshot();
+
+        // Authenticate with Spotify API; the client renews the token itself before it expires
+        LOG.info("Authenticating with Spotify API...");
         apiClient.authenticate();
+        running = true;
+        startMetricsDump();
+        startWarmStart();
 
-        Thread refresher = new Thread(() -> {
-            while (running) {
-                try {
-                    Thread.sleep(55 * 60 * 1000); // refresh every 55 minutes
-                    System.out.println("🔄 Refreshing Spotify token...");
-                    apiClient.authenticate();
-                } catch (Exception e) {
-                    System.err.println("Failed to refresh token: " + e.getMessage());
-                }
+        if (mode == ServerMode.NIO) {
+            // Pool threads only run complete requests; the selector thread holds the sockets
+            nioServer = new NioServer(port, processor, threadPool);
+            try {
+                nioServer.start();
+            } finally {
+                shutdown();
             }
-        });
-        refresher.setDaemon(true); // ✅ Daemon thread won’t block shutdown
-        refresher.start();
-        running = true;
+            return;
+        }
 
         try (ServerSocket serverSocket = new ServerSocket(port)) {
-            System.out.println("Music Recommendation Server started on port " + port);
-            System.out.println("Waiting for client connections...");
+            LOG.info("Music Recommendation Server started on port {}", port);
+            LOG.info("Waiting for client connections...");
 
             while (running) {
                 // Accept incoming client connection
                 Socket clientSocket = serverSocket.accept();
 
                 // Handle client in separate thread from pool
-                ClientHandler handler = new ClientHandler(clientSocket, apiClient);
+                ClientHandler handler = new ClientHandler(clientSocket, processor, requestPool);
                 threadPool.execute(handler);
             }
         } catch (IOException e) {
-            System.err.println("Server error: " + e.getMessage());
+            LOG.error("Server error: {}", e.getMessage());
             throw e;
         } finally {
             shutdown();
         }
     }
 
+    /**
+     * Put the on-disk track catalogue behind the API client, so a restart answers from what
+     * earlier runs fetched. The server still runs (cold) if it cannot be opened.
+     */
+    private void openCatalogue() {
+        if (CATALOGUE_DIR.isEmpty()) {
+            return;
+        }
+        try {
+            apiClient.setCatalogue(TrackCatalogue.open(Path.of(CATALOGUE_DIR)));
+        } catch (IOException e) {
+            LOG.warn("Track catalogue unavailable, starting without it: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Load the caches saved by the previous run, so the first requests after a deploy are hits
+     */
+    private void restoreSnapshot() {
+        if (SNAPSHOT_FILE.isEmpty()) {
+            return;
+        }
+        long started = System.nanoTime();
+        try {
+            int restored = WarmStartSnapshot.restore(apiClient, Path.of(SNAPSHOT_FILE));
+            LOG.info("Restored {} cache entries in {} ms", restored,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Ignoring warm-start snapshot {}: {}", SNAPSHOT_FILE, e.getMessage());
+        }
+    }
+
+    /**
+     * Prefetch the queries that were hottest before the restart, then save a snapshot at a fixed interval
+     */
+    private void startWarmStart() {
+        if (SNAPSHOT_FILE.isEmpty()) {
+            return;
+        }
+        warmStart = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "warm-start");
+            thread.setDaemon(true);
+            return thread;
+        });
+        warmStart.execute(() -> {
+            int fetched = apiClient.prefetch(apiClient.getHotQueries().hottest(PREFETCH_QUERIES));
+            LOG.info("Prefetched {} hot queries", fetched);
+        });
+        if (SNAPSHOT_INTERVAL_MINUTES > 0) {
+            warmStart.scheduleAtFixedRate(this::saveSnapshot,
+                    SNAPSHOT_INTERVAL_MINUTES, SNAPSHOT_INTERVAL_MINUTES, TimeUnit.MINUTES);
+        }
+    }
+
+    private void saveSnapshot() {
+        long started = System.nanoTime();
+        try {
+            int saved = WarmStartSnapshot.save(apiClient, Path.of(SNAPSHOT_FILE));
+            LOG.info("Saved {} cache entries in {} ms", saved,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Failed to save warm-start snapshot: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Print the metrics snapshot (request and upstream timers) at a fixed interval
+     */
+    private void startMetricsDump() {
+        if (METRICS_DUMP_INTERVAL_SECONDS <= 0) {
+            return;
+        }
+        metricsDumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        metricsDumper.scheduleAtFixedRate(() -> LOG.info(apiClient.getMetrics().dump()),
+                METRICS_DUMP_INTERVAL_SECONDS, METRICS_DUMP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
     /**
      * Shutdown the server gracefully
      */
     public void shutdown() {
         running = false;
+        if (nioServer != null) {
+            nioServer.stop();
+        }
+        if (metricsDumper != null) {
+            metricsDumper.shutdownNow();
+        }
+        synchronized (this) {
+            // Shutdown runs twice (start's finally and the shutdown hook); save once
+            if (warmStart != null) {
+                warmStart.shutdownNow();
+                try {
+                    // A periodic save may be writing the same file
+                    warmStart.awaitTermination(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                warmStart = null;
+                saveSnapshot();
+            }
+        }
         threadPool.shutdown();
+        requestPool.shutdown();
         try {
             apiClient.close();
         } catch (IOException e) {
-            e.printStackTrace();
+            LOG.warn("Failed to close API client", e);
         }
-        System.out.println("Server shutdown complete");
+        LOG.info("Server shutdown complete");
     }
 
     public static void main(String[] args) {
-        MusicRecommendationServer server = new MusicRecommendationServer(config.SERVER_PORT);
+        MusicRecommendationServer server = new MusicRecommendationServer(config.SERVER_PORT, ServerMode.fromArgs(args));
 
         // Add shutdown hook for graceful termination
         Runtime.getRuntime().addShutdownHook(new Thread(server::shutdown));
@@ -94,10 +249,9 @@ public class MusicRecommendationServer {
         try {
             server.start();
         } catch (IOException e) {
-            System.err.println("Failed to start server: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Failed to start server: {}", e.getMessage(), e);
         } catch (ParseException e) {
             throw new RuntimeException(e);
         }
     }
-}
\ No newline at end of file
+}
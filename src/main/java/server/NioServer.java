@@ -0,0 +1,395 @@
+package server;
+
+import com.google.gson.JsonObject;
+import logging.Logger;
+import protocol.BinaryCodec;
+import protocol.Compression;
+import protocol.Frames;
+import protocol.Handshake;
+import protocol.Response;
+import protocol.WireProtocol;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.Inflater;
+
+/**
+ * Non-blocking front end for the recommendation server.
+ * One selector thread owns every socket; only complete requests (JSON lines, or frames
+ * after a binary HELLO) are handed to the worker pool, so idle clients cost a buffer instead of a thread.
+ * Demonstrates NIO channels, selectors and buffers
+ */
+public class NioServer {
+    private static final Logger LOG = Logger.getLogger(NioServer.class);
+
+    private static final int READ_BUFFER_SIZE = 4 * 1024;
+    private static final int MAX_REQUEST_SIZE = 64 * 1024;
+    // Upper bound on pipelined requests one client may have running at once
+    private static final int MAX_IN_FLIGHT = 32;
+    // Past either backlog the selector stops reading from the client until it catches up,
+    // so a client that sends without reading fills its own socket buffers, not the heap
+    private static final int MAX_PENDING_REQUESTS = 2 * MAX_IN_FLIGHT;
+    private static final int MAX_QUEUED_RESPONSES = MAX_IN_FLIGHT;
+
+    private final int port;
+    private final RequestProcessor processor;
+    private final ExecutorService workers;
+    // Work that must run on the selector thread (interest-op changes, dispatching the next request)
+    private final Queue<Runnable> selectorTasks = new ConcurrentLinkedQueue<>();
+    private volatile Selector selector;
+    private volatile boolean running;
+
+    public NioServer(int port, RequestProcessor processor, ExecutorService workers) {
+        this.port = port;
+        this.processor = processor;
+        this.workers = workers;
+    }
+
+    /**
+     * Run the selector loop until {@link #stop()} is called
+     */
+    public void start() throws IOException {
+        try (Selector sel = Selector.open();
+             ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            serverChannel.bind(new InetSocketAddress(port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(sel, SelectionKey.OP_ACCEPT);
+            selector = sel;
+            running = true;
+
+            LOG.info("Music Recommendation Server (NIO) started on port {}", port);
+            LOG.info("Waiting for client connections...");
+
+            try {
+                while (running) {
+                    sel.select();
+                    runSelectorTasks();
+
+                    Iterator<SelectionKey> keys = sel.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        try {
+                            if (!key.isValid()) {
+                                continue;
+                            }
+                            if (key.isAcceptable()) {
+                                accept(serverChannel, sel);
+                                continue;
+                            }
+                            if (key.isReadable()) {
+                                read(key);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                write(key);
+                            }
+                        } catch (IOException e) {
+                            close(key);
+                        }
+                    }
+                }
+            } finally {
+                for (SelectionKey key : sel.keys()) {
+                    if (key.attachment() instanceof Connection) {
+                        close(key);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Stop the selector loop; open client sockets are closed on the way out
+     */
+    public void stop() {
+        running = false;
+        Selector sel = selector;
+        if (sel != null) {
+            sel.wakeup();
+        }
+    }
+
+    private void accept(ServerSocketChannel serverChannel, Selector sel) throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            SelectionKey key = channel.register(sel, SelectionKey.OP_READ);
+            key.attach(new Connection(channel, key));
+            LOG.debug("New client connected: {}", channel.socket().getInetAddress());
+        }
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        Connection conn = (Connection) key.attachment();
+        int bytesRead = conn.channel.read(conn.readBuffer);
+        if (bytesRead == -1) {
+            close(key);
+            return;
+        }
+
+        extractRequests(conn);
+
+        if (!conn.readBuffer.hasRemaining()) {
+            // A single request larger than the buffer: grow up to the frame limit
+            if (conn.readBuffer.capacity() >= MAX_REQUEST_SIZE) {
+                LOG.warn("Request exceeds {} bytes, closing client", MAX_REQUEST_SIZE);
+                close(key);
+                return;
+            }
+            ByteBuffer larger = ByteBuffer.allocate(Math.min(conn.readBuffer.capacity() * 2, MAX_REQUEST_SIZE));
+            conn.readBuffer.flip();
+            larger.put(conn.readBuffer);
+            conn.readBuffer = larger;
+        }
+
+        dispatchNext(conn);
+    }
+
+    /**
+     * Queue every complete request in the read buffer; a trailing partial request stays buffered.
+     * Requests are '\n'-terminated JSON lines until a HELLO switches the connection to frames.
+     */
+    private void extractRequests(Connection conn) throws IOException {
+        ByteBuffer buffer = conn.readBuffer;
+        buffer.flip();
+        while (buffer.hasRemaining() && (conn.binary ? extractFrame(conn, buffer) : extractLine(conn, buffer))) {
+            // keep going until only a partial request is left
+        }
+        buffer.compact();
+    }
+
+    private boolean extractLine(Connection conn, ByteBuffer buffer) {
+        int lineStart = buffer.position();
+        for (int i = lineStart; i < buffer.limit(); i++) {
+            if (buffer.get(i) != '\n') {
+                continue;
+            }
+            int lineEnd = i;
+            if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+            byte[] line = new byte[lineEnd - lineStart];
+            buffer.get(lineStart, line);
+            buffer.position(i + 1);
+            String request = new String(line, StandardCharsets.UTF_8);
+            // Skip empty lines so Gson never sees "null"
+            if (!request.trim().isEmpty()) {
+                JsonObject json = processor.parse(request);
+                if (Handshake.isHello(json)) {
+                    WireProtocol agreed = Handshake.negotiate(json);
+                    Compression compression = Handshake.negotiateCompression(json);
+                    // The client waits for the answer, so anything after HELLO is already in the new protocol
+                    conn.binary = agreed == WireProtocol.BINARY;
+                    conn.compression = compression;
+                    conn.inflater = Frames.newInflater(compression);
+                    conn.pendingRequests.add(PendingRequest.reply(ByteBuffer.wrap(
+                            (Handshake.response(agreed, compression) + "\n").getBytes(StandardCharsets.UTF_8))));
+                } else {
+                    conn.pendingRequests.add(PendingRequest.line(request, json));
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private boolean extractFrame(Connection conn, ByteBuffer buffer) throws IOException {
+        byte[] payload = Frames.read(buffer, conn.inflater);
+        if (payload == null) {
+            return false;
+        }
+        try {
+            conn.pendingRequests.add(PendingRequest.binary(BinaryCodec.decodeRequest(payload)));
+        } catch (IOException | IllegalArgumentException e) {
+            // The frame boundary is intact, so one bad payload does not cost the connection
+            conn.pendingRequests.add(PendingRequest.reply(Frames.encode(BinaryCodec.encodeResponse(
+                    Response.error("Invalid binary request: " + e.getMessage())))));
+        }
+        return true;
+    }
+
+    /**
+     * Hand queued requests to workers. Requests tagged with a requestId run concurrently and
+     * are answered as they finish; untagged requests run alone so their responses stay in order.
+     * Nothing more is started while the client leaves too many responses unread.
+     */
+    private void dispatchNext(Connection conn) {
+        while (conn.key.isValid() && !conn.pendingRequests.isEmpty() && !conn.orderedInFlight
+                && conn.writeQueue.size() < MAX_QUEUED_RESPONSES) {
+            PendingRequest next = conn.pendingRequests.peek();
+            if (next.pipelined ? conn.inFlight >= MAX_IN_FLIGHT : conn.inFlight > 0) {
+                break;
+            }
+            conn.pendingRequests.poll();
+            conn.inFlight++;
+            conn.orderedInFlight = !next.pipelined;
+            try {
+                workers.execute(() -> {
+                    ByteBuffer response = respond(next, conn.compression);
+                    runOnSelector(() -> {
+                        conn.inFlight--;
+                        if (!next.pipelined) {
+                            conn.orderedInFlight = false;
+                        }
+                        if (conn.key.isValid()) {
+                            conn.writeQueue.add(response);
+                            conn.key.interestOps(conn.key.interestOps() | SelectionKey.OP_WRITE);
+                            dispatchNext(conn);
+                        }
+                    });
+                });
+            } catch (RejectedExecutionException e) {
+                close(conn.key);
+                return;
+            }
+        }
+        updateReadInterest(conn);
+    }
+
+    /**
+     * Read from the client only while both its request and response backlogs have room
+     */
+    private void updateReadInterest(Connection conn) {
+        if (!conn.key.isValid()) {
+            return;
+        }
+        boolean room = conn.pendingRequests.size() < MAX_PENDING_REQUESTS
+                && conn.writeQueue.size() < MAX_QUEUED_RESPONSES;
+        int ops = conn.key.interestOps();
+        conn.key.interestOps(room ? ops | SelectionKey.OP_READ : ops & ~SelectionKey.OP_READ);
+    }
+
+    private ByteBuffer respond(PendingRequest request, Compression compression) {
+        if (request.reply != null) {
+            return request.reply;
+        }
+        if (request.binary) {
+            LOG.debug("Received binary request: {}", request.json);
+            return Frames.encode(processor.processBinary(request.json), compression);
+        }
+        LOG.debug("Received request: {}", request.line);
+        String response = request.pipelined ? processor.process(request.json) : processor.process(request.line);
+        return ByteBuffer.wrap((response + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        Connection conn = (Connection) key.attachment();
+        ByteBuffer buffer;
+        while ((buffer = conn.writeQueue.peek()) != null) {
+            conn.channel.write(buffer);
+            if (buffer.hasRemaining()) {
+                // Socket send buffer is full; wait for the next OP_WRITE
+                break;
+            }
+            conn.writeQueue.poll();
+        }
+        if (conn.writeQueue.isEmpty()) {
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        }
+        // The client is reading again: take on more of its requests
+        dispatchNext(conn);
+    }
+
+    private void runOnSelector(Runnable task) {
+        selectorTasks.add(task);
+        Selector sel = selector;
+        if (sel != null) {
+            sel.wakeup();
+        }
+    }
+
+    private void runSelectorTasks() {
+        Runnable task;
+        while ((task = selectorTasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private void close(SelectionKey key) {
+        key.cancel();
+        if (key.attachment() instanceof Connection) {
+            Connection conn = (Connection) key.attachment();
+            if (conn.inflater != null) {
+                conn.inflater.end();
+                conn.inflater = null;
+            }
+        }
+        try {
+            key.channel().close();
+            if (key.attachment() instanceof Connection) {
+                LOG.debug("Client disconnected");
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to close client channel", e);
+        }
+    }
+
+    /**
+     * Per-socket state, only touched by the selector thread (workers read the compression)
+     */
+    private static final class Connection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final Queue<PendingRequest> pendingRequests = new ArrayDeque<>();
+        private final Queue<ByteBuffer> writeQueue = new ArrayDeque<>();
+        private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private int inFlight;
+        private boolean orderedInFlight;
+        // Set once a HELLO switched this connection to binary frames
+        private boolean binary;
+        // Written by the selector thread before the HELLO reply is queued, read by workers after it
+        private volatile Compression compression = Compression.NONE;
+        private Inflater inflater;
+
+        private Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+    }
+
+    /**
+     * A complete request, parsed once on the selector thread to decide how it may be scheduled.
+     * A reply is a response that is already known (HELLO answers, undecodable frames) and only
+     * has to be written in order.
+     */
+    private static final class PendingRequest {
+        private final String line;
+        private final JsonObject json;
+        private final boolean pipelined;
+        private final boolean binary;
+        private final ByteBuffer reply;
+
+        private PendingRequest(String line, JsonObject json, boolean binary, ByteBuffer reply) {
+            this.line = line;
+            this.json = json;
+            this.pipelined = RequestProcessor.isPipelined(json);
+            this.binary = binary;
+            this.reply = reply;
+        }
+
+        private static PendingRequest line(String line, JsonObject json) {
+            return new PendingRequest(line, json, false, null);
+        }
+
+        private static PendingRequest binary(JsonObject json) {
+            return new PendingRequest(null, json, true, null);
+        }
+
+        private static PendingRequest reply(ByteBuffer reply) {
+            return new PendingRequest(null, null, false, reply);
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package server;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import logging.Logger;
+import metrics.MetricsRegistry;
+import model.APIClient;
+import model.BlendedStrategy;
+import model.CircuitBreaker;
+import model.InstrumentedConnectionManager;
+import model.ResponseCache;
+import model.StaleResponses;
+import model.Track;
+import model.UpstreamScheduler;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.http.ParseException;
+import protocol.BinaryCodec;
+import protocol.Response;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns one request into one response: a JSON line, or a binary payload on connections
+ * that switched protocols with a HELLO handshake.
+ * Shared by the thread-per-connection and NIO front ends so both speak the same protocol.
+ */
+public class RequestProcessor {
+    private static final Logger LOG = Logger.getLogger(RequestProcessor.class);
+
+    // Upper bounds for one BATCH_RECOMMEND: seeds accepted and tracks returned
+    private static final int MAX_BATCH_SEEDS = 50;
+    private static final int MAX_BATCH_COUNT = 100;
+
+    private final APIClient apiClient;
+    private final MetricsRegistry metrics;
+    private final Gson gson;
+    // BATCH_RECOMMEND; fans the upstream calls out on its own bounded executor
+    private final BlendedStrategy blendedStrategy;
+
+    public RequestProcessor(APIClient apiClient) {
+        this(apiClient, new BlendedStrategy(apiClient));
+    }
+
+    public RequestProcessor(APIClient apiClient, BlendedStrategy blendedStrategy) {
+        this.apiClient = apiClient;
+        this.metrics = apiClient.getMetrics();
+        this.gson = new Gson();
+        this.blendedStrategy = blendedStrategy;
+    }
+
+    /**
+     * Parse a request line, or return null if it is not a JSON object
+     */
+    public JsonObject parse(String request) {
+        if (request == null || request.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return gson.fromJson(request, JsonObject.class);
+        } catch (JsonParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Process client requests and return JSON responses
+     */
+    public String process(String request) {
+        if (request == null || request.trim().isEmpty()) {
+            metrics.timer("action.INVALID").record(System.nanoTime(), true);
+            return gson.toJson(createErrorResponse("Empty or invalid request").toJson(gson));
+        }
+
+        JsonObject jsonRequest = parse(request);
+        if (jsonRequest == null || !jsonRequest.has("action")) {
+            metrics.timer("action.INVALID").record(System.nanoTime(), true);
+            return gson.toJson(createErrorResponse("Not a valid JSON Object: " + request).toJson(gson));
+        }
+        return process(jsonRequest);
+    }
+
+    /**
+     * Process an already parsed request. A client-assigned requestId is echoed back
+     * so pipelined responses can be matched even when they finish out of order.
+     */
+    public String process(JsonObject jsonRequest) {
+        long started = System.nanoTime();
+        Response response = respond(jsonRequest);
+        String line = gson.toJson(response.toJson(gson));
+        metrics.timer(timerName(jsonRequest)).record(started, !response.isSuccess());
+        return line;
+    }
+
+    /**
+     * Same as {@link #process(JsonObject)}, answering with a {@link BinaryCodec} payload
+     * for connections that negotiated the binary protocol
+     */
+    public byte[] processBinary(JsonObject jsonRequest) {
+        long started = System.nanoTime();
+        Response response;
+        String timer;
+        if (!jsonRequest.has("action")) {
+            response = Response.error("Request has no action").withRequestId(jsonRequest.get("requestId"));
+            timer = "action.INVALID";
+        } else {
+            response = respond(jsonRequest);
+            timer = timerName(jsonRequest);
+        }
+        byte[] payload = BinaryCodec.encodeResponse(response);
+        metrics.timer(timer).record(started, !response.isSuccess());
+        return payload;
+    }
+
+    private Response respond(JsonObject jsonRequest) {
+        Response response;
+        try (StaleResponses.Tracker stale = StaleResponses.track()) {
+            String action = jsonRequest.get("action").getAsString();
+
+            switch (action) {
+                case "SEARCH":
+                    response = handleSearch(jsonRequest);
+                    break;
+                case "RECOMMEND":
+                    response = handleRecommend(jsonRequest);
+                    break;
+                case "BATCH_RECOMMEND":
+                    response = handleBatchRecommend(jsonRequest);
+                    break;
+                case "STATS":
+                    response = handleStats();
+                    break;
+                default:
+                    response = createErrorResponse("Unknown action: " + action);
+            }
+            // Spotify was unavailable and some of the answer came from expired cache entries
+            response.withStale(stale.servedStale());
+        } catch (Exception e) {
+            response = createErrorResponse("Error processing request: " + e.getMessage());
+        }
+        return response.withRequestId(jsonRequest.get("requestId"));
+    }
+
+    /**
+     * One timer per known action; anything else shares a single timer so clients cannot create unbounded names
+     */
+    private static String timerName(JsonObject jsonRequest) {
+        JsonElement actionField = jsonRequest.get("action");
+        String action = actionField != null && actionField.isJsonPrimitive() ? actionField.getAsString() : null;
+        if ("SEARCH".equals(action) || "RECOMMEND".equals(action) || "BATCH_RECOMMEND".equals(action)
+                || "STATS".equals(action)) {
+            return "action." + action;
+        }
+        return "action.UNKNOWN";
+    }
+
+    /**
+     * True if the client tagged this request with a requestId and accepts out-of-order responses
+     */
+    public static boolean isPipelined(JsonObject jsonRequest) {
+        return jsonRequest != null && jsonRequest.has("requestId") && jsonRequest.has("action");
+    }
+
+
+    private Response handleSearch(JsonObject request) {
+        try {
+            String query = request.get("query").getAsString();
+            int limit = request.has("limit") ? request.get("limit").getAsInt() : 10;
+
+            List<Track> tracks = apiClient.searchTracks(query, limit);
+
+            return Response.tracks("SEARCH", tracks);
+        } catch (IOException e) {
+            return createErrorResponse("Search failed: " + e.getMessage());
+        } catch (ParseException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Response handleRecommend(JsonObject request) {
+        try {
+            String trackId = request.get("trackId").getAsString();
+            String market = "US"; // You can change this for your region
+
+            // ✅ 1. Clients that send the seed's artist IDs let us go straight to top tracks
+            String artistId = firstArtistId(request);
+
+            if (artistId == null) {
+                // ✅ 2. Older clients only send trackId: look the track up first
+                artistId = lookupArtistId(trackId);
+            }
+            LOG.debug("Getting top tracks for artist: {}", artistId);
+
+            // ✅ 4. Get top tracks for that artist
+            List<Track> topTracks = apiClient.getTopTracksForArtist(artistId, market);
+
+            // ✅ 5. Package results into a response
+            return Response.tracks("RECOMMEND", topTracks);
+
+        } catch (UnknownSeedException e) {
+            return createErrorResponse(e.getMessage());
+        } catch (Exception e) {
+            LOG.warn("Recommendation failed", e);
+            return createErrorResponse("Recommendation failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Recommendations for many seed tracks in one round trip.
+     * Request: {"action":"BATCH_RECOMMEND","seeds":[...],"count":n}, where each seed is a track ID
+     * or a {"trackId":..., "artistIds":[...]} object like a RECOMMEND request.
+     *
+     * Ranked by {@link BlendedStrategy}: every seed artist is fetched once, all in parallel, and
+     * tracks on the lists of artists shared by several seeds rank first, then popular ones.
+     * The seed tracks themselves are left out.
+     */
+    private Response handleBatchRecommend(JsonObject request) {
+        JsonElement seedsField = request.get("seeds");
+        if (seedsField == null || !seedsField.isJsonArray() || seedsField.getAsJsonArray().isEmpty()) {
+            return createErrorResponse("BATCH_RECOMMEND needs a non-empty 'seeds' array");
+        }
+        JsonArray seeds = seedsField.getAsJsonArray();
+        if (seeds.size() > MAX_BATCH_SEEDS) {
+            return createErrorResponse("At most " + MAX_BATCH_SEEDS + " seeds per BATCH_RECOMMEND");
+        }
+        int count = request.has("count") ? request.get("count").getAsInt() : 10;
+        count = Math.max(1, Math.min(count, MAX_BATCH_COUNT));
+
+        // Seeds without artist IDs are bare track IDs, which the strategy looks up
+        List<Track> seedTracks = new ArrayList<>(seeds.size());
+        for (JsonElement seed : seeds) {
+            Track seedTrack;
+            if (seed.isJsonPrimitive()) {
+                seedTrack = new Track(seed.getAsString(), null, List.of(), null);
+            } else if (seed.isJsonObject() && seed.getAsJsonObject().has("trackId")) {
+                JsonObject seedObject = seed.getAsJsonObject();
+                seedTrack = new Track(seedObject.get("trackId").getAsString(), null, List.of(), null);
+                seedTrack.setArtistIds(artistIds(seedObject));
+            } else {
+                return createErrorResponse("Invalid seed: " + seed);
+            }
+            seedTracks.add(seedTrack);
+        }
+
+        try {
+            return Response.tracks("BATCH_RECOMMEND", blendedStrategy.blend(seedTracks, count));
+        } catch (IOException e) {
+            return createErrorResponse("Batch recommendation failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * The first artist of a track the client only named by ID (only searches Spotify if the name is new)
+     */
+    private String lookupArtistId(String trackId) throws IOException, ParseException, UnknownSeedException {
+        Track seedTrack = apiClient.getTrackById(trackId);
+
+        if (seedTrack == null || seedTrack.getArtists().isEmpty()) {
+            throw new UnknownSeedException("No artist found for track ID: " + trackId);
+        }
+        if (!seedTrack.getArtistIds().isEmpty()) {
+            return seedTrack.getArtistIds().get(0);
+        }
+
+        // ✅ 3. Resolve the first artist's ID (only searches Spotify if the name is new)
+        String artistName = seedTrack.getArtists().get(0);
+        String artistId = apiClient.resolveArtistId(artistName);
+        if (artistId == null) {
+            throw new UnknownSeedException("Artist not found: " + artistName);
+        }
+        return artistId;
+    }
+
+    /**
+     * Request timers plus cache, single-flight, artist index and connection pool counters
+     */
+    private Response handleStats() {
+        JsonObject data = metrics.toJson();
+
+        ResponseCache<String, Object> cache = apiClient.getCache();
+        JsonObject cacheJson = new JsonObject();
+        cacheJson.addProperty("size", cache.size());
+        cacheJson.addProperty("hits", cache.getHits());
+        cacheJson.addProperty("misses", cache.getMisses());
+        cacheJson.addProperty("hitRatio", cache.getHitRatio());
+        cacheJson.addProperty("evictions", cache.getEvictions());
+        cacheJson.addProperty("expirations", cache.getExpirations());
+        cacheJson.addProperty("staleServed", cache.getStaleHits());
+        data.add("cache", cacheJson);
+
+        JsonObject singleFlight = new JsonObject();
+        singleFlight.addProperty("executed", apiClient.getSingleFlight().getExecuted());
+        singleFlight.addProperty("coalesced", apiClient.getSingleFlight().getCoalesced());
+        data.add("singleFlight", singleFlight);
+
+        JsonObject artistIndex = new JsonObject();
+        artistIndex.addProperty("size", apiClient.getArtistIndex().size());
+        artistIndex.addProperty("hits", apiClient.getArtistIndex().getHits());
+        artistIndex.addProperty("misses", apiClient.getArtistIndex().getMisses());
+        data.add("artistIndex", artistIndex);
+
+        InstrumentedConnectionManager pool = apiClient.getConnectionManager();
+        PoolStats poolStats = pool.getTotalStats();
+        JsonObject poolJson = new JsonObject();
+        poolJson.addProperty("leased", poolStats.getLeased());
+        poolJson.addProperty("pending", poolStats.getPending());
+        poolJson.addProperty("available", poolStats.getAvailable());
+        poolJson.addProperty("max", poolStats.getMax());
+        poolJson.addProperty("leaseCount", pool.getLeaseCount());
+        poolJson.addProperty("leaseTimeouts", pool.getLeaseTimeouts());
+        poolJson.addProperty("avgLeaseWaitMs", pool.getAverageLeaseWaitMillis());
+        poolJson.addProperty("maxLeaseWaitMs", pool.getMaxLeaseWaitMillis());
+        data.add("connectionPool", poolJson);
+
+        UpstreamScheduler scheduler = apiClient.getUpstreamScheduler();
+        JsonObject schedulerJson = new JsonObject();
+        schedulerJson.addProperty("granted", scheduler.getGranted());
+        schedulerJson.addProperty("delayed", scheduler.getDelayed());
+        schedulerJson.addProperty("timedOut", scheduler.getTimedOut());
+        schedulerJson.addProperty("rateLimited", scheduler.getRateLimited());
+        schedulerJson.addProperty("waiting", scheduler.getQueueLength());
+        data.add("upstreamScheduler", schedulerJson);
+
+        JsonObject breakers = new JsonObject();
+        for (CircuitBreaker breaker : apiClient.getCircuitBreakers()) {
+            JsonObject breakerJson = new JsonObject();
+            breakerJson.addProperty("state", breaker.getState().name());
+            breakerJson.addProperty("opened", breaker.getOpened());
+            breakerJson.addProperty("rejected", breaker.getRejected());
+            breakers.add(breaker.getName(), breakerJson);
+        }
+        data.add("circuitBreakers", breakers);
+
+        return Response.data("STATS", data);
+    }
+
+    private static String firstArtistId(JsonObject request) {
+        List<String> artistIds = artistIds(request);
+        return artistIds.isEmpty() ? null : artistIds.get(0);
+    }
+
+    private static List<String> artistIds(JsonObject request) {
+        if (!request.has("artistIds") || !request.get("artistIds").isJsonArray()) {
+            return List.of();
+        }
+        List<String> artistIds = new ArrayList<>();
+        for (JsonElement artistId : request.getAsJsonArray("artistIds")) {
+            artistIds.add(artistId.getAsString());
+        }
+        return artistIds;
+    }
+
+    private Response createErrorResponse(String message) {
+        return Response.error(message);
+    }
+
+    /**
+     * A seed track whose artist cannot be determined
+     */
+    private static final class UnknownSeedException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private UnknownSeedException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package server;
+
+/**
+ * How the server accepts and services client connections.
+ * Chosen at startup with {@code --mode=<name>}.
+ */
+public enum ServerMode {
+    /** One pooled thread per connected client (original behaviour) */
+    THREAD_POOL,
+    /** One selector thread for all sockets, worker pool only for complete requests */
+    NIO,
+    /** One virtual thread per connected client (requires Java 21+) */
+    VIRTUAL_THREADS;
+
+    public static ServerMode fromArgs(String[] args) {
+        for (String arg : args) {
+            if (arg.startsWith("--mode=")) {
+                String name = arg.substring("--mode=".length()).trim().toUpperCase().replace('-', '_');
+                return ServerMode.valueOf(name);
+            }
+        }
+        return THREAD_POOL;
+    }
+}
@@ -0,0 +1,53 @@
+package perf;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import model.Track;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import protocol.BinaryCodec;
+import server.RequestProcessor;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a server response (JSON line or binary frame payload) into Tracks, as ServerConnection's reader thread does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ClientDeserializationBenchmark {
+    private Gson gson;
+    private String responseLine;
+    private byte[] responsePayload;
+
+    @Setup
+    public void setUp() throws IOException {
+        gson = new Gson();
+        FixtureAPIClient apiClient = new FixtureAPIClient();
+        RequestProcessor processor = new RequestProcessor(apiClient);
+        String request = "{\"action\":\"SEARCH\",\"query\":\"muse\",\"limit\":20,\"requestId\":1}";
+        responseLine = processor.process(request);
+        responsePayload = processor.processBinary(processor.parse(request));
+        apiClient.close();
+    }
+
+    @Benchmark
+    public List<Track> decodeSearchResponse() {
+        JsonObject response = gson.fromJson(responseLine, JsonObject.class);
+        Track[] tracksArray = gson.fromJson(response.get("data"), Track[].class);
+        return List.of(tracksArray);
+    }
+
+    @Benchmark
+    public List<Track> decodeBinarySearchResponse() throws IOException {
+        return BinaryCodec.decodeResponse(responsePayload).getTracks();
+    }
+}
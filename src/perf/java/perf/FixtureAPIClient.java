@@ -0,0 +1,78 @@
+package perf;
+
+import model.APIClient;
+import model.Artist;
+import model.AudioFeatures;
+import model.HttpClientSettings;
+import model.SpotifyJsonParser;
+import model.Track;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * APIClient that answers from the recorded fixtures instead of calling Spotify.
+ * Responses are parsed once up front, so callers measure only their own work.
+ */
+public class FixtureAPIClient extends APIClient {
+    private final List<Track> searchResults;
+    private final List<Track> topTracks;
+    private final Track track;
+    private final List<Artist> artists;
+
+    public FixtureAPIClient() {
+        super(new HttpClientSettings(), 16);
+        SpotifyJsonParser parser = new SpotifyJsonParser(getArtistIndex());
+        try {
+            this.searchResults = List.copyOf(parser.parseTrackSearch(Fixtures.string(Fixtures.SEARCH_TRACKS)));
+            this.topTracks = List.copyOf(parser.parseTopTracks(Fixtures.string(Fixtures.TOP_TRACKS)));
+            this.track = parser.parseTrack(Fixtures.string(Fixtures.TRACK));
+            this.artists = List.copyOf(parser.parseArtistSearch(Fixtures.string(Fixtures.ARTIST_SEARCH)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Fixtures are not valid Spotify responses", e);
+        }
+    }
+
+    @Override
+    public void authenticate() {
+    }
+
+    @Override
+    public List<Track> searchTracks(String query, int limit) {
+        return searchResults.size() > limit ? searchResults.subList(0, limit) : searchResults;
+    }
+
+    @Override
+    public List<Track> getTopTracksForArtist(String artistId, String market) {
+        return topTracks;
+    }
+
+    @Override
+    public List<Artist> searchArtistByName(String query) {
+        return artists;
+    }
+
+    @Override
+    public Track getTrackById(String trackId) {
+        return track;
+    }
+
+    @Override
+    public Map<String, AudioFeatures> getAudioFeatures(Collection<String> trackIds) {
+        Map<String, AudioFeatures> features = new HashMap<>();
+        for (String trackId : trackIds) {
+            if (trackId != null) {
+                features.put(trackId, Fixtures.audioFeatures(trackId));
+            }
+        }
+        return features;
+    }
+
+    public List<Track> getSearchResults() {
+        return searchResults;
+    }
+}
@@ -0,0 +1,75 @@
+package perf;
+
+import model.AudioFeatures;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Spotify Web API response bodies kept under src/perf/resources/fixtures,
+ * so benchmarks and load tests never need network access or a Spotify account.
+ */
+public final class Fixtures {
+    public static final String SEARCH_TRACKS = "search-tracks.json";
+    public static final String TOP_TRACKS = "top-tracks.json";
+    public static final String TRACK = "track.json";
+    public static final String ARTIST_SEARCH = "artist-search.json";
+    public static final String TOKEN = "token.json";
+
+    private Fixtures() {
+    }
+
+    public static byte[] bytes(String name) {
+        try (InputStream in = Fixtures.class.getResourceAsStream("/fixtures/" + name)) {
+            if (in == null) {
+                throw new IllegalArgumentException("No such fixture: " + name);
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read fixture " + name, e);
+        }
+    }
+
+    public static String string(String name) {
+        return new String(bytes(name), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Made-up but stable audio features for any track ID (Spotify has no fixture-friendly
+     * catalogue of them): the same ID always gets the same values
+     */
+    public static AudioFeatures audioFeatures(String trackId) {
+        Random random = new Random(trackId.hashCode());
+        AudioFeatures features = new AudioFeatures(trackId);
+        features.setDanceability(random.nextDouble());
+        features.setEnergy(random.nextDouble());
+        features.setValence(random.nextDouble());
+        features.setTempo(60 + random.nextDouble() * 140);
+        features.setAcousticness(random.nextDouble());
+        return features;
+    }
+
+    /**
+     * An /audio-features?ids=... response body for the given IDs
+     */
+    public static byte[] audioFeaturesResponse(List<String> trackIds) {
+        StringBuilder body = new StringBuilder("{\"audio_features\":[");
+        for (int i = 0; i < trackIds.size(); i++) {
+            AudioFeatures features = audioFeatures(trackIds.get(i));
+            if (i > 0) {
+                body.append(',');
+            }
+            body.append(String.format(Locale.ROOT,
+                    "{\"danceability\":%.3f,\"energy\":%.3f,\"valence\":%.3f,\"tempo\":%.3f,"
+                            + "\"acousticness\":%.3f,\"id\":\"%s\",\"type\":\"audio_features\"}",
+                    features.getDanceability(), features.getEnergy(), features.getValence(),
+                    features.getTempo(), features.getAcousticness(), features.getTrackId()));
+        }
+        return body.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
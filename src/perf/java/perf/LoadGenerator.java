@@ -0,0 +1,297 @@
+package perf;
+
+import client.ServerConnection;
+import logging.Level;
+import logging.Logger;
+import metrics.LatencyHistogram;
+import model.Track;
+import protocol.Compression;
+import protocol.WireProtocol;
+import server.MusicRecommendationServer;
+import server.ServerMode;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Drives many concurrent {@link ServerConnection} clients against a running server
+ * and reports throughput and per-action latency histograms.
+ *
+ * Options (all --name=value):
+ * <ul>
+ *   <li>--host, --port: server to load (default localhost:8080)</li>
+ *   <li>--clients: concurrent connections (default 50)</li>
+ *   <li>--requests: requests per client (default 200)</li>
+ *   <li>--pipeline: requests each client keeps in flight (default 1)</li>
+ *   <li>--recommendRatio: share of RECOMMEND requests, the rest are SEARCH (default 0.5)</li>
+ *   <li>--queries: distinct search queries, which controls the server's cache hit ratio (default 100)</li>
+ *   <li>--timeoutMs: per-request timeout (default 30000)</li>
+ *   <li>--protocol: json or binary wire protocol for the clients (default json)</li>
+ *   <li>--compression: none or deflate, for the binary protocol (default none)</li>
+ *   <li>--embedded: start a {@link SpotifyStubServer} and a MusicRecommendationServer in this JVM;
+ *       --mode, --latencyMs, --jitterMs, --errorRate and --quotaPerSecond configure them. The server
+ *       keeps its catalogue in a temporary directory and saves no warm-start snapshot</li>
+ *   <li>--stats: print the server's STATS response (request and upstream timers) after the run</li>
+ *   <li>--verbose: log at DEBUG in client and server (default WARN)</li>
+ * </ul>
+ */
+public class LoadGenerator {
+    private final String host;
+    private final int port;
+    private final int clients;
+    private final int requestsPerClient;
+    private final int pipeline;
+    private final double recommendRatio;
+    private final int distinctQueries;
+    private final long timeoutMs;
+    private final WireProtocol protocol;
+    private final Compression compression;
+
+    private final LatencyHistogram searchLatency = new LatencyHistogram();
+    private final LatencyHistogram recommendLatency = new LatencyHistogram();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong failedConnections = new AtomicLong();
+
+    public LoadGenerator(String host, int port, int clients, int requestsPerClient, int pipeline,
+                         double recommendRatio, int distinctQueries, long timeoutMs, WireProtocol protocol, Compression compression) {
+        this.host = host;
+        this.port = port;
+        this.clients = clients;
+        this.requestsPerClient = requestsPerClient;
+        this.pipeline = pipeline;
+        this.recommendRatio = recommendRatio;
+        this.distinctQueries = distinctQueries;
+        this.timeoutMs = timeoutMs;
+        this.protocol = protocol;
+        this.compression = compression;
+    }
+
+    /**
+     * Run the load and return the wall-clock time it took, in nanoseconds
+     */
+    public long run() throws IOException, InterruptedException {
+        List<Track> seeds = fetchSeedTracks();
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(clients);
+
+        for (int i = 0; i < clients; i++) {
+            pool.execute(() -> {
+                try {
+                    start.await();
+                    runClient(seeds);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        long began = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - began;
+        pool.shutdown();
+        return elapsed;
+    }
+
+    private List<Track> fetchSeedTracks() throws IOException {
+        ServerConnection connection = new ServerConnection(protocol, compression);
+        connection.connect(host, port);
+        try {
+            // A few attempts, so an injected upstream error does not abort the whole run
+            IOException lastFailure = null;
+            for (int attempt = 0; attempt < 5; attempt++) {
+                try {
+                    List<Track> seeds = connection.searchTracks("load generator seed");
+                    if (!seeds.isEmpty()) {
+                        return seeds;
+                    }
+                } catch (IOException e) {
+                    lastFailure = e;
+                }
+            }
+            throw new IOException("Could not get seed tracks from the server", lastFailure);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private void runClient(List<Track> seeds) throws InterruptedException {
+        ServerConnection connection = new ServerConnection(protocol, compression);
+        try {
+            connection.connect(host, port);
+        } catch (IOException e) {
+            failedConnections.incrementAndGet();
+            errors.addAndGet(requestsPerClient);
+            return;
+        }
+
+        Semaphore window = new Semaphore(pipeline);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try {
+            for (int i = 0; i < requestsPerClient; i++) {
+                window.acquire();
+                boolean recommend = random.nextDouble() < recommendRatio;
+                LatencyHistogram histogram = recommend ? recommendLatency : searchLatency;
+
+                long started = System.nanoTime();
+                CompletableFuture<List<Track>> response = recommend
+                        ? connection.getRecommendationsAsync(seeds.get(random.nextInt(seeds.size())))
+                        : connection.searchTracksAsync("query " + random.nextInt(distinctQueries));
+                response.orTimeout(timeoutMs, TimeUnit.MILLISECONDS).whenComplete((tracks, error) -> {
+                    if (error == null) {
+                        histogram.recordSince(started);
+                    } else if (error instanceof TimeoutException) {
+                        timeouts.incrementAndGet();
+                    } else {
+                        errors.incrementAndGet();
+                    }
+                    window.release();
+                });
+            }
+            // Wait for the last responses before hanging up
+            window.acquire(pipeline);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    public void report(PrintStream out, long elapsedNanos) {
+        long succeeded = searchLatency.getCount() + recommendLatency.getCount();
+        double seconds = elapsedNanos / 1e9;
+        out.printf("clients=%d requests/client=%d pipeline=%d protocol=%s compression=%s%n", clients,
+                requestsPerClient, pipeline, protocol.getWireName(), compression.getWireName());
+        out.printf("elapsed=%.2fs succeeded=%d errors=%d timeouts=%d failedConnections=%d throughput=%.1f req/s%n",
+                seconds, succeeded, errors.get(), timeouts.get(), failedConnections.get(), succeeded / seconds);
+        out.println("SEARCH    " + searchLatency.summary());
+        out.println("RECOMMEND " + recommendLatency.summary());
+    }
+
+    public static void main(String[] argv) {
+        Args args = new Args(argv);
+        PrintStream console = System.out;
+        // Per-request logging in client and server would dominate what we measure
+        Logger.setLevel(args.has("verbose") ? Level.DEBUG : Level.WARN);
+
+        int status = 0;
+        try {
+            run(args, argv, console);
+        } catch (Exception e) {
+            System.err.println("Load run failed: " + e);
+            status = 1;
+        }
+        // An embedded server's accept loop and pools have no clean way out; end the JVM
+        System.exit(status);
+    }
+
+    private static void run(Args args, String[] argv, PrintStream console) throws Exception {
+        String host = args.get("host", "localhost");
+        int port = args.getInt("port", 8080);
+        SpotifyStubServer stub = null;
+        if (args.has("embedded")) {
+            stub = new SpotifyStubServer(0, args.getLong("latencyMs", 0), args.getLong("jitterMs", 0),
+                    args.getDouble("errorRate", 0), args.getInt("quotaPerSecond", 0));
+            stub.start();
+            // Must be set before anything loads config.config
+            System.setProperty("spotify.apiBaseUrl", stub.getApiBaseUrl());
+            System.setProperty("spotify.tokenUrl", stub.getTokenUrl());
+            // The stub's fake tracks and artist IDs must not reach the real catalogue, and a
+            // run that never restarts has no use for a warm-start snapshot
+            Path catalogueDir = Files.createTempDirectory("loadgen-catalogue");
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> deleteQuietly(catalogueDir)));
+            System.setProperty("catalogue.dir", catalogueDir.toString());
+            System.setProperty("snapshot.file", "");
+
+            ServerMode mode = ServerMode.fromArgs(argv);
+            Thread server = startServer(port, mode);
+            waitForPort(host, port, server);
+            console.printf("Embedded server mode=%s, stub latency=%dms+%dms errorRate=%.3f%n", mode,
+                    args.getLong("latencyMs", 0), args.getLong("jitterMs", 0), args.getDouble("errorRate", 0));
+        }
+
+        LoadGenerator generator = new LoadGenerator(host, port,
+                args.getInt("clients", 50), args.getInt("requests", 200), args.getInt("pipeline", 1),
+                args.getDouble("recommendRatio", 0.5), args.getInt("queries", 100), args.getLong("timeoutMs", 30_000),
+                WireProtocol.fromWireName(args.get("protocol", "json")),
+                Compression.fromWireName(args.get("compression", "none")));
+        long elapsed = generator.run();
+        generator.report(console, elapsed);
+
+        if (stub != null) {
+            console.printf("stub requests=%d injectedErrors=%d rateLimited=%d%n", stub.getRequests(),
+                    stub.getInjectedErrors(), stub.getRateLimited());
+        }
+        if (args.has("stats")) {
+            console.println("server STATS: " + fetchServerStats(host, port));
+        }
+    }
+
+    /**
+     * Raw STATS request: ServerConnection only understands track responses
+     */
+    private static String fetchServerStats(String host, int port) throws IOException {
+        try (Socket socket = new Socket(host, port);
+             PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()))) {
+            out.println("{\"action\":\"STATS\"}");
+            return in.readLine();
+        }
+    }
+
+    private static Thread startServer(int port, ServerMode mode) {
+        MusicRecommendationServer server = new MusicRecommendationServer(port, mode);
+        Thread thread = new Thread(() -> {
+            try {
+                server.start();
+            } catch (Exception e) {
+                System.err.println("Embedded server failed: " + e.getMessage());
+            }
+        }, "embedded-server");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static void deleteQuietly(Path dir) {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            System.err.println("Could not delete " + dir + ": " + e.getMessage());
+        }
+    }
+
+    private static void waitForPort(String host, int port, Thread server) throws InterruptedException, IOException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline && server.isAlive()) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress(host, port), 200);
+                return;
+            } catch (IOException e) {
+                Thread.sleep(50);
+            }
+        }
+        throw new IOException("Embedded server did not start listening on " + host + ":" + port);
+    }
+}
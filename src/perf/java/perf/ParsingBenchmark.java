@@ -0,0 +1,99 @@
+package perf;
+
+import model.ArtistIdIndex;
+import model.SpotifyJsonParser;
+import model.Track;
+import model.TrackCatalogue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Turning Spotify response bodies into Tracks, as APIClient and AsyncAPIClient do,
+ * next to reading the same tracks back from the on-disk catalogue after a restart.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ParsingBenchmark {
+    private SpotifyJsonParser parser;
+    private String searchBody;
+    private byte[] searchBytes;
+    private String topTracksBody;
+    private String trackBody;
+    private Path catalogueDirectory;
+    private TrackCatalogue catalogue;
+    private String catalogueTrackId;
+
+    @Setup
+    public void setUp() throws IOException {
+        parser = new SpotifyJsonParser(new ArtistIdIndex());
+        searchBody = Fixtures.string(Fixtures.SEARCH_TRACKS);
+        searchBytes = Fixtures.bytes(Fixtures.SEARCH_TRACKS);
+        topTracksBody = Fixtures.string(Fixtures.TOP_TRACKS);
+        trackBody = Fixtures.string(Fixtures.TRACK);
+
+        catalogueDirectory = Files.createTempDirectory("catalogue-benchmark");
+        catalogue = TrackCatalogue.open(catalogueDirectory);
+        List<Track> topTracks = parser.parseTopTracks(topTracksBody);
+        catalogue.putTopTracks("artist", "US", topTracks);
+        catalogue.putTracks(parser.parseTrackSearch(searchBody));
+        catalogueTrackId = topTracks.get(0).getId();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        catalogue.close();
+        try (Stream<Path> files = Files.list(catalogueDirectory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(catalogueDirectory);
+    }
+
+    @Benchmark
+    public List<Track> trackSearch() throws IOException {
+        return parser.parseTrackSearch(searchBody);
+    }
+
+    /** The path APIClient takes: decoding straight from the response stream */
+    @Benchmark
+    public List<Track> trackSearchFromStream() throws IOException {
+        return parser.parseTrackSearch(new ByteArrayInputStream(searchBytes));
+    }
+
+    @Benchmark
+    public List<Track> topTracks() throws IOException {
+        return parser.parseTopTracks(topTracksBody);
+    }
+
+    @Benchmark
+    public Track singleTrack() throws IOException {
+        return parser.parseTrack(trackBody);
+    }
+
+    /** A top-tracks miss answered from the memory-mapped catalogue instead of Spotify */
+    @Benchmark
+    public List<Track> topTracksFromCatalogue() {
+        return catalogue.topTracks("artist", "US", Long.MAX_VALUE);
+    }
+
+    @Benchmark
+    public Track singleTrackFromCatalogue() {
+        return catalogue.track(catalogueTrackId, Long.MAX_VALUE);
+    }
+}
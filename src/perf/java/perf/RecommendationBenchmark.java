@@ -0,0 +1,123 @@
+package perf;
+
+import model.AudioFeatureStrategy;
+import model.AudioFeatureVectors;
+import model.BlendedStrategy;
+import model.FeatureBasedStrategy;
+import model.NearestNeighbourStrategy;
+import model.Track;
+import model.TrackVectorIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The recommendation strategies with upstream calls answered from fixtures,
+ * plus the audio-feature vector scoring on its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RecommendationBenchmark {
+    private static final int CATALOGUE_SIZE = 5_000;
+    private static final int INDEX_SIZE = 100_000;
+
+    private FixtureAPIClient apiClient;
+    private FeatureBasedStrategy strategy;
+    private BlendedStrategy blendedStrategy;
+    private AudioFeatureStrategy audioFeatureStrategy;
+    private NearestNeighbourStrategy nearestNeighbourStrategy;
+    private TrackVectorIndex index;
+    private List<Track> playlist;
+    private AudioFeatureVectors catalogue;
+    private float[] profile;
+    private double[] distances;
+    private List<Track> seedWithArtistIds;
+    private List<Track> seedByName;
+
+    @Setup
+    public void setUp() {
+        apiClient = new FixtureAPIClient();
+        strategy = new FeatureBasedStrategy(apiClient);
+        blendedStrategy = new BlendedStrategy(apiClient);
+        audioFeatureStrategy = new AudioFeatureStrategy(apiClient);
+        playlist = apiClient.getSearchResults();
+
+        catalogue = new AudioFeatureVectors(CATALOGUE_SIZE);
+        for (int i = 0; i < CATALOGUE_SIZE; i++) {
+            catalogue.add(Fixtures.audioFeatures("candidate-" + i));
+        }
+        profile = new float[AudioFeatureVectors.DIMENSIONS];
+        AudioFeatureVectors.normalize(Fixtures.audioFeatures(playlist.get(0).getId()), profile, 0);
+        distances = new double[CATALOGUE_SIZE];
+
+        // A catalogue as accumulated from many searches, in the client's own index
+        index = apiClient.getTrackIndex();
+        for (int i = 0; i < INDEX_SIZE; i++) {
+            String trackId = "indexed-" + i;
+            index.add(new Track(trackId, trackId, List.of("Artist"), "Album"), Fixtures.audioFeatures(trackId));
+        }
+        nearestNeighbourStrategy = new NearestNeighbourStrategy(apiClient);
+
+        Track seed = apiClient.getSearchResults().get(0);
+        seedWithArtistIds = List.of(seed);
+        // Same track as an older client would send it: artist name only
+        seedByName = List.of(new Track(seed.getId(), seed.getName(), seed.getArtists(), seed.getAlbumName()));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        apiClient.close();
+    }
+
+    @Benchmark
+    public List<Track> recommendFromArtistId() {
+        return strategy.recommend(seedWithArtistIds, 10);
+    }
+
+    @Benchmark
+    public List<Track> recommendFromArtistName() {
+        return strategy.recommend(seedByName, 10);
+    }
+
+    /** Every track of a 20-track search as seeds: fan-out over all their artists, merge and top-10 */
+    @Benchmark
+    public List<Track> blendedFromPlaylist() {
+        return blendedStrategy.recommend(playlist, 10);
+    }
+
+    /** Blended candidates re-ranked by audio-feature distance to the playlist's profile */
+    @Benchmark
+    public List<Track> audioFeaturesFromPlaylist() {
+        return audioFeatureStrategy.recommend(playlist, 10);
+    }
+
+    /** Only the vector scoring: 5000 packed candidates against one profile, then the 10 closest */
+    @Benchmark
+    public int[] scoreCandidateVectors() {
+        catalogue.squaredEuclidean(profile, distances);
+        return AudioFeatureVectors.smallest(distances, CATALOGUE_SIZE, 10);
+    }
+
+    /** k-NN query against the 100k-track index: a few hundred exact distances instead of 100k */
+    @Benchmark
+    public List<Track> nearestFromIndex() {
+        return index.nearest(profile, 10, Set.of());
+    }
+
+    /** The whole local strategy: seeds' profile from the index, then its nearest neighbours */
+    @Benchmark
+    public List<Track> nearestNeighboursFromPlaylist() {
+        return nearestNeighbourStrategy.recommend(playlist, 10);
+    }
+}
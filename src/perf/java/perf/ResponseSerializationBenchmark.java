@@ -0,0 +1,89 @@
+package perf;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import model.Track;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import protocol.BinaryCodec;
+import protocol.Compression;
+import protocol.Frames;
+import protocol.Response;
+import server.RequestProcessor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the JSON line (or binary frame payload) a ClientHandler writes back for a SEARCH request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ResponseSerializationBenchmark {
+    private static final String SEARCH_REQUEST =
+            "{\"action\":\"SEARCH\",\"query\":\"muse\",\"limit\":20,\"requestId\":1}";
+
+    private FixtureAPIClient apiClient;
+    private RequestProcessor processor;
+    private Gson gson;
+    private List<Track> tracks;
+    private JsonObject searchRequest;
+
+    @Setup
+    public void setUp() {
+        apiClient = new FixtureAPIClient();
+        processor = new RequestProcessor(apiClient);
+        gson = new Gson();
+        tracks = apiClient.getSearchResults();
+        searchRequest = processor.parse(SEARCH_REQUEST);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        apiClient.close();
+    }
+
+    /** Request line in, response line out: parse, dispatch and serialize */
+    @Benchmark
+    public String processSearch() {
+        return processor.process(SEARCH_REQUEST);
+    }
+
+    /** Only the response serialization, the same calls RequestProcessor makes */
+    @Benchmark
+    public String serializeTracks() {
+        JsonObject response = new JsonObject();
+        response.addProperty("status", "success");
+        response.addProperty("action", "SEARCH");
+        response.add("data", gson.toJsonTree(tracks));
+        return gson.toJson(response);
+    }
+
+    /** The same request on a binary-protocol connection: dispatch and encode a frame payload */
+    @Benchmark
+    public byte[] processSearchBinary() {
+        return processor.processBinary(searchRequest);
+    }
+
+    /** Only the binary response encoding */
+    @Benchmark
+    public byte[] encodeTracksBinary() {
+        return BinaryCodec.encodeResponse(Response.tracks("SEARCH", tracks).withRequestId(new JsonPrimitive(1)));
+    }
+
+    /** Binary response plus the deflated frame a compressed connection sends */
+    @Benchmark
+    public ByteBuffer encodeTracksBinaryDeflate() {
+        return Frames.encode(encodeTracksBinary(), Compression.DEFLATE);
+    }
+}
@@ -0,0 +1,207 @@
+package perf;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the Spotify Web API that replays the recorded fixtures.
+ * Serves /api/token, /v1/search (track and artist), /v1/tracks/{id} and
+ * /v1/artists/{id}/top-tracks, with optional injected latency, error rate and a per-second
+ * quota enforced with 429 + Retry-After the way Spotify's rate limit is.
+ *
+ * Point the server at it with
+ * {@code -Dspotify.apiBaseUrl=http://localhost:<port>/v1 -Dspotify.tokenUrl=http://localhost:<port>/api/token}.
+ */
+public class SpotifyStubServer {
+    public static final int DEFAULT_PORT = 8089;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final long latencyMs;
+    private final long jitterMs;
+    private final double errorRate;
+    private final int quotaPerSecond;
+
+    private final byte[] token = Fixtures.bytes(Fixtures.TOKEN);
+    private final byte[] searchTracks = Fixtures.bytes(Fixtures.SEARCH_TRACKS);
+    private final byte[] searchArtists = Fixtures.bytes(Fixtures.ARTIST_SEARCH);
+    private final byte[] track = Fixtures.bytes(Fixtures.TRACK);
+    private final byte[] topTracks = Fixtures.bytes(Fixtures.TOP_TRACKS);
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private long quotaSecond;
+    private int quotaUsed;
+
+    /**
+     * @param port      0 picks a free port
+     * @param latencyMs delay added before every response
+     * @param jitterMs  extra random delay, uniform in [0, jitterMs]
+     * @param errorRate fraction of API calls (0..1) answered with a 503 error payload
+     */
+    public SpotifyStubServer(int port, long latencyMs, long jitterMs, double errorRate) throws IOException {
+        this(port, latencyMs, jitterMs, errorRate, 0);
+    }
+
+    /**
+     * @param quotaPerSecond API calls allowed per wall-clock second before answering 429 (0 = unlimited)
+     */
+    public SpotifyStubServer(int port, long latencyMs, long jitterMs, double errorRate, int quotaPerSecond)
+            throws IOException {
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+        this.errorRate = errorRate;
+        this.quotaPerSecond = quotaPerSecond;
+        this.server = HttpServer.create(new InetSocketAddress("localhost", port), 1024);
+        // Injected latency sleeps, so each exchange gets its own thread
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "spotify-stub");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/api/token", exchange -> respond(exchange, 200, token, false));
+        server.createContext("/v1/", this::handleApi);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public String getApiBaseUrl() {
+        return "http://localhost:" + getPort() + "/v1";
+    }
+
+    public String getTokenUrl() {
+        return "http://localhost:" + getPort() + "/api/token";
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getInjectedErrors() {
+        return injectedErrors.get();
+    }
+
+    public long getRateLimited() {
+        return rateLimited.get();
+    }
+
+    private void handleApi(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String query = exchange.getRequestURI().getRawQuery();
+
+        if (path.equals("/v1/search")) {
+            boolean artists = query != null && query.contains("type=artist");
+            respond(exchange, 200, artists ? searchArtists : searchTracks, true);
+        } else if (path.startsWith("/v1/tracks/")) {
+            respond(exchange, 200, track, true);
+        } else if (path.startsWith("/v1/artists/") && path.endsWith("/top-tracks")) {
+            respond(exchange, 200, topTracks, true);
+        } else if (path.equals("/v1/audio-features")) {
+            respond(exchange, 200, Fixtures.audioFeaturesResponse(idsParameter(exchange)), true);
+        } else {
+            respond(exchange, 404, error(404, "Service not found"), false);
+        }
+    }
+
+    private static List<String> idsParameter(HttpExchange exchange) {
+        String query = exchange.getRequestURI().getQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                if (parameter.startsWith("ids=")) {
+                    return List.of(parameter.substring(4).split(","));
+                }
+            }
+        }
+        return List.of();
+    }
+
+    private void respond(HttpExchange exchange, int status, byte[] body, boolean mayFail) throws IOException {
+        requests.incrementAndGet();
+        try {
+            sleep();
+            if (mayFail && overQuota()) {
+                rateLimited.incrementAndGet();
+                status = 429;
+                body = error(429, "API rate limit exceeded");
+                exchange.getResponseHeaders().set("Retry-After", "1");
+            } else if (mayFail && errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                injectedErrors.incrementAndGet();
+                status = 503;
+                body = error(503, "Injected failure");
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private synchronized boolean overQuota() {
+        if (quotaPerSecond <= 0) {
+            return false;
+        }
+        long second = System.currentTimeMillis() / 1000;
+        if (second != quotaSecond) {
+            quotaSecond = second;
+            quotaUsed = 0;
+        }
+        return ++quotaUsed > quotaPerSecond;
+    }
+
+    private void sleep() {
+        long delay = latencyMs + (jitterMs > 0 ? ThreadLocalRandom.current().nextLong(jitterMs + 1) : 0);
+        if (delay <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static byte[] error(int status, String message) {
+        return String.format("{\"error\":{\"status\":%d,\"message\":\"%s\"}}", status, message)
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Run the stub on its own: --port=8089 --latencyMs=0 --jitterMs=0 --errorRate=0 --quotaPerSecond=0
+     */
+    public static void main(String[] argv) throws IOException {
+        Args args = new Args(argv);
+        SpotifyStubServer stub = new SpotifyStubServer(args.getInt("port", DEFAULT_PORT),
+                args.getLong("latencyMs", 0), args.getLong("jitterMs", 0), args.getDouble("errorRate", 0),
+                args.getInt("quotaPerSecond", 0));
+        stub.start();
+        System.out.println("Spotify stub listening on port " + stub.getPort());
+        System.out.println("Start the server with -Dspotify.apiBaseUrl=" + stub.getApiBaseUrl()
+                + " -Dspotify.tokenUrl=" + stub.getTokenUrl());
+    }
+}
@@ -0,0 +1,47 @@
+package logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoggerTest {
+    @Test
+    void testDisabledLevelsAreSkippedAndEnabledOnesAreWrittenAsynchronously() {
+        Logger log = Logger.getLogger(LoggerTest.class);
+        Level previousLevel = Logger.getLevel();
+        PrintStream previousOut = System.out;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        AtomicInteger formatted = new AtomicInteger();
+        Object expensive = new Object() {
+            @Override
+            public String toString() {
+                formatted.incrementAndGet();
+                return "expensive";
+            }
+        };
+
+        try {
+            Logger.flush();
+            System.setOut(new PrintStream(captured, true, StandardCharsets.UTF_8));
+            Logger.setLevel(Level.INFO);
+
+            assertFalse(log.isDebugEnabled());
+            log.debug("never {}", expensive);
+            log.info("hello {} from {}", "world", 42);
+            Logger.flush();
+        } finally {
+            System.setOut(previousOut);
+            Logger.setLevel(previousLevel);
+        }
+
+        String output = captured.toString(StandardCharsets.UTF_8);
+        assertEquals(0, formatted.get());
+        assertFalse(output.contains("never"));
+        assertTrue(output.contains("INFO  [" + Thread.currentThread().getName() + "] LoggerTest - hello world from 42"), output);
+    }
+}
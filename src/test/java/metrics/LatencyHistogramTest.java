@@ -0,0 +1,28 @@
+package metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+    @Test
+    void testPercentilesAreWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 1000; micros++) {
+            histogram.record(micros * 1_000);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1_000_000, histogram.getMaxNanos());
+        assertEquals(500_500, histogram.getMeanNanos(), 0.001);
+        assertEquals(500_000, histogram.getValueAtPercentile(50), 500_000 * 0.07);
+        assertEquals(990_000, histogram.getValueAtPercentile(99), 990_000 * 0.07);
+        assertEquals(1_000_000, histogram.getValueAtPercentile(100));
+
+        for (long value : new long[] {0, 15, 16, 17, 1023, 1024, 123_456_789, Long.MAX_VALUE}) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(LatencyHistogram.upperBoundOf(bucket) >= value, "bucket too small for " + value);
+            assertTrue(bucket == 0 || LatencyHistogram.upperBoundOf(bucket - 1) < value, "bucket too large for " + value);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * How APIClient treats Spotify's error statuses, against a local stub: unknown IDs (404) leave
+ * the endpoint's circuit closed, server errors (500) open it, and an open circuit answers from
+ * expired cache entries where it has them.
+ */
+public class APIClientOutageTest {
+    private SpotifyStub stub;
+    private final AtomicInteger trackRequests = new AtomicInteger();
+    private APIClient client;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        stub = new SpotifyStub().handle("/tracks/", exchange -> {
+            trackRequests.incrementAndGet();
+            String id = exchange.getRequestURI().getPath().substring("/v1/tracks/".length());
+            if (id.startsWith("missing")) {
+                SpotifyStub.respondError(exchange, 404, "Non existing id");
+            } else {
+                SpotifyStub.respondError(exchange, 500, "Server error");
+            }
+        });
+        client = stub.newClient();
+    }
+
+    @AfterEach
+    void stopStub() throws IOException {
+        client.close();
+        stub.close();
+    }
+
+    @Test
+    void testServerErrorsOpenTheCircuit() {
+        CircuitBreaker breaker = client.circuitBreaker("upstream.getTrackById");
+        for (int i = 0; i < 5; i++) {
+            String id = "broken" + i;
+            APIClient.StatusException e = assertThrows(APIClient.StatusException.class, () -> client.getTrackById(id));
+            assertEquals(500, e.getStatus());
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        assertThrows(CircuitBreaker.OpenException.class, () -> client.getTrackById("broken5"));
+        assertEquals(5, trackRequests.get());
+    }
+
+    @Test
+    void testUnknownIdsLeaveTheCircuitClosed() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            assertNull(client.getTrackById("missing" + i));
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, client.circuitBreaker("upstream.getTrackById").getState());
+        assertEquals(10, trackRequests.get());
+    }
+
+    @Test
+    void testOpenCircuitServesExpiredEntries() throws Exception {
+        Track expired = new Track("t1", "Song", List.of("Artist"), "Album");
+        client.getCache().put("track:t1", expired, -1);
+
+        // Each failure falls back to the expired entry until the circuit opens...
+        for (int i = 0; i < 5; i++) {
+            try (StaleResponses.Tracker stale = StaleResponses.track()) {
+                assertSame(expired, client.getTrackById("t1"));
+                assertTrue(stale.servedStale());
+            }
+        }
+        assertEquals(CircuitBreaker.State.OPEN, client.circuitBreaker("upstream.getTrackById").getState());
+
+        // ...and then it is served without calling Spotify at all
+        try (StaleResponses.Tracker stale = StaleResponses.track()) {
+            assertSame(expired, client.getTrackById("t1"));
+            assertTrue(stale.servedStale());
+        }
+        assertEquals(5, trackRequests.get());
+    }
+}
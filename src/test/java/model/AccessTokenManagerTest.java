@@ -0,0 +1,161 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AccessTokenManagerTest {
+
+    @Test
+    void testFetchesOnceAndAgainOnlyWhenExpired() throws Exception {
+        AtomicLong now = new AtomicLong(1_000_000);
+        AtomicInteger fetches = new AtomicInteger();
+        AccessTokenManager tokens = new AccessTokenManager(
+                () -> new AccessTokenManager.Grant("token-" + fetches.incrementAndGet(), 3_600_000), now::get);
+
+        assertEquals("token-1", tokens.get());
+        now.addAndGet(TimeUnit.MINUTES.toMillis(59));
+        assertEquals("token-1", tokens.get());
+        // Inside the last seconds it is no longer handed out
+        now.addAndGet(TimeUnit.SECONDS.toMillis(55));
+        assertEquals("token-2", tokens.get());
+        assertEquals(2, tokens.getRenewals());
+        tokens.close();
+    }
+
+    @Test
+    void testConcurrentRejectionsShareOneRenewal() throws Exception {
+        AtomicInteger fetches = new AtomicInteger();
+        AccessTokenManager tokens = new AccessTokenManager(() -> {
+            sleep(50);
+            return new AccessTokenManager.Grant("token-" + fetches.incrementAndGet(), 3_600_000);
+        });
+        String rejected = tokens.get();
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<String> renewed = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    String token = tokens.renew(rejected);
+                    synchronized (renewed) {
+                        renewed.add(token);
+                    }
+                } catch (InterruptedException | IOException e) {
+                    throw new AssertionError(e);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join(5_000);
+        }
+        assertEquals(8, renewed.size());
+        assertTrue(renewed.stream().allMatch("token-2"::equals), renewed.toString());
+        assertEquals(2, fetches.get());
+        tokens.close();
+    }
+
+    @Test
+    void testRenewsInBackgroundBeforeExpiry() throws Exception {
+        AtomicInteger fetches = new AtomicInteger();
+        CountDownLatch renewed = new CountDownLatch(2);
+        AccessTokenManager tokens = new AccessTokenManager(() -> {
+            fetches.incrementAndGet();
+            renewed.countDown();
+            // Short-lived, so renewal is due half way through
+            return new AccessTokenManager.Grant("token-" + fetches.get(), 200);
+        });
+        tokens.refresh();
+        assertTrue(renewed.await(2, TimeUnit.SECONDS), "renewed on schedule");
+        assertTrue(fetches.get() >= 2);
+        tokens.close();
+    }
+
+    @Test
+    void testFailedFetchKeepsCurrentToken() throws Exception {
+        AtomicLong now = new AtomicLong(0);
+        AtomicInteger fetches = new AtomicInteger();
+        AccessTokenManager tokens = new AccessTokenManager(() -> {
+            if (fetches.incrementAndGet() > 1) {
+                throw new IOException("token endpoint down");
+            }
+            return new AccessTokenManager.Grant("token-1", 0);
+        }, now::get);
+
+        tokens.refresh();
+        // A missing expires_in means Spotify's usual hour
+        now.addAndGet(AccessTokenManager.DEFAULT_LIFETIME_MS - TimeUnit.MINUTES.toMillis(1));
+        assertThrows(IOException.class, () -> tokens.renew("token-1"));
+        assertEquals("token-1", tokens.get());
+        assertEquals(1, tokens.getFailures());
+        tokens.close();
+    }
+
+    @Test
+    void testCallersWaitingOnAFailedFetchFailWithoutFetchingAgain() throws Exception {
+        AtomicInteger fetches = new AtomicInteger();
+        CountDownLatch fetching = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AccessTokenManager tokens = new AccessTokenManager(() -> {
+            fetches.incrementAndGet();
+            fetching.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            throw new IOException("token endpoint timed out");
+        });
+
+        AtomicInteger failed = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    tokens.get();
+                } catch (IOException e) {
+                    failed.incrementAndGet();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+            if (i == 0) {
+                assertTrue(fetching.await(5, TimeUnit.SECONDS));
+            }
+        }
+        // Everyone else is queued behind the first fetch before it times out
+        for (Thread thread : threads.subList(1, threads.size())) {
+            while (thread.getState() != Thread.State.BLOCKED) {
+                Thread.sleep(1);
+            }
+        }
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join(5_000);
+        }
+        assertEquals(8, failed.get());
+        assertEquals(1, fetches.get());
+        tokens.close();
+    }
+
+    private static void sleep(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+    }
+}
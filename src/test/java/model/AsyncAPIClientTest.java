@@ -0,0 +1,108 @@
+package model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AsyncAPIClient and FeatureBasedStrategy.recommendAsync against a local stub: the non-blocking
+ * path shares the blocking client's cache, and falls back to it when it cannot go ahead.
+ */
+public class AsyncAPIClientTest {
+    private static final String TOP_TRACKS = "{\"tracks\":[{\"id\":\"t1\",\"name\":\"Song\","
+            + "\"artists\":[{\"id\":\"a1\",\"name\":\"Artist\"}],\"album\":{\"name\":\"Album\"}}]}";
+
+    private SpotifyStub stub;
+    private final AtomicInteger upstreamRequests = new AtomicInteger();
+    private APIClient client;
+    private AsyncAPIClient asyncClient;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        stub = new SpotifyStub()
+                .handle("/artists/", exchange -> {
+                    upstreamRequests.incrementAndGet();
+                    if (exchange.getRequestURI().getPath().startsWith("/v1/artists/broken")) {
+                        SpotifyStub.respondError(exchange, 500, "Server error");
+                    } else {
+                        SpotifyStub.respond(exchange, 200, TOP_TRACKS);
+                    }
+                })
+                .handle("/tracks/", exchange -> {
+                    upstreamRequests.incrementAndGet();
+                    SpotifyStub.respondError(exchange, 404, "Non existing id");
+                });
+        client = stub.newClient();
+        asyncClient = new AsyncAPIClient(client, new HttpClientSettings());
+        client.getArtistIndex().record("Artist", "a1");
+    }
+
+    @AfterEach
+    void stopStub() throws IOException {
+        asyncClient.close();
+        client.close();
+        stub.close();
+    }
+
+    @Test
+    void testSharesTheBlockingClientsCache() throws Exception {
+        FeatureBasedStrategy strategy = new FeatureBasedStrategy(client, asyncClient);
+        List<Track> seed = List.of(new Track("s1", "Seed", List.of("Artist"), "Album"));
+
+        List<Track> recommended = strategy.recommendAsync(seed, 10).get(5, TimeUnit.SECONDS);
+        assertEquals("t1", recommended.get(0).getId());
+        assertEquals(1, upstreamRequests.get());
+
+        // Both paths now answer from the entry the first call cached
+        assertEquals(recommended, strategy.recommendAsync(seed, 10).get(5, TimeUnit.SECONDS));
+        assertEquals(recommended, client.getTopTracksForArtist("a1", "US"));
+        assertEquals(1, upstreamRequests.get());
+        assertTrue(client.getHotQueries().hottest(1).contains("top-tracks:a1:US"));
+    }
+
+    @Test
+    void testOverlappingCallsSendOneRequest() throws Exception {
+        CompletableFuture<List<Track>> first = asyncClient.getTopTracksForArtist("a1", "US");
+        CompletableFuture<List<Track>> second = asyncClient.getTopTracksForArtist("a1", "US");
+        assertEquals(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, upstreamRequests.get());
+    }
+
+    @Test
+    void testFallsBackToBlockingCallsWhenNoSlotIsFree() throws Exception {
+        FeatureBasedStrategy strategy = new FeatureBasedStrategy(client, asyncClient);
+        // Spotify asked for a pause: the async call cannot wait for it, the blocking one does
+        client.getUpstreamScheduler().onRateLimited(200);
+
+        List<Track> recommended = strategy.recommendAsync(
+                List.of(new Track("s1", "Seed", List.of("Artist"), "Album")), 10).get(5, TimeUnit.SECONDS);
+        assertEquals("t1", recommended.get(0).getId());
+        assertEquals(1, upstreamRequests.get());
+    }
+
+    @Test
+    void testErrorStatusesAreClassified() throws Exception {
+        // Unknown IDs are an answer, not an outage
+        for (int i = 0; i < 6; i++) {
+            assertNull(asyncClient.getTrackById("missing" + i).get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, client.circuitBreaker("upstream.getTrackById").getState());
+
+        // Server errors fail the call, and an expired entry stands in where there is one
+        List<Track> expired = List.of(new Track("t0", "Old", List.of("Artist"), "Album"));
+        client.getCache().put("top-tracks:broken1:US", expired, -1);
+        assertEquals(expired, asyncClient.getTopTracksForArtist("broken1", "US").get(5, TimeUnit.SECONDS));
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> asyncClient.getTopTracksForArtist("broken2", "US").get(5, TimeUnit.SECONDS));
+        assertEquals(500, ((APIClient.StatusException) e.getCause()).getStatus());
+    }
+}
@@ -0,0 +1,87 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AudioFeatureStrategyTest {
+    private static final Map<String, AudioFeatures> FEATURES = Map.of(
+            "seed", features("seed", 0.8, 0.9, 0.5, 130, 0.1),
+            "close", features("close", 0.75, 0.85, 0.5, 128, 0.15),
+            "medium", features("medium", 0.6, 0.6, 0.4, 110, 0.3),
+            "far", features("far", 0.1, 0.1, 0.9, 60, 0.95));
+
+    @Test
+    void testRanksCandidatesByDistanceToSeed() throws Exception {
+        APIClient client = new APIClient() {
+            @Override
+            public Map<String, AudioFeatures> getAudioFeatures(Collection<String> trackIds) {
+                Map<String, AudioFeatures> found = new HashMap<>();
+                for (String id : trackIds) {
+                    if (FEATURES.containsKey(id)) {
+                        found.put(id, FEATURES.get(id));
+                    }
+                }
+                return found;
+            }
+        };
+        // Candidate order deliberately worst-first; "unanalysed" has no features
+        RecommendationStrategy candidates = fixed(List.of(
+                new Track("far", "Far", List.of("X"), "A"),
+                new Track("unanalysed", "Unanalysed", List.of("X"), "A"),
+                new Track("medium", "Medium", List.of("X"), "A"),
+                new Track("close", "Close", List.of("X"), "A")));
+        List<Track> seeds = List.of(new Track("seed", "Seed", List.of("X"), "A"));
+
+        for (AudioFeatureStrategy.Metric metric : AudioFeatureStrategy.Metric.values()) {
+            AudioFeatureStrategy strategy = new AudioFeatureStrategy(client, candidates, metric);
+            assertEquals(List.of("close", "medium"), ids(strategy.recommend(seeds, 2)), metric.name());
+            // Tracks without features only pad a list the analysed ones cannot fill
+            assertEquals(List.of("close", "medium", "far", "unanalysed"), ids(strategy.recommend(seeds, 10)),
+                    metric.name());
+        }
+        client.close();
+    }
+
+    @Test
+    void testSmallestKeepsKClosestInOrder() {
+        double[] distances = {0.5, 0.1, 0.9, 0.3, 0.05, 0.7};
+        assertArrayEquals(new int[]{4, 1, 3}, AudioFeatureVectors.smallest(distances, distances.length, 3));
+        assertArrayEquals(new int[0], AudioFeatureVectors.smallest(distances, distances.length, 0));
+        assertArrayEquals(new int[]{1, 0}, AudioFeatureVectors.smallest(distances, 2, 5));
+    }
+
+    private static RecommendationStrategy fixed(List<Track> tracks) {
+        return new RecommendationStrategy() {
+            @Override
+            public List<Track> recommend(List<Track> userTracks, int count) {
+                return tracks;
+            }
+
+            @Override
+            public String getStrategyName() {
+                return "fixed";
+            }
+        };
+    }
+
+    private static List<String> ids(List<Track> tracks) {
+        return tracks.stream().map(Track::getId).toList();
+    }
+
+    private static AudioFeatures features(String id, double danceability, double energy, double valence,
+                                          double tempo, double acousticness) {
+        AudioFeatures features = new AudioFeatures(id);
+        features.setDanceability(danceability);
+        features.setEnergy(energy);
+        features.setValence(valence);
+        features.setTempo(tempo);
+        features.setAcousticness(acousticness);
+        return features;
+    }
+}
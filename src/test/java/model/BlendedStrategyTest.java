@@ -0,0 +1,55 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static model.StubAPIClient.track;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BlendedStrategyTest {
+    @Test
+    void testUsesEverySeedArtistAndRanksByFrequencyAndPopularity() throws Exception {
+        StubAPIClient client = new StubAPIClient()
+                .withTopTracks("A", List.of(track("a-hit", "A", 90), track("duet", "A", 40), track("seed1", "A", 100)))
+                .withTopTracks("B", List.of(track("b-hit", "B", 95), track("duet", "A", 40)))
+                .withTopTracks("C", List.of(track("c-deep-cut", "C", 5)))
+                .withArtist("Artist C", "C");
+        BlendedStrategy strategy = new BlendedStrategy(client);
+
+        Track seed1 = track("seed1", "A", 0);
+        // Second artist on the seed is used too, not just getArtists().get(0)
+        seed1.setArtistIds(List.of("A", "B"));
+        Track seed2 = track("seed2", "A", 0);
+        Track byName = new Track("seed3", "Old payload", List.of("Artist C"), "Album");
+        Track broken = track("seed4", "D", 0);
+
+        List<Track> recs = strategy.recommend(List.of(seed1, seed2, byName, broken), 3);
+
+        List<String> ids = new ArrayList<>();
+        for (Track track : recs) {
+            ids.add(track.getId());
+        }
+        // duet: on A's (2 seeds) and B's (1 seed) lists; a-hit and b-hit are popular but less frequent
+        assertEquals(List.of("duet", "a-hit", "b-hit"), ids);
+        assertEquals(Map.of("A", 1, "B", 1, "C", 1, "D", 1), client.getTopTrackCalls());
+        client.close();
+    }
+
+    @Test
+    void testKeepsOnlyCountResults() throws Exception {
+        List<Track> tracks = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            tracks.add(track("X" + i, "X", i * 10));
+        }
+        StubAPIClient client = new StubAPIClient().withTopTracks("X", tracks);
+        BlendedStrategy strategy = new BlendedStrategy(client);
+
+        List<Track> recs = strategy.recommend(List.of(track("s", "X", 0)), 3);
+        assertEquals(List.of("X9", "X8", "X7"), recs.stream().map(Track::getId).toList());
+        assertTrue(strategy.recommend(List.of(), 3).isEmpty());
+        client.close();
+    }
+}
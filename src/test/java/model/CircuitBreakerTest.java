@@ -0,0 +1,128 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CircuitBreakerTest {
+
+    @Test
+    void testOpensAfterConsecutiveFailuresAndProbesOnce() {
+        AtomicLong now = new AtomicLong();
+        CircuitBreaker breaker = new CircuitBreaker("upstream.searchTracks", 3, 1_000, 0, now::get);
+
+        breaker.tryAcquire().onFailure();
+        breaker.tryAcquire().onFailure();
+        breaker.tryAcquire().onSuccess(0);
+        // The success reset the streak
+        breaker.tryAcquire().onFailure();
+        breaker.tryAcquire().onFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.tryAcquire().onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertNull(breaker.tryAcquire());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1_000));
+        CircuitBreaker.Permit probe = breaker.tryAcquire();
+        assertNotNull(probe, "probe");
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertNull(breaker.tryAcquire(), "only one probe at a time");
+
+        // A failed probe opens it again for the full period
+        probe.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        assertNull(breaker.tryAcquire());
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        probe = breaker.tryAcquire();
+        assertNotNull(probe);
+        probe.onSuccess(0);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertNotNull(breaker.tryAcquire());
+
+        assertEquals(2, breaker.getOpened());
+        assertEquals(3, breaker.getRejected());
+    }
+
+    @Test
+    void testSlowCallsCountAsFailuresAndIgnoredProbesAreReleased() {
+        AtomicLong now = new AtomicLong();
+        CircuitBreaker breaker = new CircuitBreaker("upstream.getTrackById", 2, 1_000, 100, now::get);
+
+        breaker.tryAcquire().onSuccess(TimeUnit.MILLISECONDS.toNanos(150));
+        breaker.tryAcquire().onSuccess(TimeUnit.MILLISECONDS.toNanos(150));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1_000));
+        CircuitBreaker.Permit probe = breaker.tryAcquire();
+        assertNotNull(probe);
+        // e.g. the probe was rate limited before it reached Spotify
+        probe.onIgnored();
+        probe = breaker.tryAcquire();
+        assertNotNull(probe, "another probe may go");
+        probe.onSuccess(TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void testLateSettlementsOfEarlierPermitsAreNotCounted() {
+        AtomicLong now = new AtomicLong();
+        CircuitBreaker breaker = new CircuitBreaker("upstream.getTopTracksForArtist", 2, 1_000, 0, now::get);
+
+        // Two slow calls admitted while closed, still out when the circuit opens
+        CircuitBreaker.Permit slowSuccess = breaker.tryAcquire();
+        CircuitBreaker.Permit slowIgnored = breaker.tryAcquire();
+        breaker.tryAcquire().onFailure();
+        breaker.tryAcquire().onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        // Finishing late does not close the circuit without a probe
+        slowSuccess.onSuccess(0);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertNull(breaker.tryAcquire());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1_000));
+        CircuitBreaker.Permit probe = breaker.tryAcquire();
+        assertNotNull(probe);
+        // Nor does a late straggler free a second probe while the real one is out
+        slowIgnored.onIgnored();
+        assertNull(breaker.tryAcquire(), "only one probe at a time");
+
+        // A probe given up on is replaced; its own late verdict no longer counts either
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1_000));
+        CircuitBreaker.Permit secondProbe = breaker.tryAcquire();
+        assertNotNull(secondProbe);
+        probe.onSuccess(0);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        secondProbe.onSuccess(0);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void testOpenCircuitServesStaleCacheEntries() throws Exception {
+        APIClient client = new APIClient();
+        List<Track> expired = List.of(new Track("t1", "Song", List.of("Artist"), "Album"));
+        client.getCache().put("search:track:muse:10", expired, -1);
+
+        CircuitBreaker breaker = client.circuitBreaker("upstream.searchTracks");
+        while (breaker.getState() != CircuitBreaker.State.OPEN) {
+            breaker.tryAcquire().onFailure();
+        }
+
+        try (StaleResponses.Tracker stale = StaleResponses.track()) {
+            assertEquals(expired, client.searchTracks("muse", 10));
+            assertTrue(stale.servedStale());
+        }
+        try (StaleResponses.Tracker stale = StaleResponses.track()) {
+            // Nothing cached to fall back on: the call fails fast instead
+            assertThrows(CircuitBreaker.OpenException.class, () -> client.searchTracks("radiohead", 10));
+            assertFalse(stale.servedStale());
+        }
+        assertNull(StaleResponses.current());
+        client.close();
+    }
+}
@@ -0,0 +1,39 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HotQueriesTest {
+    @Test
+    void testHottestCountsOnlyTheWindow() {
+        AtomicLong now = new AtomicLong(TimeUnit.DAYS.toMillis(100));
+        HotQueries hotQueries = new HotQueries(2, now::get);
+        for (int i = 0; i < 5; i++) {
+            hotQueries.record("search:track:old:20");
+        }
+
+        now.addAndGet(TimeUnit.HOURS.toMillis(1));
+        hotQueries.record("search:track:muse:20");
+        hotQueries.record("search:track:muse:20");
+        hotQueries.record("top-tracks:a1:US");
+        assertEquals(List.of("search:track:old:20", "search:track:muse:20"), hotQueries.hottest(2));
+
+        // The first hour falls out of the two-hour window
+        now.addAndGet(TimeUnit.HOURS.toMillis(1));
+        hotQueries.record("top-tracks:a1:US");
+        assertEquals(List.of("search:track:muse:20", "top-tracks:a1:US"), hotQueries.hottest(5));
+    }
+
+    @Test
+    void testOverlongKeysAreNotCounted() {
+        HotQueries hotQueries = new HotQueries(2);
+        hotQueries.record("search:track:" + "x".repeat(HotQueries.MAX_KEY_LENGTH) + ":20");
+        hotQueries.record("search:track:muse:20");
+        assertEquals(List.of("search:track:muse:20"), hotQueries.hottest(5));
+    }
+}
@@ -0,0 +1,57 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResponseCacheTest {
+    @Test
+    void testEntriesExpireAfterTheirTtl() {
+        AtomicLong now = new AtomicLong(1_000);
+        ResponseCache<String, String> cache = new ResponseCache<>(10, now::get);
+        cache.put("search:muse", "short", 100);
+        cache.put("track:1", "long", 10_000);
+
+        now.addAndGet(500);
+        assertNull(cache.get("search:muse"));
+        assertEquals("long", cache.get("track:1"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getExpirations());
+    }
+
+    @Test
+    void testExpiredEntriesStayAvailableAsStaleWithinGrace() {
+        AtomicLong now = new AtomicLong(1_000);
+        ResponseCache<String, String> cache = new ResponseCache<>(10, 1_000, now::get);
+        cache.put("search:muse", "old", 100);
+
+        now.addAndGet(500);
+        assertNull(cache.get("search:muse"));
+        assertEquals("old", cache.getStale("search:muse"));
+        assertEquals(0, cache.getExpirations());
+
+        now.addAndGet(1_000);
+        assertNull(cache.getStale("search:muse"));
+        assertNull(cache.get("search:muse"));
+        assertEquals(1, cache.getExpirations());
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getStaleHits());
+    }
+
+    @Test
+    void testLeastRecentlyUsedEntryIsEvictedWhenFull() {
+        ResponseCache<String, String> cache = new ResponseCache<>(2);
+        cache.put("a", "A", 60_000);
+        cache.put("b", "B", 60_000);
+        cache.get("a");
+        cache.put("c", "C", 60_000);
+
+        assertEquals("A", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(2, cache.size());
+    }
+}
@@ -0,0 +1,79 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleFlightTest {
+    @Test
+    void testConcurrentCallersShareOneUpstreamCall() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(pool.submit(() -> flight.execute("top-tracks:adele", () -> {
+                    upstreamCalls.incrementAndGet();
+                    release.await();
+                    return "tracks";
+                })));
+            }
+            // Wait until every caller is either running or waiting on the in-flight call
+            while (flight.getExecuted() + flight.getCoalesced() < 8) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("tracks", result.get());
+            }
+            assertEquals(1, upstreamCalls.get());
+            assertEquals(7, flight.getCoalesced());
+            assertEquals(0, flight.getInFlight());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void testErrorInCallReleasesWaiters() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<String> first = pool.submit(() -> flight.execute("track:t1", () -> {
+                release.await();
+                throw new OutOfMemoryError("simulated");
+            }));
+            while (flight.getExecuted() < 1) {
+                Thread.sleep(5);
+            }
+            Future<String> waiter = pool.submit(() -> flight.execute("track:t1", () -> "never runs"));
+            while (flight.getCoalesced() < 1) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            ExecutionException e = assertThrows(ExecutionException.class, () -> waiter.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(OutOfMemoryError.class, e.getCause());
+            assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+            assertEquals(0, flight.getInFlight());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
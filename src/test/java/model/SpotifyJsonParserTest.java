@@ -0,0 +1,74 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SpotifyJsonParserTest {
+    private static final String SEARCH_RESPONSE = "{\"tracks\":{\"href\":\"h\",\"items\":[{"
+            + "\"album\":{\"id\":\"alb1\",\"name\":\"Origin of Symmetry\",\"images\":[{\"url\":\"u\",\"height\":640}],"
+            + "\"available_markets\":[\"US\",\"GB\"]},"
+            + "\"artists\":[{\"id\":\"art1\",\"name\":\"Muse\",\"external_urls\":{\"spotify\":\"s\"}}],"
+            + "\"available_markets\":[\"US\"],\"duration_ms\":366213,\"explicit\":false,"
+            + "\"id\":\"trk1\",\"name\":\"Plug In Baby\",\"popularity\":71,\"preview_url\":null},"
+            + "null],\"limit\":2,\"total\":1}}";
+
+    @Test
+    void testSearchResponseKeepsOnlyTrackFields() throws Exception {
+        ArtistIdIndex index = new ArtistIdIndex();
+        List<Track> tracks = new SpotifyJsonParser(index).parseTrackSearch(SEARCH_RESPONSE);
+
+        assertEquals(1, tracks.size());
+        Track track = tracks.get(0);
+        assertEquals("trk1", track.getId());
+        assertEquals("Plug In Baby", track.getName());
+        assertEquals(List.of("Muse"), track.getArtists());
+        assertEquals(List.of("art1"), track.getArtistIds());
+        assertEquals("alb1", track.getAlbumId());
+        assertEquals("Origin of Symmetry", track.getAlbumName());
+        assertEquals(366213, track.getDurationMs());
+        assertEquals(71, track.getPopularity());
+        assertNull(track.getPreviewUrl());
+        assertEquals("art1", index.lookup("Muse"));
+    }
+
+    @Test
+    void testArtistsWithoutIdAreLeftOut() throws Exception {
+        String response = "{\"tracks\":[{\"id\":\"trk1\",\"name\":\"Song\",\"artists\":["
+                + "{\"id\":null,\"name\":\"Local Artist\"},{\"id\":\"art2\",\"name\":\"Guest\"}],"
+                + "\"album\":{\"name\":\"Album\"}}]}";
+
+        Track track = new SpotifyJsonParser(new ArtistIdIndex()).parseTopTracks(response).get(0);
+
+        assertEquals(List.of("Guest"), track.getArtists());
+        assertEquals(List.of("art2"), track.getArtistIds());
+    }
+
+    @Test
+    void testArtistSearchErrorGivesEmptyList() throws Exception {
+        SpotifyJsonParser parser = new SpotifyJsonParser(new ArtistIdIndex());
+        String error = "{\"error\":{\"status\":401,\"message\":\"The access token expired\"}}";
+        assertTrue(parser.parseArtistSearch(error).isEmpty());
+    }
+
+    @Test
+    void testAudioFeaturesSkipUnknownTracks() throws Exception {
+        SpotifyJsonParser parser = new SpotifyJsonParser(new ArtistIdIndex());
+        String response = "{\"audio_features\":[{\"danceability\":0.5,\"energy\":0.9,\"key\":7,"
+                + "\"valence\":0.25,\"tempo\":128.01,\"acousticness\":0.001,\"id\":\"trk1\","
+                + "\"analysis_url\":\"u\"},null]}";
+
+        List<AudioFeatures> features = parser.parseAudioFeatures(response);
+
+        assertEquals(1, features.size());
+        AudioFeatures feature = features.get(0);
+        assertEquals("trk1", feature.getTrackId());
+        assertEquals(0.5, feature.getDanceability());
+        assertEquals(0.9, feature.getEnergy());
+        assertEquals(0.25, feature.getValence());
+        assertEquals(128.01, feature.getTempo());
+        assertEquals(0.001, feature.getAcousticness());
+    }
+}
@@ -0,0 +1,62 @@
+package model;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Local HTTP stand-in for Spotify, for tests of the real clients. It hands out a token from the
+ * start; tests add the API paths they need with {@link #handle(String, HttpHandler)}.
+ */
+public class SpotifyStub implements AutoCloseable {
+    private final HttpServer server;
+
+    public SpotifyStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api/token", exchange -> respond(exchange, 200,
+                "{\"access_token\":\"stub-token\",\"token_type\":\"Bearer\",\"expires_in\":3600}"));
+        server.start();
+    }
+
+    /**
+     * Answer requests under {@code /v1 + path}
+     */
+    public SpotifyStub handle(String path, HttpHandler handler) {
+        server.createContext("/v1" + path, handler);
+        return this;
+    }
+
+    /**
+     * A client talking to this stub instead of Spotify
+     */
+    public APIClient newClient() {
+        String base = "http://localhost:" + server.getAddress().getPort();
+        return new APIClient(new HttpClientSettings(), 100, base + "/api/token", base + "/v1");
+    }
+
+    public static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * An error in Spotify's format, e.g. 404 "Non existing id"
+     */
+    public static void respondError(HttpExchange exchange, int status, String message) throws IOException {
+        respond(exchange, status, "{\"error\":{\"status\":" + status + ",\"message\":\"" + message + "\"}}");
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
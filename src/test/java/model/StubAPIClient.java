@@ -0,0 +1,71 @@
+package model;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * APIClient answering from canned data instead of Spotify, for strategy and server tests.
+ * Top tracks of an artist it has no list for fail like an upstream outage; unknown tracks and
+ * artist names are not found.
+ */
+public class StubAPIClient extends APIClient {
+    private final Map<String, List<Track>> topTracks = new HashMap<>();
+    private final Map<String, Track> tracks = new HashMap<>();
+    private final Map<String, String> artistIds = new HashMap<>();
+    private final Map<String, Integer> topTrackCalls = new ConcurrentHashMap<>();
+
+    public StubAPIClient withTopTracks(String artistId, List<Track> tracks) {
+        topTracks.put(artistId, tracks);
+        return this;
+    }
+
+    public StubAPIClient withTrack(Track track) {
+        tracks.put(track.getId(), track);
+        return this;
+    }
+
+    public StubAPIClient withArtist(String artistName, String artistId) {
+        artistIds.put(artistName, artistId);
+        return this;
+    }
+
+    /**
+     * Top-tracks calls so far, per artist ID
+     */
+    public Map<String, Integer> getTopTrackCalls() {
+        return topTrackCalls;
+    }
+
+    @Override
+    public List<Track> getTopTracksForArtist(String artistId, String market) throws IOException {
+        topTrackCalls.merge(artistId, 1, Integer::sum);
+        List<Track> artistTracks = topTracks.get(artistId);
+        if (artistTracks == null) {
+            throw new IOException("upstream down");
+        }
+        return artistTracks;
+    }
+
+    @Override
+    public Track getTrackById(String trackId) {
+        return tracks.get(trackId);
+    }
+
+    @Override
+    public String resolveArtistId(String artistName) {
+        return artistIds.get(artistName);
+    }
+
+    /**
+     * A track by one artist, named "Artist &lt;artistId&gt;"
+     */
+    public static Track track(String id, String artistId, int popularity) {
+        Track track = new Track(id, "Track " + id, List.of("Artist " + artistId), "Album");
+        track.setArtistIds(List.of(artistId));
+        track.setPopularity(popularity);
+        return track;
+    }
+}
@@ -0,0 +1,116 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrackCatalogueTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void testTracksArtistsAndTopTracksSurviveReopen() throws Exception {
+        Track first = track("t1", "First", "a1", "Artist One");
+        Track second = track("t2", "Second", "a2", "Artist Two");
+        try (TrackCatalogue catalogue = TrackCatalogue.open(directory)) {
+            catalogue.putTracks(List.of(first));
+            catalogue.putTopTracks("a2", "US", List.of(second, first));
+            catalogue.putArtists(List.of(new Artist("a3", "Artist Three")));
+        }
+
+        try (TrackCatalogue catalogue = TrackCatalogue.open(directory)) {
+            Track stored = catalogue.track("t1", Long.MAX_VALUE);
+            assertNotNull(stored);
+            assertEquals("First", stored.getName());
+            assertEquals(List.of("Artist One"), stored.getArtists());
+            assertEquals(List.of("a1"), stored.getArtistIds());
+            assertEquals("album-t1", stored.getAlbumId());
+            assertEquals("Album", stored.getAlbumName());
+            assertEquals(180_000, stored.getDurationMs());
+            assertEquals(70, stored.getPopularity());
+            assertNull(stored.getPreviewUrl());
+
+            List<Track> topTracks = catalogue.topTracks("a2", "US", Long.MAX_VALUE);
+            assertEquals(List.of("t2", "t1"), topTracks.stream().map(Track::getId).toList());
+            assertNull(catalogue.topTracks("a2", "SE", Long.MAX_VALUE));
+
+            assertEquals("Artist Two", catalogue.artist("a2", Long.MAX_VALUE).getName());
+            assertEquals("Artist Three", catalogue.artist("a3", Long.MAX_VALUE).getName());
+            assertEquals("a1", catalogue.artistIdByName("Artist One", Long.MAX_VALUE));
+            assertNull(catalogue.track("unknown", Long.MAX_VALUE));
+        }
+    }
+
+    @Test
+    void testOldRecordsAreMissesAndRewritesReplaceThem() throws Exception {
+        AtomicLong now = new AtomicLong(1_000_000);
+        try (TrackCatalogue catalogue = TrackCatalogue.open(directory, now::get)) {
+            catalogue.putTracks(List.of(track("t1", "Old name", "a1", "Artist")));
+            now.addAndGet(TimeUnit.HOURS.toMillis(2));
+            assertNull(catalogue.track("t1", TimeUnit.HOURS.toMillis(1)));
+
+            catalogue.putTracks(List.of(track("t1", "New name", "a1", "Artist")));
+            assertEquals("New name", catalogue.track("t1", TimeUnit.HOURS.toMillis(1)).getName());
+        }
+    }
+
+    @Test
+    void testNewerArtistIdsSupersedeOldOnesAndOldNamesExpire() throws Exception {
+        AtomicLong now = new AtomicLong(1_000_000);
+        try (TrackCatalogue catalogue = TrackCatalogue.open(directory, now::get)) {
+            catalogue.putArtists(List.of(new Artist("stub-id", "Radiohead")));
+            catalogue.putTracks(List.of(track("t1", "Creep", "real-id", "Radiohead")));
+            assertEquals("real-id", catalogue.artistIdByName("Radiohead", Long.MAX_VALUE));
+
+            now.addAndGet(TimeUnit.HOURS.toMillis(25));
+            assertNull(catalogue.artistIdByName("Radiohead", TimeUnit.HOURS.toMillis(24)));
+            assertNull(catalogue.artist("real-id", TimeUnit.HOURS.toMillis(24)));
+
+            // Seeing the same artist again refreshes the records
+            catalogue.putArtists(List.of(new Artist("real-id", "Radiohead")));
+            assertEquals("real-id", catalogue.artistIdByName("Radiohead", TimeUnit.HOURS.toMillis(24)));
+            assertEquals("Radiohead", catalogue.artist("real-id", TimeUnit.HOURS.toMillis(24)).getName());
+        }
+
+        try (TrackCatalogue catalogue = TrackCatalogue.open(directory, now::get)) {
+            assertEquals("real-id", catalogue.artistIdByName("Radiohead", Long.MAX_VALUE));
+        }
+    }
+
+    @Test
+    void testIndexGrowsAndIsRebuiltFromTheLog() throws Exception {
+        List<Track> tracks = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            tracks.add(new Track("t" + i, "Track " + i, List.of(), "Album"));
+        }
+        try (TrackCatalogue catalogue = TrackCatalogue.open(directory)) {
+            catalogue.putTracks(tracks);
+            assertEquals(5_000, catalogue.size());
+        }
+
+        Files.delete(directory.resolve("tracks.idx"));
+        try (TrackCatalogue catalogue = TrackCatalogue.open(directory)) {
+            assertEquals(5_000, catalogue.size());
+            for (int i = 0; i < 5_000; i += 97) {
+                assertEquals("Track " + i, catalogue.track("t" + i, Long.MAX_VALUE).getName());
+            }
+        }
+    }
+
+    private static Track track(String id, String name, String artistId, String artistName) {
+        Track track = new Track(id, name, List.of(artistName), "Album");
+        track.setArtistIds(List.of(artistId));
+        track.setAlbumId("album-" + id);
+        track.setDurationMs(180_000);
+        track.setPopularity(70);
+        return track;
+    }
+}
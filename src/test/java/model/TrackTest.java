@@ -10,4 +10,14 @@ class TrackTest {
         Track t = new Track("1", "Song", List.of("Artist"), "Album");
         assertEquals("Song", t.getName());
     }
+
+    @Test
+    void testArtistIdsTravelWithTrack() {
+        Track t = new Track("1", "Song", List.of("Artist"), "Album");
+        assertTrue(t.getArtistIds().isEmpty());
+        t.setArtistIds(List.of("artist-1"));
+        t.setAlbumId("album-1");
+        assertEquals("artist-1", t.getArtistIds().get(0));
+        assertEquals("album-1", t.getAlbumId());
+    }
 }
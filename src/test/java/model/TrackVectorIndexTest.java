@@ -0,0 +1,129 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrackVectorIndexTest {
+
+    @Test
+    void testNearestMatchesExactSearchOnMostResults() {
+        Random random = new Random(42);
+        TrackVectorIndex index = new TrackVectorIndex(8, 100_000, new Random(7));
+        AudioFeatureVectors exact = new AudioFeatureVectors(20_000);
+        for (int i = 0; i < 20_000; i++) {
+            AudioFeatures features = randomFeatures("t" + i, random);
+            assertTrue(index.add(track("t" + i), features));
+            exact.add(features);
+        }
+        assertEquals(20_000, index.size());
+
+        int k = 10;
+        int hits = 0;
+        double[] distances = new double[exact.size()];
+        for (int query = 0; query < 50; query++) {
+            float[] profile = new float[AudioFeatureVectors.DIMENSIONS];
+            AudioFeatureVectors.normalize(randomFeatures("q", random), profile, 0);
+
+            exact.squaredEuclidean(profile, distances);
+            Set<String> expected = new HashSet<>();
+            for (int row : AudioFeatureVectors.smallest(distances, exact.size(), k)) {
+                expected.add("t" + row);
+            }
+            List<Track> nearest = index.nearest(profile, k, Set.of());
+            assertEquals(k, nearest.size());
+            for (Track track : nearest) {
+                if (expected.contains(track.getId())) {
+                    hits++;
+                }
+            }
+        }
+        double recall = hits / (50.0 * k);
+        assertTrue(recall >= 0.9, "recall " + recall);
+    }
+
+    @Test
+    void testExcludesSeedsAndIgnoresDuplicates() {
+        TrackVectorIndex index = new TrackVectorIndex(4, 100, new Random(1));
+        index.add(track("seed"), features("seed", 0.8, 0.9, 0.5, 130, 0.1));
+        index.add(track("close"), features("close", 0.75, 0.85, 0.5, 128, 0.15));
+        index.add(track("far"), features("far", 0.1, 0.1, 0.9, 60, 0.95));
+        assertFalse(index.add(track("close"), features("close", 0.1, 0.1, 0.1, 60, 0.1)));
+        assertFalse(index.add(track("no-features"), null));
+        assertEquals(3, index.size());
+
+        float[] profile = index.centroid(List.of("seed", "unknown"));
+        assertNotNull(profile);
+        assertNull(index.centroid(List.of("unknown")));
+        assertEquals(List.of("close", "far"), ids(index.nearest(profile, 5, Set.of("seed"))));
+        assertEquals(List.of("seed"), ids(index.nearest(profile, 1, Set.of())));
+    }
+
+    @Test
+    void testStrategyAnswersFromIndexAndIndexesNewSeeds() throws Exception {
+        Map<String, AudioFeatures> known = Map.of(
+                "seed", features("seed", 0.8, 0.9, 0.5, 130, 0.1));
+        List<Collection<String>> lookups = new ArrayList<>();
+        APIClient client = new APIClient() {
+            @Override
+            public Map<String, AudioFeatures> getAudioFeatures(Collection<String> trackIds) {
+                lookups.add(List.copyOf(trackIds));
+                return known;
+            }
+        };
+        client.getTrackIndex().add(track("close"), features("close", 0.75, 0.85, 0.5, 128, 0.15));
+        client.getTrackIndex().add(track("far"), features("far", 0.1, 0.1, 0.9, 60, 0.95));
+
+        RecommendationStrategy failing = new RecommendationStrategy() {
+            @Override
+            public List<Track> recommend(List<Track> userTracks, int count) {
+                throw new AssertionError("index should answer");
+            }
+
+            @Override
+            public String getStrategyName() {
+                return "failing";
+            }
+        };
+        NearestNeighbourStrategy strategy = new NearestNeighbourStrategy(client, failing);
+        List<Track> seeds = List.of(track("seed"));
+
+        assertEquals(List.of("close"), ids(strategy.recommend(seeds, 1)));
+        // The seed is indexed now, so the second call needs no upstream lookup at all
+        assertEquals(List.of("close", "far"), ids(strategy.recommend(seeds, 2)));
+        assertEquals(List.of(List.of("seed")), lookups);
+        client.close();
+    }
+
+    private static Track track(String id) {
+        return new Track(id, id, List.of("Artist"), "Album");
+    }
+
+    private static List<String> ids(List<Track> tracks) {
+        return tracks.stream().map(Track::getId).toList();
+    }
+
+    private static AudioFeatures randomFeatures(String id, Random random) {
+        return features(id, random.nextDouble(), random.nextDouble(), random.nextDouble(),
+                40 + random.nextDouble() * 180, random.nextDouble());
+    }
+
+    private static AudioFeatures features(String id, double danceability, double energy, double valence,
+                                          double tempo, double acousticness) {
+        AudioFeatures features = new AudioFeatures(id);
+        features.setDanceability(danceability);
+        features.setEnergy(energy);
+        features.setValence(valence);
+        features.setTempo(tempo);
+        features.setAcousticness(acousticness);
+        return features;
+    }
+}
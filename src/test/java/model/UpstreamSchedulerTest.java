@@ -0,0 +1,128 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UpstreamSchedulerTest {
+
+    @Test
+    void testBurstThenPacedAtRate() throws Exception {
+        UpstreamScheduler scheduler = new UpstreamScheduler(20, 5, 5_000);
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            scheduler.acquire();
+        }
+        assertTrue(elapsedMs(start) < 40, "burst should not wait");
+        assertFalse(scheduler.tryAcquire());
+
+        // Five more at 20/s take about a quarter of a second
+        for (int i = 0; i < 5; i++) {
+            scheduler.acquire();
+        }
+        assertTrue(elapsedMs(start) >= 200, "paced at the rate: " + elapsedMs(start));
+        assertEquals(10, scheduler.getGranted());
+        assertEquals(5, scheduler.getDelayed());
+    }
+
+    @Test
+    void testRateLimitedPausesUntilRetryAfter() throws Exception {
+        UpstreamScheduler scheduler = new UpstreamScheduler(1_000, 10, 5_000);
+        scheduler.onRateLimited(300);
+        assertFalse(scheduler.tryAcquire());
+
+        long start = System.nanoTime();
+        scheduler.acquire();
+        assertTrue(elapsedMs(start) >= 250, "waited out Retry-After: " + elapsedMs(start));
+        assertEquals(1, scheduler.getRateLimited());
+    }
+
+    @Test
+    @SuppressWarnings("try")
+    void testInteractiveGoesBeforeBackground() throws Exception {
+        UpstreamScheduler scheduler = new UpstreamScheduler(10, 1, 5_000);
+        scheduler.acquire();
+
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        CountDownLatch backgroundQueued = new CountDownLatch(2);
+        for (int i = 0; i < 2; i++) {
+            String name = "background-" + i;
+            threads.add(start(() -> {
+                try (UpstreamScheduler.Scope ignored = UpstreamScheduler.background()) {
+                    backgroundQueued.countDown();
+                    scheduler.acquire();
+                    order.add(name);
+                }
+            }));
+        }
+        assertTrue(backgroundQueued.await(1, TimeUnit.SECONDS));
+        waitForQueue(scheduler, 2);
+        threads.add(start(() -> {
+            scheduler.acquire();
+            order.add("interactive");
+        }));
+        for (Thread thread : threads) {
+            thread.join(5_000);
+        }
+        assertEquals(3, order.size());
+        assertEquals("interactive", order.get(0));
+    }
+
+    @Test
+    void testGivesUpAfterMaxWait() throws Exception {
+        UpstreamScheduler scheduler = new UpstreamScheduler(0.1, 1, 100);
+        scheduler.acquire();
+        IOException e = assertThrows(IOException.class, scheduler::acquire);
+        assertTrue(e.getMessage().contains("rate limit"));
+        assertEquals(1, scheduler.getTimedOut());
+        assertEquals(0, scheduler.getQueueLength());
+    }
+
+    @Test
+    void testRetryAfterAndBackoff() {
+        assertEquals(3_000, UpstreamScheduler.parseRetryAfterMillis(" 3 "));
+        assertEquals(-1, UpstreamScheduler.parseRetryAfterMillis(null));
+        assertEquals(-1, UpstreamScheduler.parseRetryAfterMillis("Wed, 21 Oct 2015 07:28:00 GMT"));
+        for (int attempt = 1; attempt <= 20; attempt++) {
+            long backoff = UpstreamScheduler.backoffMillis(attempt);
+            assertTrue(backoff >= 100 && backoff <= 5_000, "attempt " + attempt + ": " + backoff);
+        }
+    }
+
+    private static long elapsedMs(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private static void waitForQueue(UpstreamScheduler scheduler, int length) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (scheduler.getQueueLength() < length && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(length, scheduler.getQueueLength());
+    }
+
+    private static Thread start(Acquire body) {
+        Thread thread = new Thread(() -> {
+            try {
+                body.run();
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    @FunctionalInterface
+    private interface Acquire {
+        void run() throws IOException;
+    }
+}
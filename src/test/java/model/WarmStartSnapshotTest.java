@@ -0,0 +1,78 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WarmStartSnapshotTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void testCachesArtistIdsAndHotQueriesSurviveARestart() throws Exception {
+        Track track = new Track("t1", "Uprising", List.of("Muse"), "The Resistance");
+        track.setArtistIds(List.of("a1"));
+        track.setPopularity(80);
+        Path file = directory.resolve("warm-start.snapshot");
+
+        APIClient before = new APIClient();
+        before.getCache().put("search:track:muse:20", List.of(track), 60_000);
+        before.getCache().put("track:t1", track, 60_000);
+        before.getCache().put("search:artist:Muse", List.of(new Artist("a1", "Muse")), 60_000);
+        before.getCache().put("stale", List.of(track), -1);
+        before.getArtistIndex().record("Muse", "a1");
+        before.getHotQueries().record("top-tracks:a1:US");
+        before.getHotQueries().record("search:track:muse:20");
+        before.getHotQueries().record("search:track:muse:20");
+        assertEquals(3, WarmStartSnapshot.save(before, file));
+        before.close();
+
+        APIClient after = new APIClient();
+        assertEquals(3, WarmStartSnapshot.restore(after, file));
+        @SuppressWarnings("unchecked")
+        List<Track> search = (List<Track>) after.getCache().get("search:track:muse:20");
+        assertEquals("Uprising", search.get(0).getName());
+        assertEquals(List.of("a1"), search.get(0).getArtistIds());
+        assertEquals(80, search.get(0).getPopularity());
+        assertEquals("t1", ((Track) after.getCache().get("track:t1")).getId());
+        assertNull(after.getCache().get("stale"));
+        assertEquals("a1", after.getArtistIndex().lookup("Muse"));
+        assertEquals(List.of("search:track:muse:20", "top-tracks:a1:US"), after.getHotQueries().hottest(10));
+        after.close();
+    }
+
+    @Test
+    void testKeysAndNamesBeyond64KbSurviveARestart() throws Exception {
+        // writeUTF stops at 65535 bytes; a pasted search like this used to fail every save
+        String query = "é".repeat(40_000);
+        Track track = new Track("t1", "Song", List.of(query), "Album");
+        Path file = directory.resolve("warm-start.snapshot");
+
+        APIClient before = new APIClient();
+        before.getCache().put("search:track:" + query + ":20", List.of(track), 60_000);
+        before.getArtistIndex().record(query, "a1");
+        assertEquals(1, WarmStartSnapshot.save(before, file));
+        before.close();
+        assertFalse(Files.exists(directory.resolve("warm-start.snapshot.tmp")));
+
+        APIClient after = new APIClient();
+        assertEquals(1, WarmStartSnapshot.restore(after, file));
+        @SuppressWarnings("unchecked")
+        List<Track> search = (List<Track>) after.getCache().get("search:track:" + query + ":20");
+        assertEquals(List.of(query), search.get(0).getArtists());
+        assertEquals("a1", after.getArtistIndex().lookup(query));
+        after.close();
+    }
+
+    @Test
+    void testMissingSnapshotRestoresNothing() throws Exception {
+        APIClient client = new APIClient();
+        assertEquals(0, WarmStartSnapshot.restore(client, directory.resolve("none")));
+        client.close();
+    }
+}
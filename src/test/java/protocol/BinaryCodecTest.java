@@ -0,0 +1,215 @@
+package protocol;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import model.Track;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryCodecTest {
+    @Test
+    void testRequestRoundTrip() throws IOException {
+        JsonObject request = new JsonObject();
+        request.addProperty("action", "RECOMMEND");
+        request.addProperty("trackId", "3n3Ppam7vgaVa1iaRUc9Lp");
+        request.addProperty("count", 10);
+        request.addProperty("requestId", 1L << 40);
+        request.addProperty("weight", -0.25);
+        request.addProperty("explicit", false);
+        request.add("missing", null);
+        JsonArray artistIds = new JsonArray();
+        artistIds.add("0TnOYISbd1XYRBk9myaseg");
+        artistIds.add("0TnOYISbd1XYRBk9myaseg");
+        request.add("artistIds", artistIds);
+        JsonObject nested = new JsonObject();
+        nested.add("empty", new JsonArray());
+        request.add("options", nested);
+
+        assertEquals(request, BinaryCodec.decodeRequest(BinaryCodec.encodeRequest(request)));
+    }
+
+    @Test
+    void testTrackResponseRoundTrip() throws IOException {
+        Track track = new Track("t1", "Song", Arrays.asList("Artist", null), "Album");
+        track.setArtistIds(List.of("a1"));
+        track.setAlbumId("al1");
+        track.setDurationMs(215_000);
+        track.setPopularity(87);
+        Track bare = new Track("t2", null, null, null);
+        bare.setArtistIds(null);
+
+        Response decoded = BinaryCodec.decodeResponse(BinaryCodec.encodeResponse(
+                Response.tracks("SEARCH", List.of(track, bare)).withRequestId(new JsonPrimitive(42))));
+
+        assertTrue(decoded.isSuccess());
+        assertEquals("SEARCH", decoded.getAction());
+        assertEquals(42, decoded.getRequestId().getAsLong());
+        assertEquals(2, decoded.getTracks().size());
+        Track first = decoded.getTracks().get(0);
+        assertEquals("t1", first.getId());
+        assertEquals("Song", first.getName());
+        assertEquals(Arrays.asList("Artist", null), first.getArtists());
+        assertEquals(List.of("a1"), first.getArtistIds());
+        assertEquals("al1", first.getAlbumId());
+        assertEquals("Album", first.getAlbumName());
+        assertNull(first.getPreviewUrl());
+        assertEquals(215_000, first.getDurationMs());
+        assertEquals(87, first.getPopularity());
+        assertEquals("t2", decoded.getTracks().get(1).getId());
+        assertNull(decoded.getTracks().get(1).getName());
+    }
+
+    @Test
+    void testErrorAndDataResponsesRoundTrip() throws IOException {
+        Response error = BinaryCodec.decodeResponse(BinaryCodec.encodeResponse(Response.error("Unknown action: X")));
+        assertFalse(error.isSuccess());
+        assertEquals("Unknown action: X", error.getMessage());
+        assertNull(error.getRequestId());
+
+        JsonObject data = new JsonObject();
+        data.addProperty("uptimeMs", 1234);
+        data.addProperty("hitRatio", 0.5);
+        Response stats = BinaryCodec.decodeResponse(BinaryCodec.encodeResponse(Response.data("STATS", data)));
+        assertEquals("STATS", stats.getAction());
+        assertEquals(data, stats.getData());
+    }
+
+    @Test
+    void testStaleFlagRoundTrip() throws IOException {
+        Track track = new Track("t1", "Song", List.of("Artist"), "Album");
+        Response fresh = BinaryCodec.decodeResponse(BinaryCodec.encodeResponse(Response.tracks("SEARCH", List.of(track))));
+        assertFalse(fresh.isStale());
+
+        Response stale = BinaryCodec.decodeResponse(BinaryCodec.encodeResponse(
+                Response.tracks("SEARCH", List.of(track)).withStale(true).withRequestId(new JsonPrimitive(4))));
+        assertTrue(stale.isStale());
+        assertEquals("t1", stale.getTracks().get(0).getId());
+        assertEquals(4, stale.getRequestId().getAsInt());
+        assertTrue(stale.toJson(new Gson()).get("stale").getAsBoolean());
+        assertFalse(fresh.toJson(new Gson()).has("stale"));
+    }
+
+    @Test
+    void testRepeatedArtistsMakeTrackListsMuchSmallerThanJson() {
+        List<Track> tracks = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Track track = new Track("4iV5W9uYEdYUVa79Axb7Rh" + i, "Track number " + i,
+                    List.of("Some Artist"), "Greatest Hits");
+            track.setArtistIds(List.of("0TnOYISbd1XYRBk9myaseg"));
+            track.setAlbumId("6akEvsycLGftJxYudPjmqK");
+            track.setDurationMs(200_000 + i);
+            track.setPopularity(70);
+            tracks.add(track);
+        }
+        Response response = Response.tracks("RECOMMEND", tracks).withRequestId(new JsonPrimitive(7));
+
+        int json = new Gson().toJson(response.toJson(new Gson())).getBytes(StandardCharsets.UTF_8).length;
+        int binary = BinaryCodec.encodeResponse(response).length;
+        assertTrue(binary * 2 < json, "binary " + binary + " bytes vs JSON " + json);
+    }
+
+    @Test
+    void testTruncatedPayloadIsRejected() {
+        JsonObject request = new JsonObject();
+        request.addProperty("action", "SEARCH");
+        request.addProperty("query", "hello");
+        byte[] payload = BinaryCodec.encodeRequest(request);
+
+        assertThrows(IOException.class,
+                () -> BinaryCodec.decodeRequest(Arrays.copyOf(payload, payload.length - 2)));
+    }
+
+    @Test
+    void testFramesSplitAcrossReads() throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        Frames.write(stream, new byte[]{1, 2, 3});
+        Frames.write(stream, new byte[0]);
+        byte[] bytes = stream.toByteArray();
+
+        ByteBuffer partial = ByteBuffer.wrap(bytes, 0, 6);
+        assertNull(Frames.read(partial));
+        assertEquals(0, partial.position());
+
+        ByteBuffer whole = ByteBuffer.wrap(bytes);
+        assertArrayEquals(new byte[]{1, 2, 3}, Frames.read(whole));
+        assertArrayEquals(new byte[0], Frames.read(whole));
+        assertNull(Frames.read(whole));
+
+        ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+        assertArrayEquals(new byte[]{1, 2, 3}, Frames.read(in));
+        assertArrayEquals(new byte[0], Frames.read(in));
+        assertNull(Frames.read(in));
+    }
+
+    @Test
+    void testHandshake() {
+        JsonObject hello = JsonParser.parseString(Handshake.request(WireProtocol.BINARY)).getAsJsonObject();
+        assertTrue(Handshake.isHello(hello));
+        assertEquals(WireProtocol.BINARY, Handshake.negotiate(hello));
+        assertEquals(WireProtocol.BINARY, Handshake.accepted(Handshake.response(WireProtocol.BINARY)));
+        // Servers without HELLO answer with an error: stay on JSON lines
+        assertEquals(WireProtocol.JSON, Handshake.accepted("{\"status\":\"error\",\"message\":\"Unknown action: HELLO\"}"));
+    }
+
+    @Test
+    void testDeflatedFramesRoundTrip() throws IOException {
+        List<Track> tracks = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            tracks.add(new Track("id" + i, "A fairly long track title, part " + i, List.of("Artist"), "Album"));
+        }
+        byte[] payload = BinaryCodec.encodeResponse(Response.tracks("SEARCH", tracks));
+        byte[] small = {1, 2, 3};
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        Frames.write(stream, payload, Compression.DEFLATE);
+        Frames.write(stream, small, Compression.DEFLATE);
+        byte[] bytes = stream.toByteArray();
+        assertEquals(Frames.FLAG_DEFLATE, bytes[4]);
+        assertTrue(bytes.length < payload.length, "compressed " + bytes.length + " vs " + payload.length);
+
+        Inflater inflater = Frames.newInflater(Compression.DEFLATE);
+        try {
+            ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+            assertArrayEquals(payload, Frames.read(in, inflater));
+            assertArrayEquals(small, Frames.read(in, inflater));
+
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            assertArrayEquals(payload, Frames.read(buffer, inflater));
+            assertArrayEquals(small, Frames.read(buffer, inflater));
+        } finally {
+            inflater.end();
+        }
+
+        // A connection that did not agree on compression must not see compressed frames
+        assertThrows(IOException.class, () -> Frames.read(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test
+    void testCompressionIsOnlyAgreedForBinary() {
+        JsonObject binary = JsonParser.parseString(
+                Handshake.request(WireProtocol.BINARY, Compression.DEFLATE)).getAsJsonObject();
+        assertEquals(Compression.DEFLATE, Handshake.negotiateCompression(binary));
+        assertEquals(Compression.DEFLATE,
+                Handshake.acceptedCompression(Handshake.response(WireProtocol.BINARY, Compression.DEFLATE)));
+        // Servers that predate compression answer without it
+        assertEquals(Compression.NONE, Handshake.acceptedCompression(Handshake.response(WireProtocol.BINARY)));
+
+        JsonObject json = JsonParser.parseString(
+                Handshake.request(WireProtocol.JSON, Compression.DEFLATE)).getAsJsonObject();
+        assertEquals(Compression.NONE, Handshake.negotiateCompression(json));
+    }
+}
@@ -0,0 +1,51 @@
+package protocol;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeflateTest {
+
+    @Test
+    void testManyThreadsShareABoundedPool() throws Exception {
+        byte[] payload = "{\"id\":\"track\",\"name\":\"Song\"},".repeat(200).getBytes(StandardCharsets.UTF_8);
+        // More threads than the pool keeps, each compressing once, like a thread per connection
+        ExecutorService threads = Executors.newCachedThreadPool();
+        try {
+            List<Future<byte[]>> compressed = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                compressed.add(threads.submit(() -> Deflate.compress(payload)));
+            }
+            Inflater inflater = Deflate.newInflater();
+            for (Future<byte[]> result : compressed) {
+                assertArrayEquals(payload, Deflate.inflate(inflater, result.get()));
+            }
+            inflater.end();
+        } finally {
+            threads.shutdownNow();
+        }
+        assertTrue(Deflate.pooled() <= 2 * Runtime.getRuntime().availableProcessors(),
+                "pooled: " + Deflate.pooled());
+        assertTrue(Deflate.pooled() >= 1);
+    }
+
+    @Test
+    void testIncompressiblePayloadIsLeftAlone() {
+        byte[] random = new byte[4096];
+        new Random(42).nextBytes(random);
+        assertNull(Deflate.compress(random));
+        // A large payload grows the buffer; the pooled compressor still works afterwards
+        byte[] large = "abc".repeat(50_000).getBytes(StandardCharsets.UTF_8);
+        assertNotNull(Deflate.compress(large));
+        assertNotNull(Deflate.compress("abc".repeat(200).getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,120 @@
+package server;
+
+import com.google.gson.Gson;
+import client.ServerConnection;
+import com.google.gson.JsonObject;
+import model.APIClient;
+import model.Track;
+import org.junit.jupiter.api.Test;
+import protocol.Compression;
+import protocol.WireProtocol;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClientHandlerTest {
+    @Test
+    void testPipelinedRequestsAreAnsweredWithTheirRequestId() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        Gson gson = new Gson();
+        try (ServerSocket serverSocket = new ServerSocket(0);
+             Socket client = new Socket("localhost", serverSocket.getLocalPort())) {
+            Socket accepted = serverSocket.accept();
+            pool.execute(new ClientHandler(accepted, new RequestProcessor(new APIClient()), pool));
+
+            PrintWriter out = new PrintWriter(client.getOutputStream(), true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream()));
+            for (int id = 1; id <= 5; id++) {
+                out.println("{\"action\":\"NOPE\",\"requestId\":" + id + "}");
+            }
+
+            Set<Long> answered = new HashSet<>();
+            for (int i = 0; i < 5; i++) {
+                JsonObject response = gson.fromJson(in.readLine(), JsonObject.class);
+                assertEquals("error", response.get("status").getAsString());
+                answered.add(response.get("requestId").getAsLong());
+            }
+            assertEquals(Set.of(1L, 2L, 3L, 4L, 5L), answered);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void testBinaryProtocolAfterHello() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        ServerConnection connection = new ServerConnection(WireProtocol.BINARY, Compression.DEFLATE);
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            pool.execute(() -> {
+                try {
+                    Socket accepted = serverSocket.accept();
+                    new ClientHandler(accepted, new RequestProcessor(new APIClient()), pool).run();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            });
+            connection.connect("localhost", serverSocket.getLocalPort());
+            assertEquals(WireProtocol.BINARY, connection.getProtocol());
+            assertEquals(Compression.DEFLATE, connection.getCompression());
+
+            // No Spotify credentials here: the search fails, and its error travels back as a binary frame
+            IOException error = assertThrows(IOException.class, () -> connection.searchTracks("hello"));
+            assertTrue(error.getMessage().startsWith("Server error"), error.getMessage());
+        } finally {
+            connection.disconnect();
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void testOldServerWithoutRequestIdsAnswersInOrder() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(1);
+        ServerConnection connection = new ServerConnection(WireProtocol.BINARY);
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            // A server from before HELLO and requestId: an error for HELLO, then answers in order
+            pool.execute(() -> {
+                try (Socket accepted = serverSocket.accept();
+                     BufferedReader in = new BufferedReader(new InputStreamReader(accepted.getInputStream()));
+                     PrintWriter out = new PrintWriter(accepted.getOutputStream(), true)) {
+                    String line;
+                    while ((line = in.readLine()) != null) {
+                        JsonObject request = new Gson().fromJson(line, JsonObject.class);
+                        String action = request.get("action").getAsString();
+                        if (action.equals("SEARCH")) {
+                            out.println("{\"status\":\"success\",\"data\":[{\"id\":\""
+                                    + request.get("query").getAsString() + "\",\"name\":\"Song\"}]}");
+                        } else {
+                            out.println("{\"status\":\"error\",\"message\":\"Unknown action: " + action + "\"}");
+                        }
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            });
+            connection.connect("localhost", serverSocket.getLocalPort());
+            assertEquals(WireProtocol.JSON, connection.getProtocol());
+
+            CompletableFuture<List<Track>> first = connection.searchTracksAsync("first");
+            CompletableFuture<List<Track>> second = connection.searchTracksAsync("second");
+            assertEquals("first", first.get(5, TimeUnit.SECONDS).get(0).getId());
+            assertEquals("second", second.get(5, TimeUnit.SECONDS).get(0).getId());
+            assertEquals("third", connection.searchTracks("third").get(0).getId());
+        } finally {
+            connection.disconnect();
+            pool.shutdownNow();
+        }
+    }
+}
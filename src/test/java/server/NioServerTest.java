@@ -0,0 +1,232 @@
+package server;
+
+import client.ServerConnection;
+import com.google.gson.JsonObject;
+import model.APIClient;
+import org.junit.jupiter.api.Test;
+import protocol.BinaryCodec;
+import protocol.Compression;
+import protocol.Frames;
+import protocol.Handshake;
+import protocol.Response;
+import protocol.WireProtocol;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NioServerTest {
+    @Test
+    void testManyIdleClientsShareTwoWorkers() throws Exception {
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        ExecutorService workers = Executors.newFixedThreadPool(2);
+        NioServer server = new NioServer(port, new RequestProcessor(new APIClient()), workers);
+        Thread selectorThread = new Thread(() -> {
+            try {
+                server.start();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+        selectorThread.start();
+
+        List<Socket> clients = new ArrayList<>();
+        try {
+            for (int i = 0; i < 50; i++) {
+                clients.add(connect(port));
+            }
+
+            // The last client is answered even though 49 others are still connected
+            Socket last = clients.get(clients.size() - 1);
+            PrintWriter out = new PrintWriter(last.getOutputStream(), true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(last.getInputStream()));
+            out.print("{\"action\":\"FIRST\"}\n{\"action\":\"SECOND\"}\n");
+            out.flush();
+
+            assertTrue(in.readLine().contains("Unknown action: FIRST"));
+            assertTrue(in.readLine().contains("Unknown action: SECOND"));
+        } finally {
+            for (Socket client : clients) {
+                client.close();
+            }
+            server.stop();
+            selectorThread.join(5000);
+            workers.shutdown();
+        }
+    }
+
+    @Test
+    void testBinaryClientAfterJsonLines() throws Exception {
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        ExecutorService workers = Executors.newFixedThreadPool(2);
+        NioServer server = new NioServer(port, new RequestProcessor(new APIClient()), workers);
+        Thread selectorThread = new Thread(() -> {
+            try {
+                server.start();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+        selectorThread.start();
+
+        ServerConnection connection = new ServerConnection(WireProtocol.BINARY);
+        try {
+            connect(port).close();
+            connection.connect("localhost", port);
+            assertEquals(WireProtocol.BINARY, connection.getProtocol());
+
+            // Two pipelined requests on the same frames; both errors come back as binary responses
+            CompletableFuture<?> first = connection.searchTracksAsync("hello");
+            CompletableFuture<?> second = connection.getRecommendationsAsync("no-such-track");
+            for (CompletableFuture<?> future : List.of(first, second)) {
+                ExecutionException error = assertThrows(ExecutionException.class, () -> future.get(30, TimeUnit.SECONDS));
+                assertTrue(error.getCause().getMessage().startsWith("Server error"), error.getCause().getMessage());
+            }
+        } finally {
+            connection.disconnect();
+            server.stop();
+            selectorThread.join(5000);
+            workers.shutdown();
+        }
+    }
+
+    @Test
+    void testDeflatedStatsFrame() throws Exception {
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        ExecutorService workers = Executors.newFixedThreadPool(2);
+        NioServer server = new NioServer(port, new RequestProcessor(new APIClient()), workers);
+        Thread selectorThread = new Thread(() -> {
+            try {
+                server.start();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+        selectorThread.start();
+
+        Inflater inflater = Frames.newInflater(Compression.DEFLATE);
+        try (Socket client = connect(port)) {
+            OutputStream out = client.getOutputStream();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(client.getInputStream()));
+            out.write((Handshake.request(WireProtocol.BINARY, Compression.DEFLATE) + "\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            assertEquals(Compression.DEFLATE, Handshake.acceptedCompression(Frames.readLine(in)));
+
+            JsonObject stats = new JsonObject();
+            stats.addProperty("action", "STATS");
+            stats.addProperty("requestId", 9);
+            Frames.write(out, BinaryCodec.encodeRequest(stats));
+            out.flush();
+
+            // STATS is well over the compression threshold, so its frame comes back deflated
+            in.mark(Frames.HEADER_BYTES);
+            in.skipBytes(4);
+            assertEquals(Frames.FLAG_DEFLATE, in.readUnsignedByte());
+            in.reset();
+            Response response = BinaryCodec.decodeResponse(Frames.read(in, inflater));
+            assertTrue(response.isSuccess());
+            assertEquals("STATS", response.getAction());
+            assertEquals(9, response.getRequestId().getAsLong());
+            assertTrue(response.getData().has("connectionPool"));
+        } finally {
+            inflater.end();
+            server.stop();
+            selectorThread.join(5000);
+            workers.shutdown();
+        }
+    }
+
+    @Test
+    void testStopsReadingFromClientThatDoesNotReadResponses() throws Exception {
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        ExecutorService workers = Executors.newFixedThreadPool(2);
+        NioServer server = new NioServer(port, new RequestProcessor(new APIClient()), workers);
+        Thread selectorThread = new Thread(() -> {
+            try {
+                server.start();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+        selectorThread.start();
+
+        connect(port).close();
+        try (SocketChannel client = SocketChannel.open(new InetSocketAddress("localhost", port))) {
+            // Far more pipelined requests than socket buffers hold, and no response is read
+            StringBuilder requests = new StringBuilder();
+            for (int i = 0; i < 500_000; i++) {
+                requests.append("{\"action\":\"NOPE\",\"requestId\":").append(i).append("}\n");
+            }
+            ByteBuffer out = ByteBuffer.wrap(requests.toString().getBytes(StandardCharsets.UTF_8));
+            client.configureBlocking(false);
+            long stalledSince = 0;
+            while (out.hasRemaining()) {
+                if (client.write(out) > 0) {
+                    stalledSince = 0;
+                } else if (stalledSince == 0) {
+                    stalledSince = System.nanoTime();
+                } else if (System.nanoTime() - stalledSince > TimeUnit.SECONDS.toNanos(2)) {
+                    break;
+                }
+                Thread.sleep(1);
+            }
+            // The server stopped taking requests instead of buffering all of them
+            assertTrue(out.hasRemaining(), "server read every request");
+
+            // and picks up again once the client reads
+            client.configureBlocking(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(client.socket().getInputStream()));
+            for (int i = 0; i < 1_000; i++) {
+                assertTrue(in.readLine().contains("Unknown action: NOPE"));
+            }
+        } finally {
+            server.stop();
+            selectorThread.join(5000);
+            workers.shutdown();
+        }
+    }
+
+    private static Socket connect(int port) throws Exception {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return new Socket("localhost", port);
+            } catch (java.net.ConnectException e) {
+                if (attempt > 50) {
+                    throw e;
+                }
+                Thread.sleep(20);
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package server;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import model.APIClient;
+import model.StubAPIClient;
+import model.Track;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static model.StubAPIClient.track;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestProcessorTest {
+    @Test
+    void testStatsReportsPerActionTimers() throws Exception {
+        APIClient apiClient = new APIClient();
+        RequestProcessor processor = new RequestProcessor(apiClient);
+        Gson gson = new Gson();
+
+        processor.process("{\"action\":\"NOPE\"}");
+        processor.process("{\"action\":\"NOPE\"}");
+        processor.process("not json");
+
+        JsonObject response = gson.fromJson(processor.process("{\"action\":\"STATS\",\"requestId\":7}"), JsonObject.class);
+        assertEquals("success", response.get("status").getAsString());
+        assertEquals(7, response.get("requestId").getAsLong());
+
+        JsonObject data = response.getAsJsonObject("data");
+        JsonObject unknown = data.getAsJsonObject("timers").getAsJsonObject("action.UNKNOWN");
+        assertEquals(2, unknown.get("count").getAsLong());
+        assertEquals(2, unknown.get("errors").getAsLong());
+        assertEquals(1, data.getAsJsonObject("timers").getAsJsonObject("action.INVALID").get("count").getAsLong());
+        assertTrue(data.has("cache"));
+        assertTrue(data.has("connectionPool"));
+
+        // The STATS call itself is timed once it has been answered
+        assertEquals(1, apiClient.getMetrics().timer("action.STATS").getCount());
+        apiClient.close();
+    }
+
+    @Test
+    void testBatchRecommendMergesAndRanksSeedArtists() throws Exception {
+        StubAPIClient apiClient = new StubAPIClient()
+                .withTopTracks("A", List.of(track("a1", "A", 50), track("shared", "A", 10), track("s3", "A", 99)))
+                .withTopTracks("B", List.of(track("b1", "B", 90), track("shared", "A", 10)))
+                .withTrack(track("s3", "B", 0));
+        RequestProcessor processor = new RequestProcessor(apiClient);
+        Gson gson = new Gson();
+
+        String request = "{\"action\":\"BATCH_RECOMMEND\",\"count\":2,\"requestId\":3,\"seeds\":["
+                + "{\"trackId\":\"s1\",\"artistIds\":[\"A\"]},{\"trackId\":\"s2\",\"artistIds\":[\"A\"]},"
+                + "\"s3\",{\"trackId\":\"s4\",\"artistIds\":[\"C\"]},\"unknown\"]}";
+        JsonObject response = gson.fromJson(processor.process(request), JsonObject.class);
+
+        assertEquals("success", response.get("status").getAsString());
+        assertEquals("BATCH_RECOMMEND", response.get("action").getAsString());
+        List<String> ids = new ArrayList<>();
+        for (JsonElement track : response.getAsJsonArray("data")) {
+            ids.add(track.getAsJsonObject().get("id").getAsString());
+        }
+        // "shared" is on both lists (2 seeds for A + 1 for B), a1 on A's only; seeds are never recommended
+        assertEquals(List.of("shared", "a1"), ids);
+        assertEquals(Map.of("A", 1, "B", 1, "C", 1), apiClient.getTopTrackCalls());
+        assertEquals(1, apiClient.getMetrics().timer("action.BATCH_RECOMMEND").getCount());
+
+        JsonObject empty = gson.fromJson(processor.process("{\"action\":\"BATCH_RECOMMEND\",\"seeds\":[]}"),
+                JsonObject.class);
+        assertEquals("error", empty.get("status").getAsString());
+
+        JsonObject nothingFetched = gson.fromJson(processor.process(
+                "{\"action\":\"BATCH_RECOMMEND\",\"seeds\":[{\"trackId\":\"s4\",\"artistIds\":[\"C\"]}]}"),
+                JsonObject.class);
+        assertEquals("error", nothingFetched.get("status").getAsString());
+        assertTrue(nothingFetched.get("message").getAsString().contains("no top tracks could be fetched"),
+                nothingFetched.toString());
+        apiClient.close();
+    }
+}